@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.activity;
+
+import fr.jayblanc.mbyte.store.activity.entity.NodeAccess;
+import fr.jayblanc.mbyte.store.files.entity.Node;
+import fr.jayblanc.mbyte.store.files.entity.NodeInfo;
+
+import java.util.List;
+
+public interface ActivityService {
+
+    /**
+     * Records an access to a node without blocking the caller: the entry is queued and written later, or dropped if the
+     * queue is full.
+     */
+    void access(String action, Node node);
+
+    /**
+     * Live files, most recently modified first, strictly after the (modification, id) cursor.
+     */
+    List<NodeInfo> recent(long before, String id, int limit);
+
+    /**
+     * Access log entries, most recent first, with a sequence lower than the given cursor.
+     */
+    List<NodeAccess> activity(long before, int limit);
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.activity;
+
+import fr.jayblanc.mbyte.store.activity.entity.NodeAccess;
+import fr.jayblanc.mbyte.store.files.entity.Node;
+import fr.jayblanc.mbyte.store.files.entity.NodeInfo;
+import fr.jayblanc.mbyte.store.metrics.MetricsService;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Accesses are buffered in a bounded in-memory queue and written by a scheduled flush in batches, so reading a file never
+ * waits on an insert. Under pressure entries are dropped rather than slowing down requests: the log is a convenience
+ * feed, not an audit trail.
+ */
+@ApplicationScoped
+public class ActivityServiceBean implements ActivityService {
+
+    private static final Logger LOGGER = Logger.getLogger(ActivityServiceBean.class.getName());
+
+    @Inject ActivityConfig config;
+    @Inject EntityManager em;
+    @Inject MetricsService metrics;
+
+    private BlockingQueue<NodeAccess> queue;
+
+    @PostConstruct
+    public void init() {
+        queue = new ArrayBlockingQueue<>(config.queueSize());
+    }
+
+    @Override
+    public void access(String action, Node node) {
+        if (!queue.offer(new NodeAccess(action, node.getId(), node.getName()))) {
+            LOGGER.log(Level.FINE, "Activity queue full, dropping access to node: " + node.getId());
+            metrics.incMetric("activity.dropped");
+        }
+    }
+
+    @Override
+    @Transactional(Transactional.TxType.REQUIRED)
+    public List<NodeInfo> recent(long before, String id, int limit) {
+        LOGGER.log(Level.FINE, "Listing recent files before: " + before + "/" + id);
+        return em.createNamedQuery("Node.findRecent", NodeInfo.class).setParameter("type", Node.Type.BLOB).setParameter("before", before).setParameter("id", id)
+                .setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    @Transactional(Transactional.TxType.REQUIRED)
+    public List<NodeAccess> activity(long before, int limit) {
+        LOGGER.log(Level.FINE, "Listing activity before: " + before);
+        return em.createNamedQuery("NodeAccess.findBefore", NodeAccess.class).setParameter("before", before).setMaxResults(limit).getResultList();
+    }
+
+    @Scheduled(every = "{store.activity.flush-interval}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    public void flush() {
+        List<NodeAccess> batch = new ArrayList<>(config.batchSize());
+        while (queue.drainTo(batch, config.batchSize()) > 0) {
+            LOGGER.log(Level.FINE, "Writing " + batch.size() + " access log entries");
+            QuarkusTransaction.requiringNew().run(() -> batch.forEach(em::persist));
+            batch.clear();
+        }
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        LOGGER.log(Level.INFO, "Flushing activity queue before shutdown");
+        this.flush();
+    }
+
+    @Scheduled(every = "1h", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    @Transactional(Transactional.TxType.REQUIRED)
+    public void compact() {
+        int expired = em.createNamedQuery("NodeAccess.deleteBefore")
+                .setParameter("limit", System.currentTimeMillis() - config.retentionDays() * 86400000L).executeUpdate();
+        LOGGER.log(Level.INFO, "Activity log compacted, {0} expired entries removed", expired);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.activity.entity;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+@Entity
+@NamedQueries({
+        @NamedQuery(name = "NodeAccess.findBefore", query = "SELECT a FROM NodeAccess a WHERE a.seq < :before ORDER BY a.seq DESC"),
+        @NamedQuery(name = "NodeAccess.deleteBefore", query = "DELETE FROM NodeAccess a WHERE a.creation < :limit"),
+})
+@Table(name = "node_access", indexes = {
+        @Index(name = "node_access_creation", columnList = "creation"),
+})
+public class NodeAccess implements Serializable {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "node_access_seq")
+    @SequenceGenerator(name = "node_access_seq", sequenceName = "node_access_seq", allocationSize = 50)
+    private long seq;
+    @Column(length = 50)
+    private String action;
+    @Column(length = 50)
+    private String node;
+    private String name;
+    private long creation;
+
+    public NodeAccess() {
+    }
+
+    public NodeAccess(String action, String node, String name) {
+        this.action = action;
+        this.node = node;
+        this.name = name;
+        this.creation = System.currentTimeMillis();
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(long seq) {
+        this.seq = seq;
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    public void setAction(String action) {
+        this.action = action;
+    }
+
+    public String getNode() {
+        return node;
+    }
+
+    public void setNode(String node) {
+        this.node = node;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public long getCreation() {
+        return creation;
+    }
+
+    public void setCreation(long creation) {
+        this.creation = creation;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        NodeAccess that = (NodeAccess) o;
+        return seq == that.seq && creation == that.creation && Objects.equals(action, that.action) && Objects.equals(node, that.node) && Objects.equals(name, that.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(seq, action, node, name, creation);
+    }
+
+    @Override
+    public String toString() {
+        return "NodeAccess{" +
+                "seq=" + seq +
+                ", action='" + action + '\'' +
+                ", node='" + node + '\'' +
+                ", name='" + name + '\'' +
+                ", creation=" + creation +
+                '}';
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.api.dto;
+
+import fr.jayblanc.mbyte.store.changes.entity.NodeChange;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ChangeFeedDto {
+
+    private long cursor;
+    private boolean more;
+    private List<NodeChange> changes;
+
+    public ChangeFeedDto() {
+        changes = new ArrayList<>();
+    }
+
+    public long getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(long cursor) {
+        this.cursor = cursor;
+    }
+
+    public boolean isMore() {
+        return more;
+    }
+
+    public void setMore(boolean more) {
+        this.more = more;
+    }
+
+    public List<NodeChange> getChanges() {
+        return changes;
+    }
+
+    public void setChanges(List<NodeChange> changes) {
+        this.changes = changes;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.api.dto;
+
+import java.util.List;
+
+public class NodeBatchEntryDto {
+
+    private String id;
+    private boolean found;
+    private NodeDto node;
+    private List<NodeDto> path;
+
+    public NodeBatchEntryDto() {
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public boolean isFound() {
+        return found;
+    }
+
+    public void setFound(boolean found) {
+        this.found = found;
+    }
+
+    public NodeDto getNode() {
+        return node;
+    }
+
+    public void setNode(NodeDto node) {
+        this.node = node;
+    }
+
+    public List<NodeDto> getPath() {
+        return path;
+    }
+
+    public void setPath(List<NodeDto> path) {
+        this.path = path;
+    }
+}
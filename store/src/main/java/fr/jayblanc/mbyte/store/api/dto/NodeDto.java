@@ -16,12 +16,20 @@
  */
 package fr.jayblanc.mbyte.store.api.dto;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import fr.jayblanc.mbyte.store.files.entity.Node;
+import fr.jayblanc.mbyte.store.files.entity.NodeInfo;
 
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.Date;
 
 public class NodeDto {
 
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSxxx").withZone(ZoneOffset.UTC);
+
     private boolean root;
     private Node.Type type;
     private String id;
@@ -40,6 +48,7 @@ public class NodeDto {
         dto.root = node.isRoot();
         dto.type = node.getType();
         dto.id = node.getId();
+        dto.parent = node.getParent();
         dto.name = node.getName();
         dto.mimetype = node.getMimetype();
         dto.size = node.getSize();
@@ -48,6 +57,39 @@ public class NodeDto {
         return dto;
     }
 
+    public static NodeDto fromInfo(NodeInfo node) {
+        NodeDto dto = new NodeDto();
+        dto.root = node.isRoot();
+        dto.type = node.getType();
+        dto.id = node.getId();
+        dto.parent = node.getParent();
+        dto.name = node.getName();
+        dto.mimetype = node.getMimetype();
+        dto.size = node.getSize();
+        dto.creation = new Date(node.getCreation());
+        dto.modification = new Date(node.getModification());
+        return dto;
+    }
+
+    /**
+     * Writes a node projection with the same shape as a serialized NodeDto, without building the DTO nor its dates.
+     */
+    public static void write(JsonGenerator generator, NodeInfo node) throws IOException {
+        generator.writeStartObject();
+        generator.writeBooleanField("root", node.isRoot());
+        generator.writeStringField("type", node.getType().name());
+        generator.writeStringField("id", node.getId());
+        generator.writeStringField("parent", node.getParent());
+        generator.writeStringField("name", node.getName());
+        generator.writeStringField("mimetype", node.getMimetype());
+        generator.writeNumberField("size", node.getSize());
+        generator.writeStringField("creation", DATE_FORMAT.format(Instant.ofEpochMilli(node.getCreation())));
+        generator.writeStringField("modification", DATE_FORMAT.format(Instant.ofEpochMilli(node.getModification())));
+        generator.writeBooleanField("folder", node.isFolder());
+        generator.writeBooleanField("file", !node.isFolder());
+        generator.writeEndObject();
+    }
+
     public Node.Type getType() {
         return type;
     }
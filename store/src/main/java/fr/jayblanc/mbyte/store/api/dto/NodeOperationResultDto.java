@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.api.dto;
+
+import fr.jayblanc.mbyte.store.files.NodeOperation;
+
+public class NodeOperationResultDto {
+
+    private int index;
+    private NodeOperation.Type type;
+    private String id;
+
+    public NodeOperationResultDto() {
+    }
+
+    public NodeOperationResultDto(int index, NodeOperation.Type type, String id) {
+        this.index = index;
+        this.type = type;
+        this.id = id;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public NodeOperation.Type getType() {
+        return type;
+    }
+
+    public void setType(NodeOperation.Type type) {
+        this.type = type;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.api.dto;
+
+import fr.jayblanc.mbyte.store.files.NodeOperation;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class NodeOperationsDto {
+
+    @NotEmpty(message="at least one operation is required")
+    @Size(max=500, message="at most 500 operations can be applied in one batch")
+    private List<NodeOperation> operations;
+
+    public NodeOperationsDto() {
+        operations = new ArrayList<>();
+    }
+
+    public List<NodeOperation> getOperations() {
+        return operations;
+    }
+
+    public void setOperations(List<NodeOperation> operations) {
+        this.operations = operations;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.api.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class RecentFeedDto {
+
+    private long before;
+    private String id;
+    private boolean more;
+    private List<NodeDto> nodes;
+
+    public RecentFeedDto() {
+        nodes = new ArrayList<>();
+    }
+
+    public long getBefore() {
+        return before;
+    }
+
+    public void setBefore(long before) {
+        this.before = before;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public boolean isMore() {
+        return more;
+    }
+
+    public void setMore(boolean more) {
+        this.more = more;
+    }
+
+    public List<NodeDto> getNodes() {
+        return nodes;
+    }
+
+    public void setNodes(List<NodeDto> nodes) {
+        this.nodes = nodes;
+    }
+}
@@ -17,6 +17,8 @@
 package fr.jayblanc.mbyte.store.api.dto;
 
 import fr.jayblanc.mbyte.store.metrics.MetricsService;
+import fr.jayblanc.mbyte.store.quota.QuotaService;
+import fr.jayblanc.mbyte.store.quota.entity.StoreUsage;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -33,6 +35,10 @@ public class Status {
     private long maxMemory;
     private Map<String, Long> latestMetrics;
     private Map<String, Long> metrics;
+    private long usedBytes;
+    private long usedFiles;
+    private long maxBytes;
+    private long maxFiles;
 
     public Status() {
         latestMetrics = new HashMap<>();
@@ -96,6 +102,38 @@ public class Status {
         this.metrics = metrics;
     }
 
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public void setUsedBytes(long usedBytes) {
+        this.usedBytes = usedBytes;
+    }
+
+    public long getUsedFiles() {
+        return usedFiles;
+    }
+
+    public void setUsedFiles(long usedFiles) {
+        this.usedFiles = usedFiles;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public long getMaxFiles() {
+        return maxFiles;
+    }
+
+    public void setMaxFiles(long maxFiles) {
+        this.maxFiles = maxFiles;
+    }
+
     public static Status fromRuntime() {
         Status status = new Status();
         status.setNbCpus(Runtime.getRuntime().availableProcessors());
@@ -110,4 +148,13 @@ public class Status {
         this.latestMetrics = service.listLatestMetrics();
         return this;
     }
+
+    public Status withQuota(QuotaService service) {
+        StoreUsage usage = service.usage();
+        this.usedBytes = usage.getBytes();
+        this.usedFiles = usage.getFiles();
+        this.maxBytes = service.maxBytes();
+        this.maxFiles = service.maxFiles();
+        return this;
+    }
 }
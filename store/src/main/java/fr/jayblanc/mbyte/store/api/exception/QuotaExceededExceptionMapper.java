@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.api.exception;
+
+import fr.jayblanc.mbyte.store.api.StoreAPI;
+import fr.jayblanc.mbyte.store.api.dto.ErrorDto;
+import fr.jayblanc.mbyte.store.quota.QuotaExceededException;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.ExceptionMapper;
+import jakarta.ws.rs.ext.Provider;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+@Provider
+public class QuotaExceededExceptionMapper implements ExceptionMapper<QuotaExceededException> {
+
+    private static final Logger LOGGER = Logger.getLogger(StoreAPI.class.getName());
+
+    @Override
+    public Response toResponse(QuotaExceededException e) {
+        ErrorDto dto = new ErrorDto("quota.exceeded", e.getMessage(), e);
+        LOGGER.log(Level.INFO, "ERROR [" + dto.getId() + "] " + dto);
+        return Response.status(Response.Status.REQUEST_ENTITY_TOO_LARGE).entity(dto).build();
+    }
+}
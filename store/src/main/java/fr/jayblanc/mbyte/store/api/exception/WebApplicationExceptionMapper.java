@@ -35,6 +35,7 @@ public class WebApplicationExceptionMapper implements ExceptionMapper<WebApplica
     public Response toResponse(WebApplicationException e) {
         ErrorDto dto = new ErrorDto("unexpected-error", e.getMessage(), e);
         LOGGER.log(Level.SEVERE, dto.getKey().toUpperCase() + " [" + dto.getId() + "] ", dto.getException());
-        return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity(dto).build();
+        int status = (e.getResponse() != null) ? e.getResponse().getStatus() : Response.Status.INTERNAL_SERVER_ERROR.getStatusCode();
+        return Response.status(status).entity(dto).build();
     }
 }
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.api.filter;
+
+import fr.jayblanc.mbyte.store.api.exception.QuotaExceededExceptionMapper;
+import fr.jayblanc.mbyte.store.quota.QuotaExceededException;
+import fr.jayblanc.mbyte.store.quota.QuotaService;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ResourceInfo;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.ext.Provider;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+@Provider
+public class QuotaFilter implements ContainerRequestFilter {
+
+    private static final Logger LOGGER = Logger.getLogger(QuotaFilter.class.getName());
+
+    @Context ResourceInfo resourceInfo;
+    @Inject QuotaService quota;
+
+    @Override
+    public void filter(ContainerRequestContext ctx) {
+        CheckQuota check = resourceInfo.getResourceMethod().getAnnotation(CheckQuota.class);
+        if (check != null) {
+            // Request filters run before the entity is read: an upload that cannot fit is refused without receiving a
+            // single byte of it. Requests without a declared length are only checked against the current usage, the stored
+            // size is checked again by the file service once the content is written.
+            LOGGER.log(Level.FINE, "Checking quota for upload of " + ctx.getLength() + " bytes");
+            try {
+                quota.admit(ctx.getLength(), check.files());
+            } catch (QuotaExceededException e) {
+                ctx.abortWith(new QuotaExceededExceptionMapper().toResponse(e));
+            }
+        }
+    }
+
+}
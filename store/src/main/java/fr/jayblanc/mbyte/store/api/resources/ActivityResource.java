@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.api.resources;
+
+import fr.jayblanc.mbyte.store.activity.ActivityService;
+import fr.jayblanc.mbyte.store.activity.entity.NodeAccess;
+import fr.jayblanc.mbyte.store.api.dto.ActivityFeedDto;
+import fr.jayblanc.mbyte.store.api.dto.NodeDto;
+import fr.jayblanc.mbyte.store.api.dto.RecentFeedDto;
+import fr.jayblanc.mbyte.store.api.filter.OnlyOwner;
+import fr.jayblanc.mbyte.store.files.entity.NodeInfo;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
+
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+@Path("/")
+@OnlyOwner
+public class ActivityResource {
+
+    private static final Logger LOGGER = Logger.getLogger(ActivityResource.class.getName());
+
+    @Inject ActivityService service;
+
+    @GET
+    @Path("recent")
+    @Produces(MediaType.APPLICATION_JSON)
+    public RecentFeedDto recent(@QueryParam("before") @DefaultValue("" + Long.MAX_VALUE) long before, @QueryParam("id") @DefaultValue("") String id,
+            @QueryParam("limit") @DefaultValue("20") int limit) {
+        LOGGER.log(Level.INFO, "GET /api/recent?before={0}", before);
+        int size = Math.min(Math.max(limit, 1), 200);
+        List<NodeInfo> nodes = service.recent(before, id, size);
+        RecentFeedDto dto = new RecentFeedDto();
+        dto.setNodes(nodes.stream().map(NodeDto::fromInfo).toList());
+        dto.setBefore(nodes.isEmpty() ? before : nodes.getLast().getModification());
+        dto.setId(nodes.isEmpty() ? id : nodes.getLast().getId());
+        dto.setMore(nodes.size() == size);
+        return dto;
+    }
+
+    @GET
+    @Path("activity")
+    @Produces(MediaType.APPLICATION_JSON)
+    public ActivityFeedDto activity(@QueryParam("cursor") @DefaultValue("" + Long.MAX_VALUE) long cursor, @QueryParam("limit") @DefaultValue("50") int limit) {
+        LOGGER.log(Level.INFO, "GET /api/activity?cursor={0}", cursor);
+        int size = Math.min(Math.max(limit, 1), 500);
+        List<NodeAccess> accesses = service.activity(cursor, size);
+        ActivityFeedDto dto = new ActivityFeedDto();
+        dto.setAccesses(accesses);
+        dto.setCursor(accesses.isEmpty() ? cursor : accesses.getLast().getSeq());
+        dto.setMore(accesses.size() == size);
+        return dto;
+    }
+}
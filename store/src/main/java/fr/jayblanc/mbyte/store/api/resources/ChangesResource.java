@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.api.resources;
+
+import fr.jayblanc.mbyte.store.api.dto.ChangeFeedDto;
+import fr.jayblanc.mbyte.store.api.dto.ChangeSnapshotDto;
+import fr.jayblanc.mbyte.store.api.dto.NodeDto;
+import fr.jayblanc.mbyte.store.api.filter.OnlyOwner;
+import fr.jayblanc.mbyte.store.changes.ChangeService;
+import fr.jayblanc.mbyte.store.changes.ChangeSnapshot;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
+
+import java.util.concurrent.CompletionStage;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+@Path("changes")
+@OnlyOwner
+public class ChangesResource {
+
+    private static final Logger LOGGER = Logger.getLogger(ChangesResource.class.getName());
+
+    @Inject ChangeService service;
+
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public CompletionStage<ChangeFeedDto> changes(@QueryParam("cursor") @DefaultValue("0") long cursor, @QueryParam("limit") @DefaultValue("100") int limit,
+            @QueryParam("wait") @DefaultValue("0") int wait) {
+        LOGGER.log(Level.INFO, "GET /api/changes?cursor={0}", cursor);
+        int size = Math.min(Math.max(limit, 1), 1000);
+        // The request is suspended while waiting for a change, it holds no worker thread.
+        return service.watch(cursor, size, wait).thenApply(changes -> {
+            ChangeFeedDto dto = new ChangeFeedDto();
+            dto.setChanges(changes);
+            dto.setCursor(changes.isEmpty() ? cursor : changes.getLast().getPosition());
+            dto.setMore(changes.size() == size);
+            return dto;
+        });
+    }
+
+    @GET
+    @Path("snapshot")
+    @Produces(MediaType.APPLICATION_JSON)
+    public ChangeSnapshotDto snapshot() {
+        LOGGER.log(Level.INFO, "GET /api/changes/snapshot");
+        ChangeSnapshot snapshot = service.snapshot();
+        ChangeSnapshotDto dto = new ChangeSnapshotDto();
+        dto.setCursor(snapshot.getCursor());
+        dto.setNodes(snapshot.getNodes().stream().map(NodeDto::fromNode).toList());
+        return dto;
+    }
+}
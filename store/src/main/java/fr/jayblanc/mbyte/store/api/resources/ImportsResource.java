@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.api.resources;
+
+import fr.jayblanc.mbyte.store.api.dto.ImportCreateDto;
+import fr.jayblanc.mbyte.store.api.filter.OnlyOwner;
+import fr.jayblanc.mbyte.store.files.FileService;
+import fr.jayblanc.mbyte.store.files.exceptions.NodeNotFoundException;
+import fr.jayblanc.mbyte.store.files.exceptions.NodeTypeException;
+import fr.jayblanc.mbyte.store.importer.ImportException;
+import fr.jayblanc.mbyte.store.importer.ImportJobNotFoundException;
+import fr.jayblanc.mbyte.store.importer.ImportService;
+import fr.jayblanc.mbyte.store.importer.entity.ImportJob;
+import jakarta.inject.Inject;
+import jakarta.validation.Valid;
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.UriInfo;
+
+import java.net.URI;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Imports run asynchronously, endpoints are deliberately not transactional so that a job is never started from within
+ * the request transaction.
+ */
+@Path("imports")
+@OnlyOwner
+public class ImportsResource {
+
+    private static final Logger LOGGER = Logger.getLogger(ImportsResource.class.getName());
+
+    @Inject ImportService service;
+
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public List<ImportJob> list() {
+        LOGGER.log(Level.INFO, "GET /api/imports");
+        return service.list();
+    }
+
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response start(@Valid ImportCreateDto dto, @Context UriInfo info) throws ImportException, NodeNotFoundException, NodeTypeException {
+        LOGGER.log(Level.INFO, "POST /api/imports");
+        String target = (dto.getTarget() == null || dto.getTarget().isEmpty()) ? FileService.ROOT_NODE_ID : dto.getTarget();
+        ImportJob job = service.start(dto.getSource(), target);
+        URI location = info.getRequestUriBuilder().path(job.getId()).build();
+        return Response.accepted(job).location(location).build();
+    }
+
+    @GET
+    @Path("{id}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public ImportJob get(@PathParam("id") final String id) throws ImportJobNotFoundException {
+        LOGGER.log(Level.INFO, "GET /api/imports/{0}", id);
+        return service.get(id);
+    }
+
+    @POST
+    @Path("{id}/resume")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response resume(@PathParam("id") final String id) throws ImportJobNotFoundException, ImportException {
+        LOGGER.log(Level.INFO, "POST /api/imports/{0}/resume", id);
+        return Response.accepted(service.resume(id)).build();
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.api.resources;
+
+import fr.jayblanc.mbyte.store.api.filter.OnlyOwner;
+import fr.jayblanc.mbyte.store.index.IndexStoreBootstrapBean;
+import fr.jayblanc.mbyte.store.index.IndexStoreServiceWorker;
+import fr.jayblanc.mbyte.store.index.entity.IndexStoreJob;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.NotFoundException;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+@Path("index")
+@OnlyOwner
+public class IndexResource {
+
+    private static final Logger LOGGER = Logger.getLogger(IndexResource.class.getName());
+
+    @Inject IndexStoreServiceWorker worker;
+    @Inject IndexStoreBootstrapBean bootstrap;
+
+    @GET
+    @Path("jobs")
+    @Produces(MediaType.APPLICATION_JSON)
+    public List<IndexStoreJob> jobs(@QueryParam("status") @DefaultValue("FAILED") IndexStoreJob.Status status, @QueryParam("offset") @DefaultValue("0") int offset,
+            @QueryParam("limit") @DefaultValue("50") int limit) {
+        LOGGER.log(Level.INFO, "GET /api/index/jobs?status={0}", status);
+        return worker.jobs(status, Math.max(offset, 0), Math.min(Math.max(limit, 1), 500));
+    }
+
+    @GET
+    @Path("jobs/stats")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Map<IndexStoreJob.Status, Long> stats() {
+        LOGGER.log(Level.INFO, "GET /api/index/jobs/stats");
+        return worker.stats();
+    }
+
+    @POST
+    @Path("jobs/{id}/retry")
+    public Response retry(@PathParam("id") final String id) {
+        LOGGER.log(Level.INFO, "POST /api/index/jobs/{0}/retry", id);
+        if (!worker.retry(id)) {
+            throw new NotFoundException("unable to find index job: " + id);
+        }
+        return Response.noContent().build();
+    }
+
+    @POST
+    @Path("rebuild")
+    public Response rebuild() {
+        LOGGER.log(Level.INFO, "POST /api/index/rebuild");
+        if (!bootstrap.rebuildInBackground()) {
+            return Response.status(Response.Status.CONFLICT).build();
+        }
+        return Response.accepted().build();
+    }
+
+    @POST
+    @Path("reconcile")
+    public Response reconcile() {
+        LOGGER.log(Level.INFO, "POST /api/index/reconcile");
+        if (!bootstrap.reconcileInBackground()) {
+            return Response.status(Response.Status.CONFLICT).build();
+        }
+        return Response.accepted().build();
+    }
+}
@@ -16,41 +16,79 @@
  */
 package fr.jayblanc.mbyte.store.api.resources;
 
-import fr.jayblanc.mbyte.store.api.dto.CollectionDto;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.jayblanc.mbyte.store.activity.ActivityService;
+import fr.jayblanc.mbyte.store.api.dto.NodeBatchDto;
+import fr.jayblanc.mbyte.store.api.dto.NodeBatchEntryDto;
 import fr.jayblanc.mbyte.store.api.dto.NodeCreateDto;
+import fr.jayblanc.mbyte.store.api.dto.NodeOperationResultDto;
+import fr.jayblanc.mbyte.store.api.dto.NodeOperationsDto;
 import fr.jayblanc.mbyte.store.api.dto.NodeDto;
+import fr.jayblanc.mbyte.store.api.filter.CheckQuota;
 import fr.jayblanc.mbyte.store.api.filter.OnlyOwner;
+import fr.jayblanc.mbyte.store.api.validation.ValidationPattern;
 import fr.jayblanc.mbyte.store.auth.AuthenticationService;
+import fr.jayblanc.mbyte.store.data.delta.DeltaFormatException;
+import fr.jayblanc.mbyte.store.data.delta.DeltaSignature;
 import fr.jayblanc.mbyte.store.data.exception.DataNotFoundException;
 import fr.jayblanc.mbyte.store.data.exception.DataStoreException;
 import fr.jayblanc.mbyte.store.files.FileService;
+import fr.jayblanc.mbyte.store.files.FileUpload;
+import fr.jayblanc.mbyte.store.files.NodeOperation;
 import fr.jayblanc.mbyte.store.files.entity.Node;
+import fr.jayblanc.mbyte.store.files.entity.NodeAggregate;
+import fr.jayblanc.mbyte.store.files.entity.NodeVersion;
 import fr.jayblanc.mbyte.store.files.exceptions.*;
 import fr.jayblanc.mbyte.store.notification.NotificationServiceException;
+import fr.jayblanc.mbyte.store.quota.QuotaExceededException;
+import fr.jayblanc.mbyte.store.quota.QuotaService;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 import jakarta.validation.Valid;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.CacheControl;
 import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 import jakarta.ws.rs.core.UriInfo;
 import org.jboss.resteasy.annotations.providers.multipart.MultipartForm;
+import org.jboss.resteasy.plugins.providers.multipart.InputPart;
+import org.jboss.resteasy.plugins.providers.multipart.MultipartFormDataInput;
 
 import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 @Path("nodes")
 @OnlyOwner
 public class NodesResource {
 
     private static final Logger LOGGER = Logger.getLogger(NodesResource.class.getName());
+    private static final String DELTA_MEDIA_TYPE = "application/vnd.mbyte.delta";
 
     @Inject FileService service;
+    @Inject ObjectMapper mapper;
+    @Inject QuotaService quota;
+    @Inject ActivityService activity;
 
     @GET
     @Transactional(Transactional.TxType.REQUIRED)
@@ -66,9 +104,68 @@ public class NodesResource {
     @Path("{id}")
     @Transactional(Transactional.TxType.REQUIRED)
     @Produces({MediaType.APPLICATION_JSON})
-    public Node get(@PathParam("id") final String id) throws NodeNotFoundException {
+    public Response get(@PathParam("id") final String id, @Context Request request) throws NodeNotFoundException {
         LOGGER.log(Level.INFO, "GET /api/nodes/{0}", id);
-        return service.get(id);
+        Node node = service.get(id);
+        EntityTag tag = new EntityTag(Long.toString(node.getVersion()), true);
+        Date modified = lastModified(node.getModification());
+        Response.ResponseBuilder cached = request.evaluatePreconditions(modified, tag);
+        if (cached != null) {
+            return cached.cacheControl(revalidate()).build();
+        }
+        return Response.ok(node).tag(tag).lastModified(modified).cacheControl(revalidate()).build();
+    }
+
+    @POST
+    @Path("batch")
+    @Transactional(Transactional.TxType.REQUIRED)
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public List<NodeBatchEntryDto> batch(@Valid NodeBatchDto dto) {
+        LOGGER.log(Level.INFO, "POST /api/nodes/batch ({0} ids)", dto.getIds().size());
+        Map<String, Node> nodes = service.get(dto.getIds());
+        Map<String, List<Node>> paths = dto.isPaths() ? service.paths(nodes.values()) : Collections.emptyMap();
+        List<NodeBatchEntryDto> entries = new ArrayList<>(dto.getIds().size());
+        for (String id : dto.getIds()) {
+            NodeBatchEntryDto entry = new NodeBatchEntryDto();
+            entry.setId(id);
+            Node node = nodes.get(id);
+            if (node != null) {
+                entry.setFound(true);
+                entry.setNode(NodeDto.fromNode(node));
+                if (dto.isPaths()) {
+                    entry.setPath(paths.get(id).stream().map(NodeDto::fromNode).toList());
+                }
+            }
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    @CheckQuota(files = 0)
+    @POST
+    @Path("ops")
+    @Transactional(value = Transactional.TxType.REQUIRED, rollbackOn = Exception.class)
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public List<NodeOperationResultDto> operations(@Valid NodeOperationsDto dto) throws NodeNotFoundException, NodeAlreadyExistsException, NodeNotEmptyException,
+            NodeTypeException, DataStoreException, DataNotFoundException, NodePersistenceException, NotificationServiceException, QuotaExceededException {
+        LOGGER.log(Level.INFO, "POST /api/nodes/ops ({0} operations)", dto.getOperations().size());
+        for (NodeOperation operation : dto.getOperations()) {
+            if (operation.getType() == null) {
+                throw new BadRequestException("operation type is required");
+            }
+            boolean named = operation.getType() == NodeOperation.Type.MKDIR || operation.getType() == NodeOperation.Type.CREATE;
+            if ((named || operation.getName() != null) && (operation.getName() == null || !operation.getName().matches(ValidationPattern.FILE_PATTERN))) {
+                throw new BadRequestException("invalid name for operation: " + operation.getType());
+            }
+        }
+        List<String> ids = service.apply(dto.getOperations());
+        List<NodeOperationResultDto> results = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            results.add(new NodeOperationResultDto(i, dto.getOperations().get(i).getType(), ids.get(i)));
+        }
+        return results;
     }
 
     @GET
@@ -84,12 +181,22 @@ public class NodesResource {
     @Path("{id}/content")
     @Transactional(Transactional.TxType.REQUIRED)
     @Produces(MediaType.WILDCARD)
-    public Response content(@PathParam("id") final String id, @QueryParam("download") @DefaultValue("false") final boolean download) throws NodeNotFoundException, NodeTypeException,
-            DataNotFoundException, DataStoreException {
+    public Response content(@PathParam("id") final String id, @QueryParam("download") @DefaultValue("false") final boolean download, @Context Request request,
+            @Context UriInfo info) throws NodeNotFoundException, NodeTypeException, DataNotFoundException, DataStoreException {
         LOGGER.log(Level.INFO, "GET /api/nodes/{0}/content", id);
         Node node = service.get(id);
         if (node.getType().equals(Node.Type.BLOB)) {
+            activity.access("open", node);
+            // The content hash is a strong validator: a matching client copy is confirmed without touching the data store.
+            EntityTag tag = new EntityTag(node.getContent());
+            Date modified = lastModified(node.getModification());
+            URI location = info.getBaseUriBuilder().path(NodesResource.class).path(NodesResource.class, "blob").build(id, node.getContent());
+            Response.ResponseBuilder cached = request.evaluatePreconditions(modified, tag);
+            if (cached != null) {
+                return cached.cacheControl(revalidate()).contentLocation(location).build();
+            }
             return Response.ok(service.getContent(id))
+                    .tag(tag).lastModified(modified).cacheControl(revalidate()).contentLocation(location)
                     .header("Content-Type", node.getMimetype())
                     .header("Content-Length", node.getSize())
                     .header("Content-Disposition", ((download) ? "attachment; " : "") + "filename=" + node.getName()).build();
@@ -98,34 +205,238 @@ public class NodesResource {
         }
     }
 
+    @GET
+    @Path("{id}/signature")
+    @Transactional(Transactional.TxType.REQUIRED)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response signature(@PathParam("id") final String id, @QueryParam("blockSize") @DefaultValue("0") final int blockSize) throws NodeNotFoundException,
+            NodeTypeException, DataNotFoundException, DataStoreException {
+        LOGGER.log(Level.INFO, "GET /api/nodes/{0}/signature", id);
+        if (blockSize != 0 && (blockSize < DeltaSignature.MIN_BLOCK_SIZE || blockSize > DeltaSignature.MAX_BLOCK_SIZE)) {
+            throw new BadRequestException("block size must be between " + DeltaSignature.MIN_BLOCK_SIZE + " and " + DeltaSignature.MAX_BLOCK_SIZE);
+        }
+        DeltaSignature signature = service.signature(id, blockSize);
+        return Response.ok(signature).tag(new EntityTag(signature.getContent())).cacheControl(revalidate()).build();
+    }
+
+    @CheckQuota(files = 0)
+    @PATCH
+    @Path("{id}/content")
+    @Transactional(Transactional.TxType.REQUIRED)
+    @Consumes({DELTA_MEDIA_TYPE, MediaType.APPLICATION_OCTET_STREAM})
+    public Response patch(@PathParam("id") final String id, InputStream delta, @Context Request request, @Context HttpHeaders headers) throws NodeNotFoundException,
+            NodeTypeException, DataNotFoundException, DataStoreException, NotificationServiceException, QuotaExceededException {
+        LOGGER.log(Level.INFO, "PATCH /api/nodes/{0}/content", id);
+        Node node = service.get(id);
+        if (node.isFolder()) {
+            throw new NodeTypeException("Node is not a file");
+        }
+        // A delta only makes sense against the content it was computed from, the client must name it with If-Match.
+        if (headers.getHeaderString(HttpHeaders.IF_MATCH) == null) {
+            return Response.status(428).build();
+        }
+        Response.ResponseBuilder failed = request.evaluatePreconditions(new EntityTag(node.getContent()));
+        if (failed != null) {
+            return failed.build();
+        }
+        try {
+            service.patch(id, delta);
+        } catch (DataStoreException e) {
+            if (e.getCause() instanceof DeltaFormatException) {
+                throw new BadRequestException(e.getCause().getMessage());
+            }
+            throw e;
+        }
+        return Response.noContent().tag(new EntityTag(node.getContent())).build();
+    }
+
+    @GET
+    @Path("{id}/blobs/{hash}")
+    @Transactional(Transactional.TxType.REQUIRED)
+    @Produces(MediaType.WILDCARD)
+    public Response blob(@PathParam("id") final String id, @PathParam("hash") final String hash, @QueryParam("download") @DefaultValue("false") final boolean download,
+            @Context Request request, @Context HttpHeaders headers) throws NodeNotFoundException, NodeTypeException, DataNotFoundException, DataStoreException {
+        LOGGER.log(Level.INFO, "GET /api/nodes/{0}/blobs/{1}", new Object[]{id, hash});
+        // Content behind a hash URL never changes: once the hash is known to belong to the node, through a single count
+        // query, any validator sent by the client is answered without loading the node nor reading the content.
+        if (!service.hasContent(id, hash)) {
+            throw new NodeNotFoundException("unable to find content: " + hash + " for node: " + id);
+        }
+        EntityTag tag = new EntityTag(hash);
+        Response.ResponseBuilder cached = request.evaluatePreconditions(tag);
+        if (cached == null && headers.getHeaderString(HttpHeaders.IF_MODIFIED_SINCE) != null) {
+            cached = Response.notModified(tag);
+        }
+        if (cached != null) {
+            return cached.cacheControl(immutable()).build();
+        }
+        Node node = service.get(id);
+        NodeVersion version = null;
+        if (!hash.equals(node.getContent())) {
+            version = service.versions(id).stream().filter(v -> hash.equals(v.getContent())).findFirst()
+                    .orElseThrow(() -> new NodeNotFoundException("unable to find content: " + hash + " for node: " + id));
+        }
+        InputStream content;
+        String mimetype;
+        long size;
+        if (version == null) {
+            content = service.getContent(id);
+            mimetype = node.getMimetype();
+            size = node.getSize();
+        } else {
+            content = service.getVersionContent(id, version.getId());
+            mimetype = version.getMimetype();
+            size = version.getSize();
+        }
+        activity.access("open", node);
+        return Response.ok(content).tag(tag).cacheControl(immutable())
+                .header("Content-Type", mimetype)
+                .header("Content-Length", size)
+                .header("Content-Disposition", ((download) ? "attachment; " : "") + "filename=" + node.getName()).build();
+    }
+
+    @GET
+    @Path("{id}/archive")
+    @Transactional(Transactional.TxType.REQUIRED)
+    @Produces("application/zip")
+    public Response archive(@PathParam("id") final String id) throws NodeNotFoundException, NodeTypeException {
+        LOGGER.log(Level.INFO, "GET /api/nodes/{0}/archive", id);
+        Node node = service.get(id);
+        if (!node.getType().equals(Node.Type.TREE)) {
+            throw new NodeTypeException("Node is not a directory");
+        }
+        StreamingOutput output = os -> {
+            try {
+                service.archive(node.getId(), os);
+            } catch (NodeNotFoundException | NodeTypeException | DataNotFoundException | DataStoreException e) {
+                throw new IOException("Unable to stream archive for node: " + node.getId(), e);
+            }
+        };
+        return Response.ok(output)
+                .header("Content-Type", "application/zip")
+                .header("Content-Disposition", "attachment; filename=" + node.getName() + ".zip").build();
+    }
+
+    @GET
+    @Path("{id}/export")
+    @Transactional(Transactional.TxType.REQUIRED)
+    @Produces("application/x-ndjson")
+    public Response export(@PathParam("id") final String id) throws NodeNotFoundException, NodeTypeException {
+        LOGGER.log(Level.INFO, "GET /api/nodes/{0}/export", id);
+        Node node = service.get(id);
+        if (!node.getType().equals(Node.Type.TREE)) {
+            throw new NodeTypeException("Node is not a directory");
+        }
+        // One JSON document per line, parents before children, so huge trees can be exported and audited as a stream.
+        StreamingOutput output = os -> {
+            try (JsonGenerator generator = mapper.getFactory().createGenerator(os).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                    .setRootValueSeparator(null)) {
+                service.walk(node.getId(), (path, info) -> {
+                    generator.writeStartObject();
+                    generator.writeStringField("path", path);
+                    generator.writeStringField("id", info.getId());
+                    generator.writeStringField("parent", info.getParent());
+                    generator.writeStringField("type", info.getType().name());
+                    generator.writeStringField("mimetype", info.getMimetype());
+                    generator.writeNumberField("size", info.getSize());
+                    generator.writeNumberField("modification", info.getModification());
+                    generator.writeStringField("content", info.getContent());
+                    generator.writeEndObject();
+                    generator.writeRaw('\n');
+                });
+            } catch (NodeNotFoundException | NodeTypeException e) {
+                throw new IOException("Unable to stream export for node: " + node.getId(), e);
+            }
+        };
+        return Response.ok(output)
+                .header("Content-Type", "application/x-ndjson")
+                .header("Content-Disposition", "attachment; filename=" + node.getName() + ".ndjson").build();
+    }
+
+    @GET
+    @Path("{id}/versions")
+    @Transactional(Transactional.TxType.REQUIRED)
+    @Produces(MediaType.APPLICATION_JSON)
+    public List<NodeVersion> versions(@PathParam("id") final String id) throws NodeNotFoundException, NodeTypeException {
+        LOGGER.log(Level.INFO, "GET /api/nodes/{0}/versions", id);
+        return service.versions(id);
+    }
+
+    @GET
+    @Path("{id}/versions/{version}/content")
+    @Transactional(Transactional.TxType.REQUIRED)
+    @Produces(MediaType.WILDCARD)
+    public Response versionContent(@PathParam("id") final String id, @PathParam("version") final String version, @QueryParam("download") @DefaultValue("false") final boolean download,
+            @Context Request request) throws NodeNotFoundException, DataNotFoundException, DataStoreException {
+        LOGGER.log(Level.INFO, "GET /api/nodes/{0}/versions/{1}/content", new Object[]{id, version});
+        Node node = service.get(id);
+        NodeVersion nversion = service.getVersion(id, version);
+        EntityTag tag = new EntityTag(nversion.getContent());
+        Response.ResponseBuilder cached = request.evaluatePreconditions(tag);
+        if (cached != null) {
+            return cached.cacheControl(immutable()).build();
+        }
+        return Response.ok(service.getVersionContent(id, version)).tag(tag).cacheControl(immutable())
+                .header("Content-Type", nversion.getMimetype())
+                .header("Content-Length", nversion.getSize())
+                .header("Content-Disposition", ((download) ? "attachment; " : "") + "filename=" + node.getName()).build();
+    }
+
+    @POST
+    @Path("{id}/versions/{version}/restore")
+    @Transactional(Transactional.TxType.REQUIRED)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response restore(@PathParam("id") final String id, @PathParam("version") final String version) throws NodeNotFoundException, NodeTypeException, NotificationServiceException {
+        LOGGER.log(Level.INFO, "POST /api/nodes/{0}/versions/{1}/restore", new Object[]{id, version});
+        service.restore(id, version);
+        return Response.noContent().build();
+    }
+
     @GET
     @Path("{id}/children")
     @Transactional(Transactional.TxType.REQUIRED)
     @Produces(MediaType.APPLICATION_JSON)
-    public Response children(@PathParam("id") final String id, @QueryParam("limit") @DefaultValue("20") int limit, @QueryParam("offset") @DefaultValue("0") int offset) throws NodeNotFoundException,
-            NodeTypeException {
+    public Response children(@PathParam("id") final String id, @QueryParam("limit") @DefaultValue("20") int limit, @QueryParam("offset") @DefaultValue("0") int offset,
+            @Context Request request) throws NodeNotFoundException, NodeTypeException {
         LOGGER.log(Level.INFO, "GET /api/nodes/{0}/children", id);
         Node node = service.get(id);
-        if (node.getType().equals(Node.Type.TREE)) {
-            CollectionDto<NodeDto> dto = new CollectionDto<>(limit, offset);
-            List<Node> nodes = service.list(node.getId());
-            dto.setValues(nodes.stream().skip(offset).limit(limit).map(NodeDto::fromNode).toList());
-            dto.setSize(nodes.size());
-            dto.setLimit(limit);
-            dto.setOffset(offset);
-            return Response.ok(dto).build();
-        } else {
+        if (!node.isFolder()) {
             throw new NodeTypeException("Node is not a directory");
         }
+        NodeAggregate aggregate = service.aggregate(node.getId());
+        EntityTag tag = new EntityTag(node.getVersion() + "-" + aggregate.getCount() + "-" + aggregate.getVersions() + "-" + offset + "-" + limit, true);
+        Date modified = lastModified(Math.max(node.getModification(), aggregate.getModification()));
+        Response.ResponseBuilder cached = request.evaluatePreconditions(modified, tag);
+        if (cached != null) {
+            return cached.cacheControl(revalidate()).build();
+        }
+        long size = aggregate.getCount();
+        // Same document as a serialized CollectionDto<NodeDto>, but children are written as they are read from the database.
+        StreamingOutput stream = output -> {
+            try (JsonGenerator generator = mapper.getFactory().createGenerator(output).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+                generator.writeStartObject();
+                generator.writeArrayFieldStart("values");
+                service.browse(id, offset, limit, child -> NodeDto.write(generator, child));
+                generator.writeEndArray();
+                generator.writeNumberField("limit", limit);
+                generator.writeNumberField("offset", offset);
+                generator.writeNumberField("size", size);
+                generator.writeEndObject();
+            } catch (NodeNotFoundException | NodeTypeException e) {
+                throw new IOException("unable to browse children of node: " + id, e);
+            }
+        };
+        return Response.ok(stream).tag(tag).lastModified(modified).cacheControl(revalidate()).build();
     }
 
+    @CheckQuota
     @POST
     @Path("{id}")
     @Transactional(Transactional.TxType.REQUIRED)
     @Produces(MediaType.APPLICATION_JSON)
     @Consumes({MediaType.APPLICATION_JSON, MediaType.MULTIPART_FORM_DATA})
     public Response create(@PathParam("id") final String id, @Valid @MultipartForm NodeCreateDto dto, @Context UriInfo info) throws NodeNotFoundException, NodeTypeException,
-            NodeAlreadyExistsException, DataNotFoundException, DataStoreException, NodePersistenceException, NotificationServiceException {
+            NodeAlreadyExistsException, DataNotFoundException, DataStoreException, NodePersistenceException, NotificationServiceException, QuotaExceededException {
         LOGGER.log(Level.INFO, "POST /api/nodes/{0}", id);
         String nid;
         if (dto.getContent() != null) {
@@ -139,16 +450,53 @@ public class NodesResource {
         return Response.created(createdUri).build();
     }
 
+    @CheckQuota(files = 0)
+    @POST
+    @Path("{id}/bulk")
+    @Transactional(Transactional.TxType.REQUIRED)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Consumes(MediaType.MULTIPART_FORM_DATA)
+    public Response bulk(@PathParam("id") final String id, MultipartFormDataInput input) throws NodeNotFoundException, NodeTypeException,
+            NodeAlreadyExistsException, DataNotFoundException, DataStoreException, NodePersistenceException, NotificationServiceException, IOException,
+            QuotaExceededException {
+        LOGGER.log(Level.INFO, "POST /api/nodes/{0}/bulk", id);
+        List<FileUpload> uploads = new ArrayList<>();
+        for (InputPart part : input.getParts()) {
+            String filename = filename(part.getHeaders().getFirst("Content-Disposition"));
+            if (filename != null) {
+                uploads.add(upload(filename, part.getBody(InputStream.class, null)));
+            }
+        }
+        quota.admit(0, uploads.size());
+        return Response.status(Response.Status.CREATED).entity(service.addAll(id, uploads.iterator())).build();
+    }
+
+    @CheckQuota(files = 0)
+    @POST
+    @Path("{id}/bulk")
+    @Transactional(Transactional.TxType.REQUIRED)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Consumes("application/zip")
+    public Response bulkArchive(@PathParam("id") final String id, InputStream data) throws NodeNotFoundException, NodeTypeException,
+            NodeAlreadyExistsException, DataNotFoundException, DataStoreException, NodePersistenceException, NotificationServiceException, QuotaExceededException {
+        LOGGER.log(Level.INFO, "POST /api/nodes/{0}/bulk (zip)", id);
+        try (ZipInputStream zis = new ZipInputStream(data)) {
+            return Response.status(Response.Status.CREATED).entity(service.addAll(id, new ZipUploadIterator(zis))).build();
+        } catch (IOException | UncheckedIOException e) {
+            throw new BadRequestException("Unable to read zip archive", e);
+        }
+    }
+
+    @CheckQuota(files = 0)
     @PUT
     @Path("{id}/{name}")
     @Transactional(Transactional.TxType.REQUIRED)
     @Produces(MediaType.APPLICATION_JSON)
     @Consumes(MediaType.MULTIPART_FORM_DATA)
     public Response update(@PathParam("id") final String id, @PathParam("name") String name, @FormParam("data") InputStream data) throws
-            NodeNotEmptyException, NodeNotFoundException, NodeTypeException, NodeAlreadyExistsException, DataStoreException, DataNotFoundException, NodePersistenceException, NotificationServiceException {
+            NodeNotFoundException, NodeTypeException, DataStoreException, DataNotFoundException, NodePersistenceException, NotificationServiceException, QuotaExceededException {
         LOGGER.log(Level.INFO, "PUT /api/nodes/{0}/{1}", new Object[]{id, name});
-        service.remove(id, name);
-        service.add(id, name, data);
+        service.update(id, name, data);
         return Response.noContent().build();
     }
 
@@ -162,4 +510,91 @@ public class NodesResource {
         return Response.noContent().build();
     }
 
+    private static Date lastModified(long millis) {
+        // HTTP dates have a one second resolution, comparisons must not be defeated by the milliseconds.
+        return new Date(millis - millis % 1000);
+    }
+
+    private static CacheControl revalidate() {
+        CacheControl control = new CacheControl();
+        control.setPrivate(true);
+        control.setNoCache(true);
+        control.setNoTransform(false);
+        return control;
+    }
+
+    private static CacheControl immutable() {
+        CacheControl control = new CacheControl();
+        control.setPrivate(true);
+        control.setMaxAge(31536000);
+        control.setNoTransform(false);
+        control.getCacheExtension().put("immutable", null);
+        return control;
+    }
+
+    static String filename(String disposition) {
+        if (disposition == null) {
+            return null;
+        }
+        for (String param : disposition.split(";")) {
+            String value = param.trim();
+            if (value.startsWith("filename=")) {
+                return value.substring("filename=".length()).replace("\"", "");
+            }
+        }
+        return null;
+    }
+
+    static FileUpload upload(String path, InputStream data) {
+        for (String segment : path.split("/", -1)) {
+            if (segment.isEmpty() || segment.equals(".") || segment.equals("..") || !segment.matches(ValidationPattern.FILE_PATTERN)) {
+                throw new BadRequestException("Invalid upload path: " + path);
+            }
+        }
+        return new FileUpload(path, data);
+    }
+
+    static class ZipUploadIterator implements Iterator<FileUpload> {
+
+        private final ZipInputStream zis;
+        private ZipEntry next;
+
+        ZipUploadIterator(ZipInputStream zis) {
+            this.zis = zis;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                while (next == null) {
+                    ZipEntry entry = zis.getNextEntry();
+                    if (entry == null) {
+                        return false;
+                    }
+                    if (!entry.isDirectory()) {
+                        next = entry;
+                    }
+                }
+                return true;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public FileUpload next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ZipEntry entry = next;
+            next = null;
+            // The data store closes the stream once stored, the entry stream must not close the whole archive.
+            return upload(entry.getName(), new FilterInputStream(zis) {
+                @Override
+                public void close() {
+                }
+            });
+        }
+    }
+
 }
@@ -34,6 +34,7 @@ import jakarta.ws.rs.core.StreamingOutput;
 
 import java.io.InputStream;
 import java.util.List;
+import java.util.concurrent.CompletionStage;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -46,7 +47,7 @@ public class SearchResource {
 
     @GET
     @Produces(MediaType.APPLICATION_JSON)
-    public List<SearchResult> search(@QueryParam("q") String query) throws SearchServiceException {
+    public CompletionStage<List<SearchResult>> search(@QueryParam("q") String query) {
         LOGGER.log(Level.INFO, "GET /api/search");
         return service.search(query);
     }
@@ -55,7 +56,7 @@ public class SearchResource {
     @Path("conversation")
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public SearchConversationResult converse(SearchConversationRequest request) throws SearchServiceException {
+    public CompletionStage<SearchConversationResult> converse(SearchConversationRequest request) {
         LOGGER.log(Level.INFO, "POST /api/search/conversation");
         if (request == null) {
             return service.converse(null, null);
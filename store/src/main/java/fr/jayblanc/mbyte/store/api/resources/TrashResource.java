@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.api.resources;
+
+import fr.jayblanc.mbyte.store.api.filter.OnlyOwner;
+import fr.jayblanc.mbyte.store.files.FileService;
+import fr.jayblanc.mbyte.store.files.entity.Node;
+import fr.jayblanc.mbyte.store.files.exceptions.NodeAlreadyExistsException;
+import fr.jayblanc.mbyte.store.files.exceptions.NodeNotFoundException;
+import fr.jayblanc.mbyte.store.files.exceptions.NodeTypeException;
+import fr.jayblanc.mbyte.store.notification.NotificationServiceException;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import jakarta.ws.rs.DELETE;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+@Path("trash")
+@OnlyOwner
+public class TrashResource {
+
+    private static final Logger LOGGER = Logger.getLogger(TrashResource.class.getName());
+
+    @Inject FileService service;
+
+    @GET
+    @Transactional(Transactional.TxType.REQUIRED)
+    @Produces(MediaType.APPLICATION_JSON)
+    public List<Node> list() throws NodeNotFoundException {
+        LOGGER.log(Level.INFO, "GET /api/trash");
+        return service.list(FileService.TRASH_NODE_ID);
+    }
+
+    @POST
+    @Path("{id}/restore")
+    @Transactional(Transactional.TxType.REQUIRED)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Node restore(@PathParam("id") final String id) throws NodeNotFoundException, NodeAlreadyExistsException, NodeTypeException, NotificationServiceException {
+        LOGGER.log(Level.INFO, "POST /api/trash/{0}/restore", id);
+        service.restoreFromTrash(id);
+        return service.get(id);
+    }
+
+    @DELETE
+    @Path("{id}")
+    @Transactional(Transactional.TxType.REQUIRED)
+    public Response purge(@PathParam("id") final String id) throws NodeNotFoundException, NodeTypeException {
+        LOGGER.log(Level.INFO, "DELETE /api/trash/{0}", id);
+        service.purge(id);
+        return Response.noContent().build();
+    }
+}
@@ -14,7 +14,7 @@
  * You should have received a copy of the GNU General Public License
  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
  */
-package fr.jayblanc.mbyte.store.index;
+package fr.jayblanc.mbyte.store.changes;
 
 import fr.jayblanc.mbyte.store.notification.NotificationService;
 import fr.jayblanc.mbyte.store.notification.entity.Event;
@@ -22,20 +22,13 @@ import io.quarkus.vertx.ConsumeEvent;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 
-import java.util.logging.Level;
-import java.util.logging.Logger;
-
 @ApplicationScoped
-public class IndexStoreListenerBean {
-
-    private static final Logger LOGGER = Logger.getLogger(IndexStoreListenerBean.class.getName());
+public class ChangeListenerBean {
 
-    @Inject IndexStoreServiceWorker worker;
+    @Inject ChangeService changes;
 
     @ConsumeEvent(NotificationService.NOTIFICATION_TOPIC)
     public void onMessage(Event event) {
-        LOGGER.log(Level.INFO, "Index Store listener event received");
-        worker.submit(event.getEventType(), event.getSourceId());
+        changes.signal();
     }
 }
-
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.changes;
+
+import fr.jayblanc.mbyte.store.changes.entity.NodeChange;
+import fr.jayblanc.mbyte.store.files.entity.Node;
+
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+
+public interface ChangeService {
+
+    void record(String type, Node node);
+
+    /**
+     * @return the changes positioned after the cursor, in feed order
+     */
+    List<NodeChange> list(long cursor, int limit) throws ChangeCursorExpiredException;
+
+    /**
+     * Same as {@link #list(long, int)} but, while there is no change after the cursor, waits up to the given seconds for
+     * one without holding a thread. The stage fails with a {@link ChangeCursorExpiredException} when the cursor is
+     * older than the journal horizon.
+     */
+    CompletionStage<List<NodeChange>> watch(long cursor, int limit, int wait);
+
+    ChangeSnapshot snapshot();
+
+    /**
+     * @return the position of the latest change in the feed, consistent with the current state of nodes
+     */
+    long cursor();
+
+    /**
+     * Wakes up the watches waiting for a change, called once a transaction that recorded changes is committed.
+     */
+    void signal();
+
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.changes;
+
+import fr.jayblanc.mbyte.store.changes.entity.NodeChange;
+import fr.jayblanc.mbyte.store.changes.entity.NodeChangeJournal;
+import fr.jayblanc.mbyte.store.files.entity.Node;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.transaction.Transactional;
+import org.eclipse.microprofile.context.ManagedExecutor;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writers only insert their changes and never wait for each other. A change gets its position in the feed once its
+ * transaction and every older one are over: the sequencer numbers, in one short transaction, the changes of the
+ * transactions older than the oldest one still running (txid_snapshot_xmin). A position is thus never handed out below
+ * one a reader may already have seen, and a change committed later can not be skipped. The last position handed out
+ * and the compaction horizon are kept in the journal row.
+ */
+@ApplicationScoped
+public class ChangeServiceBean implements ChangeService {
+
+    private static final Logger LOGGER = Logger.getLogger(ChangeServiceBean.class.getName());
+    private static final int SKIP_LOCKED = -2;
+    private static final String SEQUENCE_QUERY = "UPDATE node_change c SET position = p.position "
+            + "FROM (SELECT seq, ?1 + row_number() OVER (ORDER BY tx, seq) AS position FROM node_change "
+            + "WHERE position IS NULL AND tx < txid_snapshot_xmin(txid_current_snapshot())) p WHERE c.seq = p.seq";
+
+    @Inject ChangeConfig config;
+    @Inject EntityManager em;
+    @Inject ManagedExecutor executor;
+
+    private final Set<CompletableFuture<Void>> waiters = ConcurrentHashMap.newKeySet();
+
+    @Override
+    @Transactional(Transactional.TxType.MANDATORY)
+    public void record(String type, Node node) {
+        LOGGER.log(Level.FINE, "Recording change " + type + " for node: " + node.getId());
+        em.persist(new NodeChange(type, node.getId(), node.getParent(), node.getName()));
+    }
+
+    @Override
+    public List<NodeChange> list(long cursor, int limit) throws ChangeCursorExpiredException {
+        LOGGER.log(Level.FINE, "Listing changes after cursor: " + cursor);
+        this.sequence();
+        Page page = this.read(cursor, limit);
+        if (page.expired()) {
+            throw new ChangeCursorExpiredException("cursor " + cursor + " is older than the journal horizon, a new snapshot is needed");
+        }
+        return page.changes();
+    }
+
+    @Override
+    public CompletionStage<List<NodeChange>> watch(long cursor, int limit, int wait) {
+        LOGGER.log(Level.FINE, "Watching changes after cursor: " + cursor);
+        long deadline = System.currentTimeMillis() + Math.min(Math.max(wait, 0), config.maxWaitSeconds()) * 1000L;
+        return this.poll(cursor, limit, deadline);
+    }
+
+    private CompletionStage<List<NodeChange>> poll(long cursor, int limit, long deadline) {
+        // Registered before reading, so that a change committed meanwhile wakes this poll up.
+        CompletableFuture<Void> wake = new CompletableFuture<>();
+        waiters.add(wake);
+        Page page;
+        try {
+            this.sequence();
+            page = this.read(cursor, limit);
+        } catch (RuntimeException e) {
+            waiters.remove(wake);
+            return CompletableFuture.failedFuture(e);
+        }
+        if (page.expired()) {
+            waiters.remove(wake);
+            return CompletableFuture.failedFuture(new ChangeCursorExpiredException("cursor " + cursor + " is older than the journal horizon, a new snapshot is needed"));
+        }
+        long remaining = deadline - System.currentTimeMillis();
+        if (!page.changes().isEmpty() || remaining <= 0) {
+            waiters.remove(wake);
+            return CompletableFuture.completedFuture(page.changes());
+        }
+        // No thread is held while waiting: the poll resumes on the executor once woken up or at the deadline.
+        return wake.completeOnTimeout(null, remaining, TimeUnit.MILLISECONDS).thenComposeAsync(ignored -> {
+            waiters.remove(wake);
+            return this.poll(cursor, limit, deadline);
+        }, executor);
+    }
+
+    /**
+     * Changes are read before the horizon: if a compaction removed some of them in between, the horizon read next
+     * reflects it.
+     */
+    private Page read(long cursor, int limit) {
+        return QuarkusTransaction.requiringNew().call(() -> {
+            List<NodeChange> changes = em.createNamedQuery("NodeChange.findAfter", NodeChange.class)
+                    .setParameter("cursor", cursor).setMaxResults(limit).getResultList();
+            NodeChangeJournal journal = em.find(NodeChangeJournal.class, NodeChangeJournal.JOURNAL_ID);
+            return new Page(changes, cursor < journal.getHorizon());
+        });
+    }
+
+    /**
+     * Positions the changes of the transactions that are over. Only one sequencer runs at a time, the others skip.
+     *
+     * @return the number of changes positioned
+     */
+    int sequence() {
+        int sequenced = QuarkusTransaction.requiringNew().call(() -> {
+            NodeChangeJournal journal = em.find(NodeChangeJournal.class, NodeChangeJournal.JOURNAL_ID, LockModeType.PESSIMISTIC_WRITE,
+                    Map.of("jakarta.persistence.lock.timeout", SKIP_LOCKED));
+            if (journal == null) {
+                return 0;
+            }
+            int count = em.createNativeQuery(SEQUENCE_QUERY).setParameter(1, journal.getHead()).executeUpdate();
+            journal.setHead(journal.getHead() + count);
+            return count;
+        });
+        if (sequenced > 0) {
+            LOGGER.log(Level.FINE, "{0} change(s) positioned in the journal", sequenced);
+            this.signal();
+        }
+        return sequenced;
+    }
+
+    @Override
+    public ChangeSnapshot snapshot() {
+        LOGGER.log(Level.INFO, "Building changes snapshot");
+        this.sequence();
+        // The head is read before the nodes: under read committed the nodes then reflect at least every change up to it.
+        return QuarkusTransaction.requiringNew().call(() -> {
+            long cursor = em.find(NodeChangeJournal.class, NodeChangeJournal.JOURNAL_ID).getHead();
+            List<Node> nodes = em.createNamedQuery("Node.findAllLive", Node.class).getResultList();
+            return new ChangeSnapshot(cursor, nodes);
+        });
+    }
+
+    @Override
+    public long cursor() {
+        this.sequence();
+        return QuarkusTransaction.requiringNew().call(() -> em.find(NodeChangeJournal.class, NodeChangeJournal.JOURNAL_ID).getHead());
+    }
+
+    @Override
+    public void signal() {
+        for (CompletableFuture<Void> waiter : waiters) {
+            waiter.complete(null);
+        }
+    }
+
+    @Scheduled(every = "1h", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    public void compact() {
+        long now = System.currentTimeMillis();
+        this.compact(now - config.compactAfterHours() * 3600000L, now - config.retentionDays() * 86400000L);
+    }
+
+    /**
+     * Superseded changes are removed without moving the horizon: the latest change of their node is kept, so a client
+     * behind them still converges. Expired changes are removed up to the last position created before the limit, which
+     * becomes the horizon.
+     */
+    void compact(long supersededLimit, long expiredLimit) {
+        QuarkusTransaction.requiringNew().run(() -> {
+            NodeChangeJournal journal = em.find(NodeChangeJournal.class, NodeChangeJournal.JOURNAL_ID, LockModeType.PESSIMISTIC_WRITE);
+            int superseded = em.createNamedQuery("NodeChange.deleteSuperseded").setParameter("limit", supersededLimit).executeUpdate();
+            Long horizon = em.createNamedQuery("NodeChange.findLastBefore", Long.class).setParameter("limit", expiredLimit).getSingleResult();
+            int expired = 0;
+            if (horizon != null && horizon > journal.getHorizon()) {
+                expired = em.createNamedQuery("NodeChange.deleteUpTo").setParameter("position", horizon).executeUpdate();
+                journal.setHorizon(horizon);
+            }
+            LOGGER.log(Level.INFO, "Changes journal compacted, {0} superseded and {1} expired change(s) removed, horizon is {2}",
+                    new Object[]{superseded, expired, journal.getHorizon()});
+        });
+    }
+
+    private record Page(List<NodeChange> changes, boolean expired) {
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.changes.entity;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+@Entity
+@NamedQueries({
+        @NamedQuery(name = "NodeChange.findAfter", query = "SELECT c FROM NodeChange c WHERE c.position > :cursor ORDER BY c.position ASC"),
+        @NamedQuery(name = "NodeChange.findLastBefore", query = "SELECT max(c.position) FROM NodeChange c WHERE c.creation < :limit"),
+        @NamedQuery(name = "NodeChange.deleteSuperseded", query = "DELETE FROM NodeChange c WHERE c.creation < :limit AND c.position IS NOT NULL AND EXISTS (SELECT o FROM NodeChange o WHERE o.node = c.node AND o.position > c.position)"),
+        @NamedQuery(name = "NodeChange.deleteUpTo", query = "DELETE FROM NodeChange c WHERE c.position <= :position"),
+})@Table(name = "node_change", indexes = {
+        @Index(name = "node_change_node", columnList = "node"),
+        @Index(name = "node_change_creation", columnList = "creation"),
+        @Index(name = "node_change_position", columnList = "position"),
+})
+public class NodeChange implements Serializable {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "node_change_seq")
+    @SequenceGenerator(name = "node_change_seq", sequenceName = "node_change_seq", allocationSize = 50)
+    private long seq;
+    @Column(length = 50)
+    private String type;
+    @Column(length = 50)
+    private String node;
+    @Column(length = 50)
+    private String parent;
+    private String name;
+    private long creation;
+    private Long position;
+
+    public NodeChange() {
+    }
+
+    public NodeChange(String type, String node, String parent, String name) {
+        this.type = type;
+        this.node = node;
+        this.parent = parent;
+        this.name = name;
+        this.creation = System.currentTimeMillis();
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(long seq) {
+        this.seq = seq;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public String getNode() {
+        return node;
+    }
+
+    public void setNode(String node) {
+        this.node = node;
+    }
+
+    public String getParent() {
+        return parent;
+    }
+
+    public void setParent(String parent) {
+        this.parent = parent;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public long getCreation() {
+        return creation;
+    }
+
+    public void setCreation(long creation) {
+        this.creation = creation;
+    }
+
+    /**
+     * @return the position of the change in the feed, null until its transaction and all older ones are over
+     */
+    public Long getPosition() {
+        return position;
+    }
+
+    public void setPosition(Long position) {
+        this.position = position;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        NodeChange that = (NodeChange) o;
+        return seq == that.seq && creation == that.creation && Objects.equals(type, that.type) && Objects.equals(node, that.node) && Objects.equals(parent, that.parent) && Objects.equals(name, that.name) && Objects.equals(position, that.position);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(seq, type, node, parent, name, creation, position);
+    }
+
+    @Override
+    public String toString() {
+        return "NodeChange{" +
+                "seq=" + seq +
+                ", type='" + type + '\'' +
+                ", node='" + node + '\'' +
+                ", parent='" + parent + '\'' +
+                ", name='" + name + '\'' +
+                ", creation=" + creation +
+                ", position=" + position +
+                '}';
+    }
+}
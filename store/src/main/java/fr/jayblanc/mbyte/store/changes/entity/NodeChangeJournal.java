@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.changes.entity;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * State of the changes journal: the last position handed out to a change and the compaction horizon, changes at or
+ * below which may have been removed.
+ */
+@Entity
+@Table(name = "node_change_journal")
+public class NodeChangeJournal implements Serializable {
+
+    public static final String JOURNAL_ID = "journal";
+
+    @Id
+    @Column(length = 50)
+    private String id;
+    private long head;
+    private long horizon;
+
+    public NodeChangeJournal() {
+        this.id = JOURNAL_ID;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public long getHead() {
+        return head;
+    }
+
+    public void setHead(long head) {
+        this.head = head;
+    }
+
+    public long getHorizon() {
+        return horizon;
+    }
+
+    public void setHorizon(long horizon) {
+        this.horizon = horizon;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        NodeChangeJournal that = (NodeChangeJournal) o;
+        return head == that.head && horizon == that.horizon && Objects.equals(id, that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, head, horizon);
+    }
+
+    @Override
+    public String toString() {
+        return "NodeChangeJournal{" +
+                "id='" + id + '\'' +
+                ", head=" + head +
+                ", horizon=" + horizon +
+                '}';
+    }
+}
@@ -20,6 +20,10 @@ import fr.jayblanc.mbyte.store.data.exception.DataNotFoundException;
 import fr.jayblanc.mbyte.store.data.exception.DataStoreException;
 
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.util.stream.Stream;
 
 /**
  * @author Jerome Blanchard
@@ -30,8 +34,14 @@ public interface DataStore {
 
     String put(InputStream is) throws DataStoreException;
 
+    String ingest(Path file, boolean link) throws DataStoreException;
+
     InputStream get(String key) throws DataStoreException, DataNotFoundException;
 
+    long copy(String key, OutputStream os) throws DataStoreException, DataNotFoundException;
+
+    SeekableByteChannel open(String key) throws DataStoreException, DataNotFoundException;
+
     String type(String key, String name) throws DataStoreException, DataNotFoundException;
 
     long size(String key) throws DataStoreException, DataNotFoundException;
@@ -40,4 +50,16 @@ public interface DataStore {
 
     void delete(String key) throws DataStoreException;
 
+    /**
+     * Deletes the blob unless it has been written, or returned again by a deduplicated put, at or after the given time.
+     *
+     * @return true if the blob was deleted
+     */
+    boolean delete(String key, long before) throws DataStoreException;
+
+    /**
+     * Keys of all the stored blobs, the stream must be closed.
+     */
+    Stream<String> keys() throws DataStoreException;
+
 }
@@ -32,11 +32,23 @@ import org.xml.sax.SAXException;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Set;
 import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 /**
  * @author Jerome Blanchard
@@ -45,14 +57,17 @@ import java.util.logging.Logger;
 public class DataStoreBean implements DataStore {
 
     private static final Logger LOGGER = Logger.getLogger(DataStore.class.getName());
+    private static final Pattern KEY_PATTERN = Pattern.compile("[0-9a-f]{64}");
 
     @Inject
     DataStoreConfig config;
 
+    private final Object[] locks = new Object[64];
     private Path base;
     private Tika tika;
 
     public DataStoreBean() {
+        Arrays.setAll(locks, i -> new Object());
     }
 
     @Startup
@@ -80,18 +95,76 @@ public class DataStoreBean implements DataStore {
         try (HashedFilterInputStream his = HashedFilterInputStream.SHA256(is)) {
             Files.copy(his, tmpfile, StandardCopyOption.REPLACE_EXISTING);
             String key = his.getHash();
-            Path file = Paths.get(base.toString(), key);
-            if ( !Files.exists(file) ) {
-                Files.move(tmpfile, file);
-            } else {
-                Files.delete(tmpfile);
-            }
+            this.store(tmpfile, key);
             return key;
         } catch (IOException | NoSuchAlgorithmException e) {
+            try {
+                Files.deleteIfExists(tmpfile);
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "unable to delete temporary file: " + tmpfile, ex);
+            }
             throw new DataStoreException("unexpected error during stream copy", e);
         }
     }
 
+    @Override
+    public String ingest(Path file, boolean link) throws DataStoreException {
+        LOGGER.log(Level.FINE, "Ingest file: " + file);
+        String key;
+        try {
+            key = this.hash(file);
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new DataStoreException("unexpected error while hashing file: " + file, e);
+        }
+        Path target = Paths.get(base.toString(), key);
+        synchronized (this.lock(key)) {
+            try {
+                if ( Files.exists(target) ) {
+                    Files.setLastModifiedTime(target, FileTime.fromMillis(System.currentTimeMillis()));
+                    return key;
+                }
+            } catch (IOException e) {
+                throw new DataStoreException("unexpected error while ingesting file: " + file, e);
+            }
+        }
+        Path tmpfile = Paths.get(base.toString(), UUID.randomUUID().toString());
+        try {
+            String stored = null;
+            if ( link && this.isReadOnly(file) ) {
+                // A hard link shares the source inode: no byte is copied, which is only safe for a source that cannot be
+                // modified. The linked inode is hashed again to catch a change made before the link was created, and
+                // touched like any stored blob, which is refused when the source belongs to another user.
+                try {
+                    Files.createLink(tmpfile, file);
+                    Files.setLastModifiedTime(tmpfile, FileTime.fromMillis(System.currentTimeMillis()));
+                    stored = this.hash(tmpfile);
+                } catch (IOException | UnsupportedOperationException e) {
+                    LOGGER.log(Level.FINE, "Unable to link file " + file + " into storage, falling back to copy: " + e.getMessage());
+                    Files.deleteIfExists(tmpfile);
+                }
+            }
+            if ( stored == null ) {
+                try (HashedFilterInputStream his = HashedFilterInputStream.SHA256(Files.newInputStream(file, StandardOpenOption.READ))) {
+                    Files.copy(his, tmpfile, StandardCopyOption.REPLACE_EXISTING);
+                    stored = his.getHash();
+                }
+            }
+            if ( !key.equals(stored) ) {
+                throw new DataStoreException("file: " + file + " has been modified while being ingested");
+            }
+            this.store(tmpfile, key);
+            return key;
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new DataStoreException("unexpected error while ingesting file: " + file, e);
+        } finally {
+            try {
+                Files.deleteIfExists(tmpfile);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "unable to delete temporary file: " + tmpfile, e);
+            }
+        }
+    }
+
     @Override
     public InputStream get(String key) throws DataStoreException, DataNotFoundException {
         Path file = Paths.get(base.toString(), key);
@@ -105,6 +178,38 @@ public class DataStoreBean implements DataStore {
         }
     }
 
+    @Override
+    public long copy(String key, OutputStream os) throws DataStoreException, DataNotFoundException {
+        Path file = Paths.get(base.toString(), key);
+        if ( !Files.exists(file) ) {
+            throw new DataNotFoundException("file not found in storage for key: " + key);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(os);
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                position += channel.transferTo(position, size - position, target);
+            }
+            return position;
+        } catch (IOException e) {
+            throw new DataStoreException("unexpected error while copying stream", e);
+        }
+    }
+
+    @Override
+    public SeekableByteChannel open(String key) throws DataStoreException, DataNotFoundException {
+        Path file = Paths.get(base.toString(), key);
+        if ( !Files.exists(file) ) {
+            throw new DataNotFoundException("file not found in storage for key: " + key);
+        }
+        try {
+            return FileChannel.open(file, StandardOpenOption.READ);
+        } catch (IOException e) {
+            throw new DataStoreException("unexpected error while opening channel", e);
+        }
+    }
+
     @Override
     public String type(String key, String name) throws DataNotFoundException {
         LOGGER.log(Level.FINE, "Extract type for key: " + key);
@@ -153,10 +258,79 @@ public class DataStoreBean implements DataStore {
         }
     }
 
+    @Override
+    public boolean delete(String key, long before) throws DataStoreException {
+        Path file = Paths.get(base.toString(), key);
+        synchronized (this.lock(key)) {
+            try {
+                if ( !Files.exists(file) || Files.getLastModifiedTime(file).toMillis() >= before ) {
+                    return false;
+                }
+                LOGGER.log(Level.FINE, "Delete data for key: " + key);
+                Files.delete(file);
+                return true;
+            } catch (IOException e) {
+                throw new DataStoreException("unexpected error while deleting file", e);
+            }
+        }
+    }
+
+    @Override
+    public Stream<String> keys() throws DataStoreException {
+        try {
+            return Files.list(base).map(path -> path.getFileName().toString()).filter(name -> KEY_PATTERN.matcher(name).matches());
+        } catch (IOException e) {
+            throw new DataStoreException("unexpected error while listing files", e);
+        }
+    }
+
     @Override
     public void delete(String key) throws DataStoreException {
-        throw new DataStoreException("NOT IMPLEMENTED");
+        LOGGER.log(Level.FINE, "Delete data for key: " + key);
+        Path file = Paths.get(base.toString(), key);
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new DataStoreException("unexpected error while deleting file", e);
+        }
     }
 
+    /**
+     * Moves a hashed temporary file to its key, or drops it if the content is already stored. Either way the blob is
+     * touched under the key lock, so the collector, which only deletes blobs left untouched for a while and takes the same
+     * lock, never deletes a blob just returned to a caller that has not committed its reference yet.
+     */
+    private void store(Path tmpfile, String key) throws IOException {
+        Path file = Paths.get(base.toString(), key);
+        synchronized (this.lock(key)) {
+            if ( Files.exists(file) ) {
+                Files.delete(tmpfile);
+            } else {
+                Files.move(tmpfile, file, StandardCopyOption.ATOMIC_MOVE);
+            }
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        }
+    }
+
+    private Object lock(String key) {
+        return locks[Math.floorMod(key.hashCode(), locks.length)];
+    }
+
+    private boolean isReadOnly(Path file) throws IOException {
+        // Permission bits rather than an access check, which always succeeds for a privileged user.
+        if ( Files.getFileStore(file).supportsFileAttributeView(PosixFileAttributeView.class) ) {
+            Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(file);
+            return !permissions.contains(PosixFilePermission.OWNER_WRITE) && !permissions.contains(PosixFilePermission.GROUP_WRITE)
+                    && !permissions.contains(PosixFilePermission.OTHERS_WRITE);
+        }
+        return !Files.isWritable(file);
+    }
+
+    private String hash(Path file) throws IOException, NoSuchAlgorithmException {
+        try (HashedFilterInputStream his = HashedFilterInputStream.SHA256(Files.newInputStream(file, StandardOpenOption.READ))) {
+            his.transferTo(OutputStream.nullOutputStream());
+            return his.getHash();
+        }
+    }
 
 }
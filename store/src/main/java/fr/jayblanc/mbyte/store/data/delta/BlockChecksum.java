@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.data.delta;
+
+public class BlockChecksum {
+
+    private int index;
+    private int weak;
+    private String strong;
+
+    public BlockChecksum() {
+    }
+
+    public BlockChecksum(int index, int weak, String strong) {
+        this.index = index;
+        this.weak = weak;
+        this.strong = strong;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public int getWeak() {
+        return weak;
+    }
+
+    public void setWeak(int weak) {
+        this.weak = weak;
+    }
+
+    public String getStrong() {
+        return strong;
+    }
+
+    public void setStrong(String strong) {
+        this.strong = strong;
+    }
+
+    @Override
+    public String toString() {
+        return "BlockChecksum{" +
+                "index=" + index +
+                ", weak=" + weak +
+                ", strong='" + strong + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.data.delta;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * Rebuilds a content from a delta and the base content the delta was computed against. The delta is a stream of:
+ * <pre>
+ *   int MAGIC, int blockSize
+ *   then instructions, each starting with a byte:
+ *     COPY    int firstBlock, int count   copy count blocks of the base content
+ *     LITERAL int length, bytes           insert length bytes carried by the delta
+ *     END                                 mandatory last instruction
+ * </pre>
+ * Bytes are produced on demand so the rebuilt content can be streamed into a hashing put without being buffered.
+ */
+public class DeltaInputStream extends InputStream {
+
+    public static final int MAGIC = 0x6d424454;
+    public static final int END = 0;
+    public static final int COPY = 1;
+    public static final int LITERAL = 2;
+
+    private final DataInputStream delta;
+    private final SeekableByteChannel base;
+    private int blockSize;
+    private boolean started = false;
+    private boolean finished = false;
+    private long copyPosition;
+    private long copyRemaining;
+    private long literalRemaining;
+
+    public DeltaInputStream(InputStream delta, SeekableByteChannel base) {
+        this.delta = new DataInputStream(delta);
+        this.base = base;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        int read = this.read(one, 0, 1);
+        return (read < 0) ? -1 : one[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        while (!finished) {
+            if (copyRemaining > 0) {
+                base.position(copyPosition);
+                int read = base.read(ByteBuffer.wrap(buffer, offset, (int) Math.min(length, copyRemaining)));
+                if (read <= 0) {
+                    throw new DeltaFormatException("copy instruction goes beyond the end of the base content");
+                }
+                copyPosition += read;
+                copyRemaining -= read;
+                return read;
+            }
+            if (literalRemaining > 0) {
+                int read = delta.read(buffer, offset, (int) Math.min(length, literalRemaining));
+                if (read < 0) {
+                    throw new DeltaFormatException("delta ends in the middle of a literal");
+                }
+                literalRemaining -= read;
+                return read;
+            }
+            this.next();
+        }
+        return -1;
+    }
+
+    private void next() throws IOException {
+        try {
+            if (!started) {
+                if (delta.readInt() != MAGIC) {
+                    throw new DeltaFormatException("delta does not start with the expected magic number");
+                }
+                blockSize = delta.readInt();
+                if (blockSize < DeltaSignature.MIN_BLOCK_SIZE || blockSize > DeltaSignature.MAX_BLOCK_SIZE) {
+                    throw new DeltaFormatException("invalid block size: " + blockSize);
+                }
+                started = true;
+                return;
+            }
+            int instruction = delta.read();
+            switch (instruction) {
+                case END -> finished = true;
+                case COPY -> {
+                    int first = delta.readInt();
+                    int count = delta.readInt();
+                    copyPosition = (long) first * blockSize;
+                    if (first < 0 || count < 0 || copyPosition >= base.size()) {
+                        throw new DeltaFormatException("invalid copy instruction, first block: " + first + ", count: " + count);
+                    }
+                    copyRemaining = Math.min((long) count * blockSize, base.size() - copyPosition);
+                }
+                case LITERAL -> {
+                    literalRemaining = delta.readInt();
+                    if (literalRemaining < 0) {
+                        throw new DeltaFormatException("invalid literal length: " + literalRemaining);
+                    }
+                }
+                case -1 -> throw new DeltaFormatException("delta ends without END instruction");
+                default -> throw new DeltaFormatException("unknown delta instruction: " + instruction);
+            }
+        } catch (EOFException e) {
+            throw new DeltaFormatException("truncated delta");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        delta.close();
+    }
+}
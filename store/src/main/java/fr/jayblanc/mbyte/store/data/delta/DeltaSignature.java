@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.data.delta;
+
+import org.apache.commons.codec.binary.Hex;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Block checksums of a content, sent to a client so that it can express a new version of that content as references to
+ * the blocks it already has plus literal bytes (see {@link DeltaInputStream}).
+ */
+public class DeltaSignature {
+
+    public static final int MIN_BLOCK_SIZE = 512;
+    public static final int MAX_BLOCK_SIZE = 16 * 1024 * 1024;
+
+    private String content;
+    private long size;
+    private int blockSize;
+    private List<BlockChecksum> blocks;
+
+    public DeltaSignature() {
+        blocks = new ArrayList<>();
+    }
+
+    /**
+     * Same heuristic as rsync: a block size close to the square root of the content size balances the signature length
+     * against the granularity of the matches.
+     */
+    public static int blockSize(long size) {
+        long sqrt = (long) Math.sqrt(size);
+        long rounded = (sqrt + 1023) & ~1023L;
+        return (int) Math.max(MIN_BLOCK_SIZE * 4, Math.min(rounded, MAX_BLOCK_SIZE));
+    }
+
+    public static DeltaSignature compute(String content, InputStream is, int blockSize) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        DeltaSignature signature = new DeltaSignature();
+        signature.content = content;
+        signature.blockSize = blockSize;
+        byte[] buffer = new byte[blockSize];
+        int index = 0;
+        int read;
+        while ((read = is.readNBytes(buffer, 0, blockSize)) > 0) {
+            digest.update(buffer, 0, read);
+            signature.blocks.add(new BlockChecksum(index++, RollingChecksum.of(buffer, 0, read), Hex.encodeHexString(digest.digest())));
+            signature.size += read;
+        }
+        return signature;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public void setBlockSize(int blockSize) {
+        this.blockSize = blockSize;
+    }
+
+    public List<BlockChecksum> getBlocks() {
+        return blocks;
+    }
+
+    public void setBlocks(List<BlockChecksum> blocks) {
+        this.blocks = blocks;
+    }
+}
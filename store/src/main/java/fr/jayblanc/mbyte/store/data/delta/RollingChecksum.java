@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.data.delta;
+
+/**
+ * Weak rolling checksum of a block (the rsync variant of Adler-32). Sliding the window by one byte is O(1), which lets a
+ * client look for known blocks at every offset of the new content.
+ */
+public class RollingChecksum {
+
+    private static final int MASK = 0xffff;
+
+    private int length;
+    private int a;
+    private int b;
+
+    public RollingChecksum() {
+    }
+
+    public static int of(byte[] buffer, int offset, int length) {
+        RollingChecksum checksum = new RollingChecksum();
+        checksum.reset(buffer, offset, length);
+        return checksum.value();
+    }
+
+    public void reset(byte[] buffer, int offset, int length) {
+        this.length = length;
+        this.a = 0;
+        this.b = 0;
+        for (int i = offset; i < offset + length; i++) {
+            a = (a + (buffer[i] & 0xff)) & MASK;
+            b = (b + a) & MASK;
+        }
+    }
+
+    public void roll(byte out, byte in) {
+        a = (a - (out & 0xff) + (in & 0xff)) & MASK;
+        b = (b - length * (out & 0xff) + a) & MASK;
+    }
+
+    public int value() {
+        return (b << 16) | a;
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.files;
+
+import fr.jayblanc.mbyte.store.data.DataStore;
+import fr.jayblanc.mbyte.store.data.exception.DataStoreException;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.Startup;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Blobs are deduplicated by hash in the DataStore, so a content key can be shared by several nodes and versions. Released
+ * keys are only collected candidates: the collector deletes the blob once no node nor version references it anymore.
+ * <p>
+ * A put that deduplicates onto an existing blob touches it, and a reference is only visible once the uploading
+ * transaction commits, so blobs touched within the grace period are never deleted. Candidates only live in memory: the
+ * nightly sweep compares every stored blob with the references, which also collects blobs staged by rolled back requests.
+ */
+@Startup
+@Singleton
+public class BlobCollectorBean {
+
+    private static final Logger LOGGER = Logger.getLogger(BlobCollectorBean.class.getName());
+
+    @Inject DataStore datastore;
+    @Inject EntityManager em;
+    @Inject FileServiceConfig config;
+
+    private final Set<String> candidates = ConcurrentHashMap.newKeySet();
+
+    public void release(String key) {
+        if (key != null && !key.isEmpty()) {
+            LOGGER.log(Level.FINE, "Content released: " + key);
+            candidates.add(key);
+        }
+    }
+
+    public long countReferences(String key) {
+        long nodes = em.createNamedQuery("Node.countContentReferences", Long.class).setParameter("content", key).getSingleResult();
+        long versions = em.createNamedQuery("NodeVersion.countContentReferences", Long.class).setParameter("content", key).getSingleResult();
+        return nodes + versions;
+    }
+
+    @Scheduled(every = "5m", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    @Transactional(Transactional.TxType.REQUIRED)
+    public void collect() {
+        this.collect(this.limit());
+    }
+
+    void collect(long limit) {
+        if (candidates.isEmpty()) {
+            return;
+        }
+        List<String> keys = new ArrayList<>(candidates);
+        LOGGER.log(Level.INFO, "Collecting {0} released content(s)", keys.size());
+        int deleted = 0;
+        for (String key : keys) {
+            candidates.remove(key);
+            if (countReferences(key) > 0) {
+                continue;
+            }
+            try {
+                if (datastore.delete(key, limit)) {
+                    deleted++;
+                } else if (datastore.exists(key)) {
+                    candidates.add(key);
+                }
+            } catch (DataStoreException e) {
+                LOGGER.log(Level.WARNING, "Unable to delete unreferenced content: " + key, e);
+            }
+        }
+        LOGGER.log(Level.INFO, "Content collection done, {0} blob(s) deleted", deleted);
+    }
+
+    @Scheduled(cron = "{store.files.blobs.sweep-cron}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    public void sweep() {
+        this.sweep(this.limit());
+    }
+
+    int sweep(long limit) {
+        LOGGER.log(Level.INFO, "Sweeping unreferenced contents");
+        int deleted = 0;
+        List<String> batch = new ArrayList<>();
+        try (Stream<String> keys = datastore.keys()) {
+            Iterator<String> iterator = keys.iterator();
+            while (iterator.hasNext()) {
+                batch.add(iterator.next());
+                if (batch.size() == config.blobs().sweepBatchSize() || !iterator.hasNext()) {
+                    deleted += this.sweep(batch, limit);
+                    batch.clear();
+                }
+            }
+        } catch (DataStoreException e) {
+            LOGGER.log(Level.WARNING, "Unable to list stored contents", e);
+        }
+        LOGGER.log(Level.INFO, "Content sweep done, {0} blob(s) deleted", deleted);
+        return deleted;
+    }
+
+    private int sweep(List<String> keys, long limit) {
+        Set<String> referenced = QuarkusTransaction.requiringNew().call(() -> {
+            Set<String> contents = new HashSet<>(em.createNamedQuery("Node.findReferencedContents", String.class)
+                    .setParameter("contents", keys).getResultList());
+            contents.addAll(em.createNamedQuery("NodeVersion.findReferencedContents", String.class)
+                    .setParameter("contents", keys).getResultList());
+            return contents;
+        });
+        int deleted = 0;
+        for (String key : keys) {
+            if (referenced.contains(key)) {
+                continue;
+            }
+            try {
+                if (datastore.delete(key, limit)) {
+                    deleted++;
+                }
+            } catch (DataStoreException e) {
+                LOGGER.log(Level.WARNING, "Unable to delete unreferenced content: " + key, e);
+            }
+        }
+        return deleted;
+    }
+
+    private long limit() {
+        return System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(config.blobs().graceMinutes());
+    }
+
+}
@@ -16,37 +16,88 @@
  */
 package fr.jayblanc.mbyte.store.files;
 
+import fr.jayblanc.mbyte.store.data.delta.DeltaSignature;
 import fr.jayblanc.mbyte.store.data.exception.DataNotFoundException;
 import fr.jayblanc.mbyte.store.data.exception.DataStoreException;
 import fr.jayblanc.mbyte.store.files.entity.Node;
+import fr.jayblanc.mbyte.store.files.entity.NodeAggregate;
+import fr.jayblanc.mbyte.store.files.entity.NodeVersion;
 import fr.jayblanc.mbyte.store.files.exceptions.*;
 import fr.jayblanc.mbyte.store.notification.NotificationServiceException;
+import fr.jayblanc.mbyte.store.quota.QuotaExceededException;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public interface FileService {
 
     String ROOT_NODE_ID = "root";
+    String TRASH_NODE_ID = "trash";
     String TREE_NODE_MIMETYPE = "application/fs-folder";
 
     List<Node> list(String id) throws NodeNotFoundException;
 
+    NodeAggregate aggregate(String id);
+
+    void browse(String id, int offset, int limit, NodeVisitor visitor) throws NodeNotFoundException, NodeTypeException, IOException;
+
     List<Node> path(String id) throws NodeNotFoundException;
 
+    Map<String, Node> get(Collection<String> ids);
+
+    Map<String, List<Node>> paths(Collection<Node> nodes);
+
     Node get(String id) throws NodeNotFoundException;
 
+    boolean hasContent(String id, String content);
+
     InputStream getContent(String id) throws NodeNotFoundException, NodeTypeException, DataNotFoundException, DataStoreException;
 
+    void archive(String id, OutputStream output) throws NodeNotFoundException, NodeTypeException, DataNotFoundException, DataStoreException;
+
     String add(String parent, String name) throws NodeNotFoundException, NodeAlreadyExistsException, NodeTypeException,
             NodePersistenceException, NotificationServiceException;
 
-    String add(String parent, String name, InputStream content) throws NodeNotFoundException, NodeAlreadyExistsException, NodeTypeException, DataStoreException, DataNotFoundException, NodePersistenceException, NotificationServiceException;
+    String add(String parent, String name, InputStream content) throws NodeNotFoundException, NodeAlreadyExistsException, NodeTypeException, DataStoreException, DataNotFoundException, NodePersistenceException, NotificationServiceException, QuotaExceededException;
+
+    Set<String> conflicts(String parent, Collection<String> paths) throws NodeNotFoundException, NodeTypeException;
+
+    List<String> addAll(String parent, Iterator<FileUpload> uploads) throws NodeNotFoundException, NodeAlreadyExistsException, NodeTypeException, DataStoreException, DataNotFoundException, NodePersistenceException, NotificationServiceException, QuotaExceededException;
+
+    String update(String parent, String name, InputStream content) throws NodeNotFoundException, NodeTypeException, DataStoreException, DataNotFoundException, NodePersistenceException, NotificationServiceException, QuotaExceededException;
+
+    DeltaSignature signature(String id, int blockSize) throws NodeNotFoundException, NodeTypeException, DataStoreException, DataNotFoundException;
+
+    String patch(String id, InputStream delta) throws NodeNotFoundException, NodeTypeException, DataStoreException, DataNotFoundException, NotificationServiceException, QuotaExceededException;
+
+    List<NodeVersion> versions(String id) throws NodeNotFoundException, NodeTypeException;
+
+    NodeVersion getVersion(String id, String version) throws NodeNotFoundException;
+
+    InputStream getVersionContent(String id, String version) throws NodeNotFoundException, DataNotFoundException, DataStoreException;
+
+    void restore(String id, String version) throws NodeNotFoundException, NodeTypeException, NotificationServiceException;
 
     void remove(String parent, String name) throws NodeNotFoundException, NodeNotEmptyException, NodeTypeException, DataStoreException, NodePersistenceException, NotificationServiceException;
 
+    String move(String id, String parent, String name) throws NodeNotFoundException, NodeAlreadyExistsException, NodeTypeException, NotificationServiceException;
+
+    String link(String parent, String name, String content) throws NodeNotFoundException, NodeAlreadyExistsException, NodeTypeException, DataStoreException, DataNotFoundException, NotificationServiceException, QuotaExceededException;
+
+    List<String> apply(List<NodeOperation> operations) throws NodeNotFoundException, NodeAlreadyExistsException, NodeNotEmptyException, NodeTypeException, DataStoreException, DataNotFoundException, NodePersistenceException, NotificationServiceException, QuotaExceededException;
+
+    void restoreFromTrash(String id) throws NodeNotFoundException, NodeAlreadyExistsException, NodeTypeException, NotificationServiceException;
+
+    void purge(String id) throws NodeNotFoundException, NodeTypeException;
+
     String getFullPath(List<Node> nodesPath);
 
-    List<Node> findAll() throws NodeNotFoundException;
+    void walk(String id, TreeVisitor visitor) throws NodeNotFoundException, NodeTypeException, IOException;
 
 }
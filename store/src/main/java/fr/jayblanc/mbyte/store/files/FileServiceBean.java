@@ -17,17 +17,29 @@
 package fr.jayblanc.mbyte.store.files;
 
 import fr.jayblanc.mbyte.store.auth.AuthenticationService;
+import fr.jayblanc.mbyte.store.changes.ChangeService;
 import fr.jayblanc.mbyte.store.data.DataStore;
+import fr.jayblanc.mbyte.store.data.delta.DeltaInputStream;
+import fr.jayblanc.mbyte.store.data.delta.DeltaSignature;
 import fr.jayblanc.mbyte.store.data.exception.DataNotFoundException;
 import fr.jayblanc.mbyte.store.data.exception.DataStoreException;
 import fr.jayblanc.mbyte.store.files.entity.Node;
+import fr.jayblanc.mbyte.store.files.entity.NodeAggregate;
+import fr.jayblanc.mbyte.store.files.entity.NodeInfo;
+import fr.jayblanc.mbyte.store.files.entity.NodeVersion;
 import fr.jayblanc.mbyte.store.files.exceptions.*;
+import fr.jayblanc.mbyte.store.index.IndexStoreServiceWorker;
 import fr.jayblanc.mbyte.store.index.IndexableContent;
 import fr.jayblanc.mbyte.store.index.IndexableContentProvider;
 import fr.jayblanc.mbyte.store.metrics.GenerateMetric;
+import fr.jayblanc.mbyte.store.metrics.MetricsService;
 import fr.jayblanc.mbyte.store.metrics.MetricsSource;
 import fr.jayblanc.mbyte.store.notification.NotificationService;
 import fr.jayblanc.mbyte.store.notification.NotificationServiceException;
+import fr.jayblanc.mbyte.store.quota.QuotaExceededException;
+import fr.jayblanc.mbyte.store.quota.QuotaService;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.scheduler.Scheduled;
 import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
@@ -35,22 +47,45 @@ import jakarta.persistence.EntityManager;
 import jakarta.persistence.LockModeType;
 import jakarta.persistence.PersistenceException;
 import jakarta.transaction.Transactional;
+import org.hibernate.jpa.HibernateHints;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 @MetricsSource
 @ApplicationScoped
 public class FileServiceBean implements FileService, IndexableContentProvider {
 
     private static final Logger LOGGER = Logger.getLogger(FileServiceBean.class.getName());
+    private static final int BROWSE_FETCH_SIZE = 200;
+    private static final int WALK_BATCH_SIZE = 500;
+    private static final Set<String> COMPRESSED_MIMETYPES = Set.of("application/zip", "application/gzip", "application/x-gzip",
+            "application/x-bzip2", "application/x-xz", "application/x-7z-compressed", "application/x-rar-compressed",
+            "application/vnd.rar", "application/zstd", "application/epub+zip", "application/java-archive", "application/pdf");
     private static boolean initialized = false;
 
     @Inject DataStore datastore;
@@ -58,6 +93,12 @@ public class FileServiceBean implements FileService, IndexableContentProvider {
     @Inject AuthenticationService auth;
     @Inject fr.jayblanc.mbyte.store.index.IndexStoreConfig indexConfig;
     @Inject EntityManager em;
+    @Inject FileServiceConfig config;
+    @Inject BlobCollectorBean collector;
+    @Inject MetricsService metrics;
+    @Inject ChangeService changes;
+    @Inject QuotaService quota;
+    @Inject IndexStoreServiceWorker indexer;
 
     public FileServiceBean() {
     }
@@ -79,6 +120,14 @@ public class FileServiceBean implements FileService, IndexableContentProvider {
                     em.persist(root);
                     LOGGER.log(Level.INFO, "Bootstrap done, root node exists now.");
                 }
+                try {
+                    systemLoadNode(TRASH_NODE_ID);
+                } catch (NodeNotFoundException e ) {
+                    LOGGER.log(Level.INFO, "Trash node does not exists, creating it");
+                    Node trash = new Node(Node.Type.TREE, "", TRASH_NODE_ID, "trash");
+                    trash.setMimetype(TREE_NODE_MIMETYPE);
+                    em.persist(trash);
+                }
             } catch (PersistenceException e) {
                 throw new RuntimeException(e);
             }
@@ -94,6 +143,32 @@ public class FileServiceBean implements FileService, IndexableContentProvider {
         return nodes;
     }
 
+    @Override
+    @Transactional(Transactional.TxType.REQUIRED)
+    public NodeAggregate aggregate(String id) {
+        LOGGER.log(Level.FINE, "Aggregating children state for parent: " + id);
+        return em.createNamedQuery("Node.aggregateChildren", NodeAggregate.class).setParameter("parent", id).getSingleResult();
+    }
+
+    @Override
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    public void browse(String id, int offset, int limit, NodeVisitor visitor) throws NodeNotFoundException, NodeTypeException, IOException {
+        LOGGER.log(Level.FINE, "Browsing children for parent: " + id);
+        Node pnode = this.loadNode(id);
+        if (!pnode.isFolder()) {
+            throw new NodeTypeException("Node is not a directory");
+        }
+        // Rows are projected straight into NodeInfo and handed over one by one while the cursor is open, so the
+        // persistence context stays empty and nothing is buffered whatever the size of the page.
+        try (Stream<NodeInfo> rows = em.createNamedQuery("Node.browseChildren", NodeInfo.class).setParameter("parent", pnode.getId())
+                .setHint(HibernateHints.HINT_READ_ONLY, true).setHint(HibernateHints.HINT_FETCH_SIZE, BROWSE_FETCH_SIZE)
+                .setFirstResult(offset).setMaxResults(limit).getResultStream()) {
+            Iterator<NodeInfo> it = rows.iterator();
+            while (it.hasNext()) {
+                visitor.visit(it.next());
+            }
+        }
+    }
 
     @Override
     public List<Node> path(String id) throws NodeNotFoundException {
@@ -112,17 +187,105 @@ public class FileServiceBean implements FileService, IndexableContentProvider {
     }
 
 
+    @Override
+    @Transactional(Transactional.TxType.REQUIRED)
+    public Map<String, Node> get(Collection<String> ids) {
+        LOGGER.log(Level.FINE, "Getting " + ids.size() + " nodes");
+        if (ids.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return em.createNamedQuery("Node.findByIds", Node.class).setParameter("ids", new HashSet<>(ids)).getResultList().stream()
+                .collect(Collectors.toMap(Node::getId, node -> node));
+    }
+
+    @Override
+    @Transactional(Transactional.TxType.REQUIRED)
+    public boolean hasContent(String id, String content) {
+        LOGGER.log(Level.FINE, "Checking content " + content + " of node: " + id);
+        // Two indexed counts, neither the node nor its versions are loaded.
+        return em.createNamedQuery("Node.countByIdAndContent", Long.class).setParameter("id", id).setParameter("content", content).getSingleResult() > 0
+                || em.createNamedQuery("NodeVersion.countByNodeAndContent", Long.class).setParameter("node", id).setParameter("content", content).getSingleResult() > 0;
+    }
+
+    @Override
+    @Transactional(Transactional.TxType.REQUIRED)
+    public Map<String, List<Node>> paths(Collection<Node> nodes) {
+        LOGGER.log(Level.FINE, "Get paths for " + nodes.size() + " nodes");
+        // Ancestors are resolved one level at a time for all nodes together: as many queries as the deepest node has
+        // ancestors, whatever the number of nodes.
+        Map<String, Node> known = new HashMap<>();
+        nodes.forEach(node -> known.put(node.getId(), node));
+        Set<String> missing = nodes.stream().map(Node::getParent).filter(parent -> !parent.isEmpty() && !known.containsKey(parent))
+                .collect(Collectors.toSet());
+        while (!missing.isEmpty()) {
+            List<Node> parents = em.createNamedQuery("Node.findByIds", Node.class).setParameter("ids", missing).getResultList();
+            parents.forEach(parent -> known.put(parent.getId(), parent));
+            missing = parents.stream().map(Node::getParent).filter(parent -> !parent.isEmpty() && !known.containsKey(parent))
+                    .collect(Collectors.toSet());
+        }
+        Map<String, List<Node>> paths = new HashMap<>();
+        for (Node node : nodes) {
+            List<Node> path = new ArrayList<>();
+            Node current = node;
+            while (current != null) {
+                path.add(current);
+                current = current.getParent().isEmpty() ? null : known.get(current.getParent());
+            }
+            Collections.reverse(path);
+            paths.put(node.getId(), path);
+        }
+        return paths;
+    }
+
+
     public String getFullPath(List<Node> nodesPath){
         return nodesPath.stream().map(Node::getName).collect(Collectors.joining("/"));
     }
 
-    public List<Node> findAll() throws NodeNotFoundException {
-        List<Node> nodes = em.createNamedQuery("Node.findAll", Node.class).getResultList();
-        LOGGER.log(Level.INFO,"Test recup nb nodes: " + nodes.size());
-        for (Node node : nodes){
-             LOGGER.log(Level.INFO, "Full path du fichier: "+this.getFullPath(this.path(node.getId())));
+    @Override
+    public void walk(String id, TreeVisitor visitor) throws NodeNotFoundException, NodeTypeException, IOException {
+        LOGGER.log(Level.INFO, "Walking tree with id: " + id);
+        String pid = (id == null || id.isEmpty()) ? ROOT_NODE_ID:id;
+        Node root = QuarkusTransaction.requiringNew().call(() -> em.find(Node.class, pid));
+        if (root == null) {
+            throw new NodeNotFoundException("unable to find a node with id: " + pid);
         }
-        return nodes;
+        if (!root.isFolder()) {
+            throw new NodeTypeException("only node of type TREE can be walked");
+        }
+        visitor.visit("", NodeInfo.fromNode(root));
+        // Breadth first walk: a folder is queued when visited so parents always come before their children. Only the
+        // paths of pending folders are kept, children are read in keyset pages each in its own short transaction so
+        // visitors may take as long as they need without holding a connection.
+        Deque<String[]> pending = new ArrayDeque<>();
+        pending.add(new String[]{root.getId(), ""});
+        long visited = 1;
+        while (!pending.isEmpty()) {
+            Map<String, String> parents = new HashMap<>();
+            while (!pending.isEmpty() && parents.size() < WALK_BATCH_SIZE) {
+                String[] folder = pending.poll();
+                parents.put(folder[0], folder[1]);
+            }
+            String after = "";
+            List<NodeInfo> page;
+            do {
+                String cursor = after;
+                page = QuarkusTransaction.requiringNew().call(() -> em.createNamedQuery("Node.browseTree", NodeInfo.class)
+                        .setParameter("parents", parents.keySet()).setParameter("after", cursor)
+                        .setHint(HibernateHints.HINT_READ_ONLY, true).setMaxResults(WALK_BATCH_SIZE).getResultList());
+                for (NodeInfo node : page) {
+                    String prefix = parents.get(node.getParent());
+                    String path = prefix.isEmpty() ? node.getName() : prefix + "/" + node.getName();
+                    visitor.visit(path, node);
+                    if (node.isFolder()) {
+                        pending.add(new String[]{node.getId(), path});
+                    }
+                    after = node.getId();
+                    visited++;
+                }
+            } while (page.size() == WALK_BATCH_SIZE);
+        }
+        LOGGER.log(Level.INFO, "Tree walk done, {0} node(s) visited", visited);
     }
 
 
@@ -144,15 +307,56 @@ public class FileServiceBean implements FileService, IndexableContentProvider {
         return datastore.get(node.getContent());
     }
 
+    @Override
+    @GenerateMetric(key = "archive", type = GenerateMetric.Type.INCREMENT)
+    public void archive(String id, OutputStream output) throws NodeNotFoundException, NodeTypeException, DataNotFoundException, DataStoreException {
+        LOGGER.log(Level.INFO, "Archiving tree with id: " + id);
+        // The subtree is read through the keyset walk, one page of children at a time each in its own short transaction,
+        // so neither the whole tree nor the archive is ever held in memory and no transaction stays open while the
+        // client consumes the stream.
+        ZipOutputStream zos = new ZipOutputStream(output);
+        try {
+            this.walk(id, (path, node) -> {
+                if (path.isEmpty()) {
+                    return;
+                }
+                if (node.isFolder()) {
+                    zos.putNextEntry(new ZipEntry(path + "/"));
+                    zos.closeEntry();
+                    return;
+                }
+                ZipEntry entry = new ZipEntry(path);
+                entry.setTime(node.getModification());
+                zos.setLevel(isCompressed(node.getMimetype()) ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+                zos.putNextEntry(entry);
+                long bytes;
+                try {
+                    bytes = datastore.copy(node.getContent(), zos);
+                } catch (DataStoreException | DataNotFoundException e) {
+                    throw new ArchiveContentException(e);
+                }
+                zos.closeEntry();
+                metrics.incMetric("archive.entries");
+                metrics.addMetric("archive.bytes", bytes);
+            });
+            zos.finish();
+            zos.flush();
+        } catch (ArchiveContentException e) {
+            if (e.getCause() instanceof DataNotFoundException dnfe) {
+                throw dnfe;
+            }
+            throw (DataStoreException) e.getCause();
+        } catch (IOException e) {
+            throw new DataStoreException("unexpected error while writing archive for node: " + id, e);
+        }
+    }
+
     @Override
     @Transactional(Transactional.TxType.REQUIRED)
     public String add(String parent, String name) throws NodeNotFoundException, NodeAlreadyExistsException, NodeTypeException,
             NodePersistenceException, NotificationServiceException {
         LOGGER.log(Level.INFO, "Adding TREE node with name: " + name + " for parent: " + parent);
-        Node pnode = this.loadNode(parent);
-        if (!pnode.isFolder()) {
-            throw new NodeTypeException("Parent must be a node of type TREE");
-        }
+        Node pnode = this.loadFolder(parent);
         List<Node> nodes = em.createNamedQuery("Node.findChildrenForName", Node.class).setParameter("parent", pnode.getId()).setParameter("name", name).getResultList();
         if (!nodes.isEmpty()) {
             throw new NodeAlreadyExistsException("A node with name: " + name + " already exists in tree with id: " + pnode.getId());
@@ -162,20 +366,17 @@ public class FileServiceBean implements FileService, IndexableContentProvider {
         em.persist(node);
         pnode.setSize(pnode.getSize()+1);
         pnode.setModification(node.getModification());
-        notification.notify("folder.create", node.getId());
-        notification.notify("folder.update", pnode.getId());
+        this.emit("folder.create", node);
+        this.emit("folder.update", pnode);
         return node.getId();
     }
 
     @Override
     @GenerateMetric(key = "upload", type = GenerateMetric.Type.INCREMENT)
     @Transactional(Transactional.TxType.REQUIRED)
-    public String add(String parent, String name, InputStream content) throws NodeNotFoundException, NodeAlreadyExistsException, NodeTypeException, DataStoreException, DataNotFoundException, NodePersistenceException, NotificationServiceException {
+    public String add(String parent, String name, InputStream content) throws NodeNotFoundException, NodeAlreadyExistsException, NodeTypeException, DataStoreException, DataNotFoundException, NodePersistenceException, NotificationServiceException, QuotaExceededException {
         LOGGER.log(Level.INFO, "Adding BLOB node with name: " + name + " to parent: " + parent);
-        Node pnode = this.loadNode(parent);
-        if (!pnode.isFolder()) {
-            throw new NodeTypeException("Parent must be a node of type TREE");
-        }
+        Node pnode = this.loadFolder(parent);
         List<Node> nodes = em.createNamedQuery("Node.findChildrenForName", Node.class).setParameter("parent", pnode.getId()).setParameter("name", name).getResultList();
         if (!nodes.isEmpty()) {
             throw new NodeAlreadyExistsException("A node with name: " + name + " already exists in tree with id: " + pnode.getId());
@@ -186,43 +387,554 @@ public class FileServiceBean implements FileService, IndexableContentProvider {
         node.setSize(datastore.size(cid));
         node.setMimetype(datastore.type(cid, name));
         em.persist(node);
+        this.consume(node.getSize(), 1, cid);
         pnode.setSize(pnode.getSize()+1);
         pnode.setModification(node.getModification());
-        notification.notify("file.create", node.getId());
-        notification.notify("folder.update", pnode.getId());
+        this.emit("file.create", node);
+        this.emit("folder.update", pnode);
+        return node.getId();
+    }
+
+    @Override
+    @Transactional(Transactional.TxType.REQUIRED)
+    public Set<String> conflicts(String parent, Collection<String> paths) throws NodeNotFoundException, NodeTypeException {
+        LOGGER.log(Level.FINE, "Checking " + paths.size() + " path(s) for conflicts in parent: " + parent);
+        Node pnode = this.loadFolder(parent);
+        // Paths addAll would reject, grouped the same way: one lookup per folder, then one for the names of each folder.
+        Map<String, Set<String>> folders = new TreeMap<>();
+        for (String path : paths) {
+            int idx = path.lastIndexOf('/');
+            folders.computeIfAbsent((idx < 0) ? "" : path.substring(0, idx), key -> new HashSet<>()).add(path.substring(idx + 1));
+        }
+        Map<String, Node> resolved = new HashMap<>();
+        resolved.put("", pnode);
+        Set<String> blocked = new HashSet<>();
+        Set<String> conflicts = new HashSet<>();
+        for (Map.Entry<String, Set<String>> folder : folders.entrySet()) {
+            String prefix = folder.getKey().isEmpty() ? "" : folder.getKey() + "/";
+            Node fnode = this.lookupFolder(folder.getKey(), resolved, blocked);
+            if (blocked.contains(folder.getKey())) {
+                folder.getValue().forEach(name -> conflicts.add(prefix + name));
+            } else if (fnode != null) {
+                em.createNamedQuery("Node.findChildrenForNames", Node.class).setParameter("parent", fnode.getId())
+                        .setParameter("names", folder.getValue()).getResultList().forEach(node -> conflicts.add(prefix + node.getName()));
+            }
+        }
+        return conflicts;
+    }
+
+    @Override
+    @GenerateMetric(key = "upload", type = GenerateMetric.Type.INCREMENT)
+    @Transactional(value = Transactional.TxType.REQUIRED, rollbackOn = Exception.class)
+    public List<String> addAll(String parent, Iterator<FileUpload> uploads) throws NodeNotFoundException, NodeAlreadyExistsException, NodeTypeException, DataStoreException, DataNotFoundException, NodePersistenceException, NotificationServiceException, QuotaExceededException {
+        LOGGER.log(Level.INFO, "Adding BLOB nodes in bulk to parent: " + parent);
+        Node pnode = this.loadFolder(parent);
+        // Blobs are staged first (content addressed, so a rollback only leaves collectable data), then grouped by target
+        // folder so that name checks, inserts and parent counters are handled once per folder instead of once per file.
+        Map<String, List<FileUpload>> folders = new TreeMap<>();
+        while (uploads.hasNext()) {
+            FileUpload upload = uploads.next();
+            if (upload.getContent() == null) {
+                upload.setContent(datastore.put(upload.getData()));
+                upload.setData(null);
+            }
+            folders.computeIfAbsent(upload.getFolder(), key -> new ArrayList<>()).add(upload);
+        }
+        Map<String, Node> resolved = new HashMap<>();
+        resolved.put("", pnode);
+        Map<String, Node> updated = new LinkedHashMap<>();
+        List<Node> created = new ArrayList<>();
+        long bytes = 0;
+        try {
+            for (Map.Entry<String, List<FileUpload>> folder : folders.entrySet()) {
+                Node fnode = this.resolveFolder(folder.getKey(), resolved, updated);
+                Set<String> names = new HashSet<>();
+                for (FileUpload upload : folder.getValue()) {
+                    if (!names.add(upload.getName())) {
+                        throw new NodeAlreadyExistsException("A node with name: " + upload.getName() + " is uploaded twice in tree with id: " + fnode.getId());
+                    }
+                }
+                List<Node> existing = em.createNamedQuery("Node.findChildrenForNames", Node.class).setParameter("parent", fnode.getId()).setParameter("names", names).getResultList();
+                if (!existing.isEmpty()) {
+                    throw new NodeAlreadyExistsException("Nodes with names: " + existing.stream().map(Node::getName).collect(Collectors.joining(", ")) + " already exists in tree with id: " + fnode.getId());
+                }
+                long now = System.currentTimeMillis();
+                for (FileUpload upload : folder.getValue()) {
+                    Node node = new Node(Node.Type.BLOB, fnode.getId(), UUID.randomUUID().toString(), upload.getName());
+                    node.setContent(upload.getContent());
+                    node.setSize(datastore.size(upload.getContent()));
+                    node.setMimetype(datastore.type(upload.getContent(), upload.getName()));
+                    node.setCreation(now);
+                    node.setModification(now);
+                    em.persist(node);
+                    created.add(node);
+                    bytes += node.getSize();
+                }
+                fnode.setSize(fnode.getSize() + folder.getValue().size());
+                fnode.setModification(now);
+                updated.put(fnode.getId(), fnode);
+            }
+        } catch (NodeAlreadyExistsException | NodeTypeException e) {
+            folders.values().forEach(list -> list.forEach(upload -> collector.release(upload.getContent())));
+            throw e;
+        }
+        try {
+            quota.consume(bytes, created.size());
+        } catch (QuotaExceededException e) {
+            folders.values().forEach(list -> list.forEach(upload -> collector.release(upload.getContent())));
+            throw e;
+        }
+        for (Node node : created) {
+            this.emit("file.create", node);
+        }
+        for (Node node : updated.values()) {
+            this.emit("folder.update", node);
+        }
+        LOGGER.log(Level.INFO, "{0} BLOB node(s) added in bulk to parent: {1}", new Object[]{created.size(), pnode.getId()});
+        return created.stream().map(Node::getId).toList();
+    }
+
+    @Override
+    @GenerateMetric(key = "upload", type = GenerateMetric.Type.INCREMENT)
+    @Transactional(Transactional.TxType.REQUIRED)
+    public String update(String parent, String name, InputStream content) throws NodeNotFoundException, NodeTypeException, DataStoreException, DataNotFoundException, NodePersistenceException, NotificationServiceException, QuotaExceededException {
+        LOGGER.log(Level.INFO, "Updating BLOB node with name: " + name + " in parent: " + parent);
+        Node pnode = this.loadFolder(parent);
+        List<Node> nodes = em.createNamedQuery("Node.findChildrenForName", Node.class).setParameter("parent", pnode.getId()).setParameter("name", name).getResultList();
+        if (nodes.isEmpty()) {
+            throw new NodeNotFoundException("A node with name: " + name + " does not exists in tree with id: " + pnode.getId());
+        }
+        Node node = nodes.get(0);
+        if (node.isFolder()) {
+            throw new NodeTypeException("only node of type BLOB can have their content updated");
+        }
+        this.replaceContent(node, datastore.put(content));
         return node.getId();
     }
 
+    @Override
+    public DeltaSignature signature(String id, int blockSize) throws NodeNotFoundException, NodeTypeException, DataStoreException, DataNotFoundException {
+        LOGGER.log(Level.INFO, "Computing delta signature for node with id: " + id);
+        Node node = this.loadNode(id);
+        if (node.isFolder()) {
+            throw new NodeTypeException("only node of type BLOB have a content signature");
+        }
+        int size = (blockSize > 0) ? blockSize : DeltaSignature.blockSize(node.getSize());
+        try (InputStream is = datastore.get(node.getContent())) {
+            return DeltaSignature.compute(node.getContent(), is, size);
+        } catch (IOException e) {
+            throw new DataStoreException("unable to compute signature for node with id: " + id, e);
+        }
+    }
+
+    @Override
+    @GenerateMetric(key = "upload", type = GenerateMetric.Type.INCREMENT)
+    @Transactional(Transactional.TxType.REQUIRED)
+    public String patch(String id, InputStream delta) throws NodeNotFoundException, NodeTypeException, DataStoreException, DataNotFoundException, NotificationServiceException, QuotaExceededException {
+        LOGGER.log(Level.INFO, "Patching content of node with id: " + id);
+        Node node = this.loadNode(id);
+        if (node.isFolder() || node.isTrashed()) {
+            throw new NodeTypeException("only node of type BLOB can have their content patched");
+        }
+        // The new content is rebuilt on the fly from base blocks and delta literals, and hashed by the store while it is
+        // written: neither the delta nor the rebuilt content are ever buffered.
+        String cid;
+        try (SeekableByteChannel base = datastore.open(node.getContent())) {
+            cid = datastore.put(new DeltaInputStream(delta, base));
+        } catch (IOException e) {
+            throw new DataStoreException("unable to release base content of node with id: " + id, e);
+        }
+        this.replaceContent(node, cid);
+        return node.getId();
+    }
+
+    @Override
+    public List<NodeVersion> versions(String id) throws NodeNotFoundException, NodeTypeException {
+        LOGGER.log(Level.INFO, "Listing versions for node with id: " + id);
+        Node node = this.loadNode(id);
+        if (node.isFolder()) {
+            throw new NodeTypeException("only node of type BLOB have versions");
+        }
+        return em.createNamedQuery("NodeVersion.findByNode", NodeVersion.class).setParameter("node", node.getId()).getResultList();
+    }
+
+    @Override
+    public NodeVersion getVersion(String id, String version) throws NodeNotFoundException {
+        LOGGER.log(Level.INFO, "Getting version: " + version + " for node with id: " + id);
+        NodeVersion nversion = em.find(NodeVersion.class, version);
+        if (nversion == null || !nversion.getNode().equals(id)) {
+            throw new NodeNotFoundException("unable to find a version with id: " + version + " for node with id: " + id);
+        }
+        return nversion;
+    }
+
+    @Override
+    @GenerateMetric(key = "download", type = GenerateMetric.Type.INCREMENT)
+    public InputStream getVersionContent(String id, String version) throws NodeNotFoundException, DataNotFoundException, DataStoreException {
+        LOGGER.log(Level.INFO, "Getting content of version: " + version + " for node with id: " + id);
+        return datastore.get(this.getVersion(id, version).getContent());
+    }
+
+    @Override
+    @Transactional(Transactional.TxType.REQUIRED)
+    public void restore(String id, String version) throws NodeNotFoundException, NodeTypeException, NotificationServiceException {
+        LOGGER.log(Level.INFO, "Restoring version: " + version + " for node with id: " + id);
+        Node node = this.loadNode(id);
+        if (node.isFolder()) {
+            throw new NodeTypeException("only node of type BLOB have versions");
+        }
+        NodeVersion nversion = this.getVersion(node.getId(), version);
+        this.archiveContent(node);
+        node.setContent(nversion.getContent());
+        node.setSize(nversion.getSize());
+        node.setMimetype(nversion.getMimetype());
+        node.setModification(System.currentTimeMillis());
+        em.remove(nversion);
+        this.applyVersionsRetention(node.getId());
+        this.emit("file.update", node);
+    }
+
+    @Scheduled(every = "1h", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    @Transactional(Transactional.TxType.REQUIRED)
+    public void purgeExpiredVersions() {
+        if (config.versions().maxAgeDays() <= 0) {
+            return;
+        }
+        long limit = System.currentTimeMillis() - config.versions().maxAgeDays() * 86400000L;
+        List<NodeVersion> versions = em.createNamedQuery("NodeVersion.findArchivedBefore", NodeVersion.class).setParameter("limit", limit).getResultList();
+        LOGGER.log(Level.INFO, "Purging {0} expired version(s)", versions.size());
+        versions.forEach(this::dropVersion);
+    }
+
     @Override
     @Transactional(Transactional.TxType.REQUIRED)
     public void remove(String parent, String name) throws NodeNotFoundException, NodeNotEmptyException, NodeTypeException, DataStoreException, NodePersistenceException, NotificationServiceException {
         LOGGER.log(Level.FINE, "Remove node with name: " + name + " and parent: " + parent);
-        Node pnode = this.loadNode(parent);
-        if (!pnode.isFolder()) {
-            throw new NodeTypeException("Parent must be a node of type TREE");
-        }
-        Node node = em.createNamedQuery("Node.findChildrenForName", Node.class).setParameter("parent", pnode.getId()).setParameter("name", name).getSingleResult();
-        if (node == null) {
+        Node pnode = this.loadFolder(parent);
+        List<Node> nodes = em.createNamedQuery("Node.findChildrenForName", Node.class).setParameter("parent", pnode.getId()).setParameter("name", name).getResultList();
+        if (nodes.isEmpty()) {
             throw new NodeNotFoundException("A node with name: " + name + " does not exists in tree with id: " + pnode.getId());
         }
-        int children = em.createNamedQuery("Node.countChildren", Integer.class).setParameter("parent", pnode.getId()).getSingleResult();
+        Node node = nodes.get(0);
+        long children = em.createNamedQuery("Node.countChildren", Long.class).setParameter("parent", node.getId()).getSingleResult();
         if (children > 0) {
             throw new NodeNotEmptyException("The node with name: " + name + " is not empty");
         }
-        String eventType = "folder.remove";
-        if (!node.isFolder()) {
-            datastore.delete(node.getContent());
-            eventType = "file.remove";
-        }
-        em.remove(node);
+        // Removal only moves the node to the trash, blobs, versions and the row itself are released by the purge.
+        Node trash = this.loadNode(TRASH_NODE_ID);
+        long now = System.currentTimeMillis();
+        node.setOrigin(pnode.getId());
+        node.setParent(trash.getId());
+        node.setTrashed(now);
+        trash.setSize(trash.getSize()+1);
         pnode.setSize(pnode.getSize()-1);
+        pnode.setModification(now);
+        this.emit(node.isFolder() ? "folder.remove" : "file.remove", node);
+        this.emit("folder.update", pnode);
+    }
+
+    @Override
+    @Transactional(Transactional.TxType.REQUIRED)
+    public String move(String id, String parent, String name) throws NodeNotFoundException, NodeAlreadyExistsException, NodeTypeException, NotificationServiceException {
+        LOGGER.log(Level.INFO, "Moving node with id: " + id + " to parent: " + parent);
+        Node node = this.loadNode(id);
+        if (node.isRoot() || node.getId().equals(TRASH_NODE_ID) || node.isTrashed()) {
+            throw new NodeTypeException("Node with id: " + id + " can not be moved");
+        }
+        Node source = this.loadFolder(node.getParent());
+        Node target = this.loadFolder(parent);
+        String tname = (name == null || name.isEmpty()) ? node.getName() : name;
+        if (node.isFolder() && this.path(target.getId()).stream().anyMatch(ancestor -> ancestor.getId().equals(node.getId()))) {
+            throw new NodeTypeException("A folder can not be moved inside itself");
+        }
+        List<Node> nodes = em.createNamedQuery("Node.findChildrenForName", Node.class).setParameter("parent", target.getId()).setParameter("name", tname).getResultList();
+        if (nodes.stream().anyMatch(existing -> !existing.getId().equals(node.getId()))) {
+            throw new NodeAlreadyExistsException("A node with name: " + tname + " already exists in tree with id: " + target.getId());
+        }
+        long now = System.currentTimeMillis();
+        node.setParent(target.getId());
+        node.setName(tname);
+        node.setModification(now);
+        source.setModification(now);
+        this.emit(node.isFolder() ? "folder.move" : "file.move", node);
+        if (!source.getId().equals(target.getId())) {
+            source.setSize(source.getSize()-1);
+            target.setSize(target.getSize()+1);
+            target.setModification(now);
+            this.emit("folder.update", target);
+        }
+        this.emit("folder.update", source);
+        return node.getId();
+    }
+
+    @Override
+    @Transactional(Transactional.TxType.REQUIRED)
+    public String link(String parent, String name, String content) throws NodeNotFoundException, NodeAlreadyExistsException, NodeTypeException, DataStoreException, DataNotFoundException, NotificationServiceException, QuotaExceededException {
+        LOGGER.log(Level.INFO, "Adding BLOB node with name: " + name + " to parent: " + parent + " for existing content: " + content);
+        Node pnode = this.loadFolder(parent);
+        List<Node> nodes = em.createNamedQuery("Node.findChildrenForName", Node.class).setParameter("parent", pnode.getId()).setParameter("name", name).getResultList();
+        if (!nodes.isEmpty()) {
+            throw new NodeAlreadyExistsException("A node with name: " + name + " already exists in tree with id: " + pnode.getId());
+        }
+        if (content == null || !datastore.exists(content)) {
+            throw new DataNotFoundException("unable to find content: " + content);
+        }
+        Node node = new Node(Node.Type.BLOB, pnode.getId(), UUID.randomUUID().toString(), name);
+        node.setContent(content);
+        node.setSize(datastore.size(content));
+        node.setMimetype(datastore.type(content, name));
+        em.persist(node);
+        this.consume(node.getSize(), 1, content);
+        pnode.setSize(pnode.getSize()+1);
+        pnode.setModification(node.getModification());
+        this.emit("file.create", node);
+        this.emit("folder.update", pnode);
+        return node.getId();
+    }
+
+    @Override
+    @Transactional(value = Transactional.TxType.REQUIRED, rollbackOn = Exception.class)
+    public List<String> apply(List<NodeOperation> operations) throws NodeNotFoundException, NodeAlreadyExistsException, NodeNotEmptyException, NodeTypeException, DataStoreException, DataNotFoundException, NodePersistenceException, NotificationServiceException, QuotaExceededException {
+        LOGGER.log(Level.INFO, "Applying batch of " + operations.size() + " operations");
+        // All steps share the caller transaction: any failure rolls the whole batch back and, since notifications are
+        // only published after commit, nothing is announced for a batch that did not apply.
+        List<String> results = new ArrayList<>(operations.size());
+        for (NodeOperation operation : operations) {
+            LOGGER.log(Level.FINE, "Applying operation " + results.size() + ": " + operation);
+            String result = switch (operation.getType()) {
+                case MKDIR -> this.add(this.resolveReference(operation.getParent(), results), operation.getName());
+                case DELETE -> {
+                    Node node = this.loadNode(this.resolveReference(operation.getId(), results));
+                    this.remove(node.getParent(), node.getName());
+                    yield node.getId();
+                }
+                case MOVE -> this.move(this.resolveReference(operation.getId(), results), this.resolveReference(operation.getParent(), results), operation.getName());
+                case CREATE -> this.link(this.resolveReference(operation.getParent(), results), operation.getName(), operation.getContent());
+            };
+            results.add(result);
+        }
+        return results;
+    }
+
+    @Override
+    @Transactional(Transactional.TxType.REQUIRED)
+    public void restoreFromTrash(String id) throws NodeNotFoundException, NodeAlreadyExistsException, NodeTypeException, NotificationServiceException {
+        LOGGER.log(Level.INFO, "Restoring node with id: " + id + " from trash");
+        Node node = this.loadTrashedNode(id);
+        Node pnode;
+        try {
+            pnode = this.loadFolder(node.getOrigin());
+        } catch (NodeNotFoundException e) {
+            LOGGER.log(Level.INFO, "Origin folder of node " + id + " does not exists anymore, restoring in root");
+            pnode = this.loadNode(ROOT_NODE_ID);
+        }
+        List<Node> nodes = em.createNamedQuery("Node.findChildrenForName", Node.class).setParameter("parent", pnode.getId()).setParameter("name", node.getName()).getResultList();
+        if (!nodes.isEmpty()) {
+            throw new NodeAlreadyExistsException("A node with name: " + node.getName() + " already exists in tree with id: " + pnode.getId());
+        }
+        Node trash = this.loadNode(TRASH_NODE_ID);
+        trash.setSize(trash.getSize()-1);
+        node.setParent(pnode.getId());
+        node.setOrigin(null);
+        node.setTrashed(0);
+        pnode.setSize(pnode.getSize()+1);
         pnode.setModification(System.currentTimeMillis());
-        notification.notify(eventType, node.getId());
-        notification.notify("folder.update", pnode.getId());
+        this.emit(node.isFolder() ? "folder.create" : "file.create", node);
+        this.emit("folder.update", pnode);
+    }
+
+    @Override
+    @Transactional(Transactional.TxType.REQUIRED)
+    public void purge(String id) throws NodeNotFoundException, NodeTypeException {
+        LOGGER.log(Level.INFO, "Purging node with id: " + id + " from trash");
+        this.hardDelete(this.loadTrashedNode(id));
+    }
+
+    @Scheduled(cron = "{store.files.trash.purge-cron}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    public void purgeTrash() {
+        long limit = System.currentTimeMillis() - config.trash().retentionDays() * 86400000L;
+        int batch = config.trash().purgeBatchSize();
+        LOGGER.log(Level.INFO, "Purging trash of nodes removed before: " + limit);
+        int purged = 0;
+        int count;
+        do {
+            count = QuarkusTransaction.requiringNew().call(() -> {
+                List<Node> nodes = em.createNamedQuery("Node.findTrashedBefore", Node.class).setParameter("parent", TRASH_NODE_ID)
+                        .setParameter("limit", limit).setMaxResults(batch).getResultList();
+                nodes.forEach(this::hardDelete);
+                return nodes.size();
+            });
+            purged += count;
+        } while (count == batch);
+        LOGGER.log(Level.INFO, "Trash purge done, {0} node(s) deleted", purged);
     }
 
     //INTERNAL OPERATIONS
 
+    /**
+     * Carries a content read failure out of the archive tree visitor, which may only throw IOException.
+     */
+    private static final class ArchiveContentException extends IOException {
+        private ArchiveContentException(Exception cause) {
+            super(cause);
+        }
+    }
+
+    private void emit(String type, Node node) throws NotificationServiceException {
+        changes.record(type, node);
+        indexer.submit(type, node.getId());
+        notification.notify(type, node.getId());
+    }
+
+    private Node resolveFolder(String path, Map<String, Node> resolved, Map<String, Node> updated) throws NodeTypeException, NotificationServiceException {
+        Node folder = resolved.get(path);
+        if (folder != null) {
+            return folder;
+        }
+        int idx = path.lastIndexOf('/');
+        Node parent = this.resolveFolder((idx < 0) ? "" : path.substring(0, idx), resolved, updated);
+        String name = path.substring(idx + 1);
+        List<Node> nodes = em.createNamedQuery("Node.findChildrenForName", Node.class).setParameter("parent", parent.getId()).setParameter("name", name).getResultList();
+        if (!nodes.isEmpty()) {
+            folder = nodes.get(0);
+            if (!folder.isFolder()) {
+                throw new NodeTypeException("A node with name: " + name + " already exists in tree with id: " + parent.getId() + " and is not a TREE");
+            }
+        } else {
+            folder = new Node(Node.Type.TREE, parent.getId(), UUID.randomUUID().toString(), name);
+            folder.setMimetype(TREE_NODE_MIMETYPE);
+            em.persist(folder);
+            parent.setSize(parent.getSize() + 1);
+            parent.setModification(folder.getModification());
+            updated.put(parent.getId(), parent);
+            this.emit("folder.create", folder);
+        }
+        resolved.put(path, folder);
+        return folder;
+    }
+
+    /**
+     * Read only counterpart of resolveFolder: null when the folder does not exist yet, paths going through a file are
+     * added to the blocked ones.
+     */
+    private Node lookupFolder(String path, Map<String, Node> resolved, Set<String> blocked) {
+        if (resolved.containsKey(path)) {
+            return resolved.get(path);
+        }
+        int idx = path.lastIndexOf('/');
+        String ppath = (idx < 0) ? "" : path.substring(0, idx);
+        Node parent = this.lookupFolder(ppath, resolved, blocked);
+        Node folder = null;
+        if (parent != null) {
+            List<Node> nodes = em.createNamedQuery("Node.findChildrenForName", Node.class).setParameter("parent", parent.getId()).setParameter("name", path.substring(idx + 1)).getResultList();
+            if (!nodes.isEmpty() && nodes.get(0).isFolder()) {
+                folder = nodes.get(0);
+            } else if (!nodes.isEmpty()) {
+                blocked.add(path);
+            }
+        } else if (blocked.contains(ppath)) {
+            blocked.add(path);
+        }
+        resolved.put(path, folder);
+        return folder;
+    }
+
+    private String resolveReference(String reference, List<String> results) throws NodeNotFoundException {
+        if (reference == null || !reference.startsWith(NodeOperation.REFERENCE_PREFIX)) {
+            return reference;
+        }
+        int index;
+        try {
+            index = Integer.parseInt(reference.substring(NodeOperation.REFERENCE_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            throw new NodeNotFoundException("reference: " + reference + " is not a valid operation reference");
+        }
+        if (index < 0 || index >= results.size()) {
+            throw new NodeNotFoundException("reference: " + reference + " does not match a previous operation");
+        }
+        return results.get(index);
+    }
+
+    private Node loadFolder(String id) throws NodeNotFoundException, NodeTypeException {
+        Node node = this.loadNode(id);
+        if (!node.isFolder()) {
+            throw new NodeTypeException("Parent must be a node of type TREE");
+        }
+        if (node.getId().equals(TRASH_NODE_ID) || node.isTrashed()) {
+            throw new NodeTypeException("Trash content can only be restored or purged");
+        }
+        return node;
+    }
+
+    private Node loadTrashedNode(String id) throws NodeNotFoundException, NodeTypeException {
+        Node node = this.loadNode(id);
+        if (!TRASH_NODE_ID.equals(node.getParent())) {
+            throw new NodeTypeException("Node with id: " + id + " is not in trash");
+        }
+        return node;
+    }
+
+    private void hardDelete(Node node) {
+        LOGGER.log(Level.FINE, "Hard delete of node: " + node.getId());
+        if (!node.isFolder()) {
+            em.createNamedQuery("NodeVersion.findByNode", NodeVersion.class).setParameter("node", node.getId()).getResultList().forEach(this::dropVersion);
+            collector.release(node.getContent());
+            quota.record(-node.getSize(), -1);
+        }
+        Node trash = em.find(Node.class, TRASH_NODE_ID);
+        trash.setSize(trash.getSize()-1);
+        em.remove(node);
+    }
+
+    private void consume(long bytes, long files, String cid) throws QuotaExceededException {
+        try {
+            quota.consume(bytes, files);
+        } catch (QuotaExceededException e) {
+            // The transaction is rolled back, nothing references the stored content anymore unless it was shared.
+            collector.release(cid);
+            throw e;
+        }
+    }
+
+    private void replaceContent(Node node, String cid) throws DataStoreException, DataNotFoundException, NotificationServiceException, QuotaExceededException {
+        if (!cid.equals(node.getContent())) {
+            this.archiveContent(node);
+            node.setContent(cid);
+            node.setSize(datastore.size(cid));
+            node.setMimetype(datastore.type(cid, node.getName()));
+            // Retention first: the versions it drops make room for the new content.
+            this.applyVersionsRetention(node.getId());
+            this.consume(node.getSize(), 0, cid);
+        }
+        node.setModification(System.currentTimeMillis());
+        this.emit("file.update", node);
+    }
+
+    private void archiveContent(Node node) {
+        if (config.versions().keep() > 0) {
+            em.persist(NodeVersion.fromNode(node));
+        } else {
+            collector.release(node.getContent());
+            quota.record(-node.getSize(), 0);
+        }
+    }
+
+    private void applyVersionsRetention(String id) {
+        if (config.versions().keep() <= 0) {
+            return;
+        }
+        List<NodeVersion> versions = em.createNamedQuery("NodeVersion.findByNode", NodeVersion.class).setParameter("node", id).getResultList();
+        if (versions.size() > config.versions().keep()) {
+            versions.subList(config.versions().keep(), versions.size()).forEach(this::dropVersion);
+        }
+    }
+
+    private void dropVersion(NodeVersion version) {
+        em.remove(version);
+        collector.release(version.getContent());
+        quota.record(-version.getSize(), 0);
+    }
+
     private Node loadNode(String id) throws NodeNotFoundException {
         return systemLoadNode(id);
     }
@@ -247,6 +959,10 @@ public class FileServiceBean implements FileService, IndexableContentProvider {
 
     @Override
     public IndexableContent getIndexableContent(String id) {
+        Node node = em.find(Node.class, id);
+        if (node == null || node.isTrashed() || TRASH_NODE_ID.equals(node.getId()) || TRASH_NODE_ID.equals(node.getParent())) {
+            return null;
+        }
         IndexableContent content = new IndexableContent();
         content.setIdentifier(id);
         content.setType("node");
@@ -254,12 +970,12 @@ public class FileServiceBean implements FileService, IndexableContentProvider {
         content.setStoreId(indexConfig.typesense().storeId());
         content.setContent("");
         try {
-            Node node = systemLoadNode(id);
             content.setName(node.getName());
             content.setMimetype(node.getMimetype());
             content.setNodeType(node.getType().name());
             content.setParent(node.getParent());
             content.setModifiedAt(node.getModification());
+            content.setContentHash(node.isFolder() ? "" : node.getContent());
             if (node.isFolder()) {
                 content.setContent(node.getName() + " " + node.getMimetype());
             } else {
@@ -267,6 +983,9 @@ public class FileServiceBean implements FileService, IndexableContentProvider {
                 if ((extracted == null || extracted.isBlank()) && isTextLike(node.getMimetype())) {
                     extracted = extractRawTextPreview(node.getContent());
                 }
+                if (extracted != null && indexConfig.passage().maxChars() > 0 && extracted.length() > indexConfig.passage().maxChars()) {
+                    extracted = extracted.substring(0, indexConfig.passage().maxChars());
+                }
                 content.setContent(node.getName() + " " + node.getMimetype() + " " + (extracted == null ? "" : extracted));
             }
         } catch (Exception e) {
@@ -275,6 +994,19 @@ public class FileServiceBean implements FileService, IndexableContentProvider {
         return content;
     }
 
+    private boolean isCompressed(String mimetype) {
+        if (mimetype == null) {
+            return false;
+        }
+        String mt = mimetype.toLowerCase();
+        return mt.startsWith("image/") && !mt.equals("image/svg+xml") && !mt.equals("image/bmp")
+                || mt.startsWith("video/")
+                || mt.startsWith("audio/") && !mt.equals("audio/wav") && !mt.equals("audio/x-wav")
+                || mt.startsWith("application/vnd.openxmlformats-officedocument.")
+                || mt.startsWith("application/vnd.oasis.opendocument.")
+                || COMPRESSED_MIMETYPES.contains(mt);
+    }
+
     private boolean isTextLike(String mimetype) {
         if (mimetype == null) {
             return false;
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.files;
+
+/**
+ * One step of a batch of tree mutations. Node references (id and parent) may point to the node produced by a previous
+ * step of the same batch using "$" followed by the step index, e.g. "$0" for the folder created by the first step.
+ */
+public class NodeOperation {
+
+    public static final String REFERENCE_PREFIX = "$";
+
+    public enum Type {
+        MKDIR,
+        DELETE,
+        MOVE,
+        CREATE
+    }
+
+    private Type type;
+    private String id;
+    private String parent;
+    private String name;
+    private String content;
+
+    public NodeOperation() {
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getParent() {
+        return parent;
+    }
+
+    public void setParent(String parent) {
+        this.parent = parent;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+    }
+
+    @Override
+    public String toString() {
+        return "NodeOperation{" +
+                "type=" + type +
+                ", id='" + id + '\'' +
+                ", parent='" + parent + '\'' +
+                ", name='" + name + '\'' +
+                ", content='" + content + '\'' +
+                '}';
+    }
+}
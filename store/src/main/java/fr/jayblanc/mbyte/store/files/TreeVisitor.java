@@ -0,0 +1,31 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.files;
+
+import fr.jayblanc.mbyte.store.files.entity.NodeInfo;
+
+import java.io.IOException;
+
+@FunctionalInterface
+public interface TreeVisitor {
+
+    /**
+     * @param path the path of the node relative to the walked folder, empty for the walked folder itself
+     */
+    void visit(String path, NodeInfo node) throws IOException;
+
+}
@@ -26,13 +26,25 @@ import java.util.Objects;
 @Entity
 @NamedQueries({
         @NamedQuery(name = "Node.findAllChildren", query = "SELECT n FROM Node n WHERE n.parent = :parent"),
-        @NamedQuery(name = "Node.findAll", query = "SELECT n FROM Node n"),
+        @NamedQuery(name = "Node.findByIds", query = "SELECT n FROM Node n WHERE n.id IN :ids"),
+        @NamedQuery(name = "Node.findAllLive", query = "SELECT n FROM Node n WHERE n.trashed = 0 AND n.parent <> 'trash' AND n.id <> 'trash'"),
         @NamedQuery(name = "Node.findChildrenForName", query = "SELECT n FROM Node n WHERE n.parent = :parent AND n.name = :name"),
+        @NamedQuery(name = "Node.findChildrenForNames", query = "SELECT n FROM Node n WHERE n.parent = :parent AND n.name IN :names"),
+        @NamedQuery(name = "Node.findRecent", query = "SELECT new fr.jayblanc.mbyte.store.files.entity.NodeInfo(n.type, n.id, n.parent, n.name, n.mimetype, n.size, n.creation, n.modification, n.content) FROM Node n WHERE n.type = :type AND n.trashed = 0 AND (n.modification < :before OR (n.modification = :before AND n.id < :id)) ORDER BY n.modification DESC, n.id DESC"),
+        @NamedQuery(name = "Node.browseChildren", query = "SELECT new fr.jayblanc.mbyte.store.files.entity.NodeInfo(n.type, n.id, n.parent, n.name, n.mimetype, n.size, n.creation, n.modification, n.content) FROM Node n WHERE n.parent = :parent ORDER BY n.name ASC"),
+        @NamedQuery(name = "Node.browseTree", query = "SELECT new fr.jayblanc.mbyte.store.files.entity.NodeInfo(n.type, n.id, n.parent, n.name, n.mimetype, n.size, n.creation, n.modification, n.content) FROM Node n WHERE n.parent IN :parents AND n.id > :after ORDER BY n.id ASC"),
+        @NamedQuery(name = "Node.aggregateChildren", query = "SELECT new fr.jayblanc.mbyte.store.files.entity.NodeAggregate(count(n), max(n.modification), sum(n.version)) FROM Node n WHERE n.parent = :parent"),
         @NamedQuery(name = "Node.countChildren", query = "SELECT count(n) FROM Node n WHERE n.parent = :parent"),
+        @NamedQuery(name = "Node.findTrashedBefore", query = "SELECT n FROM Node n WHERE n.parent = :parent AND n.trashed < :limit ORDER BY n.trashed ASC"),
+        @NamedQuery(name = "Node.searchByName", query = "SELECT new fr.jayblanc.mbyte.store.files.entity.NodeInfo(n.type, n.id, n.parent, n.name, n.mimetype, n.size, n.creation, n.modification, n.content) FROM Node n WHERE LOWER(n.name) LIKE :pattern ESCAPE '!' AND n.trashed = 0 AND n.parent <> 'trash' AND n.id <> 'trash' ORDER BY n.modification DESC"),
+        @NamedQuery(name = "Node.countContentReferences", query = "SELECT count(n) FROM Node n WHERE n.content = :content"),
+        @NamedQuery(name = "Node.countByIdAndContent", query = "SELECT count(n) FROM Node n WHERE n.id = :id AND n.content = :content"),
+        @NamedQuery(name = "Node.findReferencedContents", query = "SELECT DISTINCT n.content FROM Node n WHERE n.content IN :contents"),
 })
 @Table(indexes = {
         @Index(name = "parent", columnList = "parent"),
         @Index(name = "parent_name", columnList = "parent, name"),
+        @Index(name = "node_content", columnList = "content"),
 })
 public class Node implements Comparable<Node>, Serializable {
 
@@ -52,6 +64,9 @@ public class Node implements Comparable<Node>, Serializable {
     private long creation;
     private long modification;
     private String content;
+    private long trashed;
+    @Column(length = 50)
+    private String origin;
 
     public Node() {
         this.creation = this.modification = System.currentTimeMillis();
@@ -146,6 +161,26 @@ public class Node implements Comparable<Node>, Serializable {
         this.modification = modification;
     }
 
+    public long getTrashed() {
+        return trashed;
+    }
+
+    public void setTrashed(long trashed) {
+        this.trashed = trashed;
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    public void setOrigin(String origin) {
+        this.origin = origin;
+    }
+
+    public boolean isTrashed() {
+        return this.trashed > 0;
+    }
+
     public boolean isRoot() {
         return this.id.equals(FileService.ROOT_NODE_ID);
     }
@@ -175,12 +210,12 @@ public class Node implements Comparable<Node>, Serializable {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Node node = (Node) o;
-        return version == node.version && size == node.size && creation == node.creation && modification == node.modification && type == node.type && Objects.equals(id, node.id) && Objects.equals(parent, node.parent) && Objects.equals(name, node.name) && Objects.equals(mimetype, node.mimetype) && Objects.equals(content, node.content);
+        return version == node.version && size == node.size && creation == node.creation && modification == node.modification && trashed == node.trashed && type == node.type && Objects.equals(id, node.id) && Objects.equals(parent, node.parent) && Objects.equals(name, node.name) && Objects.equals(mimetype, node.mimetype) && Objects.equals(content, node.content) && Objects.equals(origin, node.origin);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(type, id, parent, version, name, mimetype, size, creation, modification, content);
+        return Objects.hash(type, id, parent, version, name, mimetype, size, creation, modification, content, trashed, origin);
     }
 
     @Override
@@ -196,6 +231,8 @@ public class Node implements Comparable<Node>, Serializable {
                 ", creation=" + creation +
                 ", modification=" + modification +
                 ", content='" + content + '\'' +
+                ", trashed=" + trashed +
+                ", origin='" + origin + '\'' +
                 '}';
     }
 
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.files.entity;
+
+/**
+ * Aggregate state of the children of a folder. Any child added, removed or modified changes at least one of the
+ * values (versions sum is bumped by every child update), which makes it a cheap validator for listings.
+ */
+public class NodeAggregate {
+
+    private final long count;
+    private final long modification;
+    private final long versions;
+
+    public NodeAggregate(Long count, Long modification, Long versions) {
+        this.count = (count == null) ? 0 : count;
+        this.modification = (modification == null) ? 0 : modification;
+        this.versions = (versions == null) ? 0 : versions;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getModification() {
+        return modification;
+    }
+
+    public long getVersions() {
+        return versions;
+    }
+
+    @Override
+    public String toString() {
+        return "NodeAggregate{" +
+                "count=" + count +
+                ", modification=" + modification +
+                ", versions=" + versions +
+                '}';
+    }
+}
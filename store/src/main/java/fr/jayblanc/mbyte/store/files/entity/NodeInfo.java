@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.files.entity;
+
+import fr.jayblanc.mbyte.store.files.FileService;
+
+/**
+ * Read-only projection of a node holding only the columns exposed by listings. Built directly by JPQL constructor
+ * expressions so listing queries never materialize managed entities.
+ */
+public class NodeInfo {
+
+    private final Node.Type type;
+    private final String id;
+    private final String parent;
+    private final String name;
+    private final String mimetype;
+    private final long size;
+    private final long creation;
+    private final long modification;
+    private final String content;
+
+    public NodeInfo(Node.Type type, String id, String parent, String name, String mimetype, long size, long creation, long modification, String content) {
+        this.type = type;
+        this.id = id;
+        this.parent = parent;
+        this.name = name;
+        this.mimetype = mimetype;
+        this.size = size;
+        this.creation = creation;
+        this.modification = modification;
+        this.content = content;
+    }
+
+    public static NodeInfo fromNode(Node node) {
+        return new NodeInfo(node.getType(), node.getId(), node.getParent(), node.getName(), node.getMimetype(), node.getSize(),
+                node.getCreation(), node.getModification(), node.getContent());
+    }
+
+    public Node.Type getType() {
+        return type;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getParent() {
+        return parent;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getMimetype() {
+        return mimetype;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getCreation() {
+        return creation;
+    }
+
+    public long getModification() {
+        return modification;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public boolean isRoot() {
+        return FileService.ROOT_NODE_ID.equals(id);
+    }
+
+    public boolean isFolder() {
+        return Node.Type.TREE.equals(type);
+    }
+
+    @Override
+    public String toString() {
+        return "NodeInfo{" +
+                "type=" + type +
+                ", id='" + id + '\'' +
+                ", parent='" + parent + '\'' +
+                ", name='" + name + '\'' +
+                ", size=" + size +
+                '}';
+    }
+}
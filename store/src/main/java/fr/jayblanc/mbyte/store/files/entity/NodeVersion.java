@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.files.entity;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.util.Objects;
+import java.util.UUID;
+
+@Entity
+@NamedQueries({
+        @NamedQuery(name = "NodeVersion.findByNode", query = "SELECT v FROM NodeVersion v WHERE v.node = :node ORDER BY v.archived DESC"),
+        @NamedQuery(name = "NodeVersion.findArchivedBefore", query = "SELECT v FROM NodeVersion v WHERE v.archived < :limit"),
+        @NamedQuery(name = "NodeVersion.countContentReferences", query = "SELECT count(v) FROM NodeVersion v WHERE v.content = :content"),
+        @NamedQuery(name = "NodeVersion.countByNodeAndContent", query = "SELECT count(v) FROM NodeVersion v WHERE v.node = :node AND v.content = :content"),
+        @NamedQuery(name = "NodeVersion.findReferencedContents", query = "SELECT DISTINCT v.content FROM NodeVersion v WHERE v.content IN :contents"),
+})
+@Table(name = "node_version", indexes = {
+        @Index(name = "node_version_node", columnList = "node"),
+        @Index(name = "node_version_content", columnList = "content"),
+})
+public class NodeVersion implements Serializable {
+
+    @Id
+    @Column(length = 50)
+    private String id;
+    @Column(length = 50)
+    private String node;
+    private String content;
+    @Column(length = 50)
+    private String mimetype;
+    private long size;
+    private long creation;
+    private long archived;
+
+    public NodeVersion() {
+    }
+
+    public static NodeVersion fromNode(Node node) {
+        NodeVersion version = new NodeVersion();
+        version.id = UUID.randomUUID().toString();
+        version.node = node.getId();
+        version.content = node.getContent();
+        version.mimetype = node.getMimetype();
+        version.size = node.getSize();
+        version.creation = node.getModification();
+        version.archived = System.currentTimeMillis();
+        return version;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getNode() {
+        return node;
+    }
+
+    public void setNode(String node) {
+        this.node = node;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+    }
+
+    public String getMimetype() {
+        return mimetype;
+    }
+
+    public void setMimetype(String mimetype) {
+        this.mimetype = mimetype;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public long getCreation() {
+        return creation;
+    }
+
+    public void setCreation(long creation) {
+        this.creation = creation;
+    }
+
+    public long getArchived() {
+        return archived;
+    }
+
+    public void setArchived(long archived) {
+        this.archived = archived;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        NodeVersion that = (NodeVersion) o;
+        return size == that.size && creation == that.creation && archived == that.archived && Objects.equals(id, that.id) && Objects.equals(node, that.node) && Objects.equals(content, that.content) && Objects.equals(mimetype, that.mimetype);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, node, content, mimetype, size, creation, archived);
+    }
+
+    @Override
+    public String toString() {
+        return "NodeVersion{" +
+                "id='" + id + '\'' +
+                ", node='" + node + '\'' +
+                ", content='" + content + '\'' +
+                ", mimetype='" + mimetype + '\'' +
+                ", size=" + size +
+                ", creation=" + creation +
+                ", archived=" + archived +
+                '}';
+    }
+}
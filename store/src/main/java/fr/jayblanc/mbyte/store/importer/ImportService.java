@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.importer;
+
+import fr.jayblanc.mbyte.store.files.exceptions.NodeNotFoundException;
+import fr.jayblanc.mbyte.store.files.exceptions.NodeTypeException;
+import fr.jayblanc.mbyte.store.importer.entity.ImportJob;
+
+import java.util.List;
+
+public interface ImportService {
+
+    ImportJob start(String source, String target) throws ImportException, NodeNotFoundException, NodeTypeException;
+
+    ImportJob resume(String id) throws ImportJobNotFoundException, ImportException;
+
+    ImportJob get(String id) throws ImportJobNotFoundException;
+
+    List<ImportJob> list();
+
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.importer;
+
+import fr.jayblanc.mbyte.store.api.validation.ValidationPattern;
+import fr.jayblanc.mbyte.store.data.DataStore;
+import fr.jayblanc.mbyte.store.data.exception.DataStoreException;
+import fr.jayblanc.mbyte.store.files.BlobCollectorBean;
+import fr.jayblanc.mbyte.store.files.FileService;
+import fr.jayblanc.mbyte.store.files.FileUpload;
+import fr.jayblanc.mbyte.store.files.entity.Node;
+import fr.jayblanc.mbyte.store.files.exceptions.NodeNotFoundException;
+import fr.jayblanc.mbyte.store.files.exceptions.NodeTypeException;
+import fr.jayblanc.mbyte.store.importer.entity.ImportJob;
+import fr.jayblanc.mbyte.store.metrics.MetricsService;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Transactional;
+import org.eclipse.microprofile.context.ManagedExecutor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+@ApplicationScoped
+public class ImportServiceBean implements ImportService {
+
+    private static final Logger LOGGER = Logger.getLogger(ImportServiceBean.class.getName());
+
+    @Inject ImportConfig config;
+    @Inject EntityManager em;
+    @Inject FileService files;
+    @Inject DataStore datastore;
+    @Inject BlobCollectorBean collector;
+    @Inject MetricsService metrics;
+    @Inject ManagedExecutor executor;
+
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+
+    void onStart(@Observes StartupEvent event) {
+        List<ImportJob> jobs = QuarkusTransaction.requiringNew().call(() -> em.createNamedQuery("ImportJob.findByStatuses", ImportJob.class)
+                .setParameter("statuses", List.of(ImportJob.Status.PENDING, ImportJob.Status.RUNNING)).getResultList());
+        for (ImportJob job : jobs) {
+            LOGGER.log(Level.INFO, "Resuming interrupted import job: " + job.getId() + " from checkpoint: " + job.getCheckpoint());
+            this.launch(job.getId());
+        }
+    }
+
+    @Override
+    public ImportJob start(String source, String target) throws ImportException, NodeNotFoundException, NodeTypeException {
+        LOGGER.log(Level.INFO, "Starting import of: " + source + " into: " + target);
+        Path path = this.resolve(source);
+        if (!Files.isDirectory(path)) {
+            throw new ImportException("import source is not a directory: " + source);
+        }
+        Node folder = files.get(target);
+        if (!folder.isFolder()) {
+            throw new NodeTypeException("import target must be a node of type TREE");
+        }
+        ImportJob job = new ImportJob(UUID.randomUUID().toString(), source, folder.getId());
+        QuarkusTransaction.requiringNew().run(() -> em.persist(job));
+        this.launch(job.getId());
+        return job;
+    }
+
+    @Override
+    public ImportJob resume(String id) throws ImportJobNotFoundException, ImportException {
+        LOGGER.log(Level.INFO, "Resuming import job: " + id);
+        ImportJob job = this.get(id);
+        if (job.getStatus() == ImportJob.Status.DONE) {
+            throw new ImportException("import job: " + id + " is already done");
+        }
+        if (!this.launch(id)) {
+            throw new ImportException("import job: " + id + " is already running");
+        }
+        return job;
+    }
+
+    @Override
+    @Transactional(Transactional.TxType.REQUIRED)
+    public ImportJob get(String id) throws ImportJobNotFoundException {
+        ImportJob job = em.find(ImportJob.class, id);
+        if (job == null) {
+            throw new ImportJobNotFoundException("unable to find an import job with id: " + id);
+        }
+        return job;
+    }
+
+    @Override
+    @Transactional(Transactional.TxType.REQUIRED)
+    public List<ImportJob> list() {
+        return em.createNamedQuery("ImportJob.findAll", ImportJob.class).getResultList();
+    }
+
+    private boolean launch(String id) {
+        if (!running.add(id)) {
+            return false;
+        }
+        executor.runAsync(() -> {
+            try {
+                this.process(id);
+            } finally {
+                running.remove(id);
+            }
+        });
+        return true;
+    }
+
+    private void process(String id) {
+        ImportJob job = this.update(id, current -> current.setStatus(ImportJob.Status.RUNNING));
+        LOGGER.log(Level.INFO, "Running import job: " + job);
+        ForkJoinPool pool = new ForkJoinPool(config.parallelism());
+        try {
+            Path root = this.resolve(job.getSource());
+            // Files are visited in a stable order (folders depth first, entries sorted by name) so that the number of
+            // files already handled is enough to resume after a crash: the mounted directory must not change meanwhile.
+            long checkpoint = job.getFiles() + job.getSkipped();
+            long position = 0;
+            List<Path> batch = new ArrayList<>(config.batchSize());
+            Deque<Path> folders = new ArrayDeque<>();
+            folders.push(root);
+            while (!folders.isEmpty()) {
+                List<Path> entries;
+                try (Stream<Path> stream = Files.list(folders.pop())) {
+                    entries = stream.sorted().toList();
+                }
+                List<Path> subfolders = new ArrayList<>();
+                for (Path entry : entries) {
+                    if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+                        subfolders.add(entry);
+                    } else if (Files.isRegularFile(entry, LinkOption.NOFOLLOW_LINKS) && position++ >= checkpoint) {
+                        batch.add(entry);
+                        if (batch.size() >= config.batchSize()) {
+                            this.flush(id, job.getTarget(), root, batch, pool);
+                            batch.clear();
+                        }
+                    }
+                }
+                for (int i = subfolders.size() - 1; i >= 0; i--) {
+                    folders.push(subfolders.get(i));
+                }
+            }
+            if (!batch.isEmpty()) {
+                this.flush(id, job.getTarget(), root, batch, pool);
+            }
+            // Index jobs for imported nodes were written to the outbox by each batch transaction.
+            ImportJob done = this.update(id, current -> {
+                current.setStatus(ImportJob.Status.DONE);
+                current.setFinished(System.currentTimeMillis());
+            });
+            LOGGER.log(Level.INFO, "Import job done: " + done + " ({0} files/s, {1} bytes/s)", new Object[]{done.getFilesPerSecond(), done.getBytesPerSecond()});
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Import job " + id + " failed", e);
+            this.update(id, current -> {
+                current.setStatus(ImportJob.Status.FAILED);
+                String message = String.valueOf(e.getMessage());
+                current.setError(message.length() > 1024 ? message.substring(0, 1024) : message);
+            });
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void flush(String id, String target, Path root, List<Path> batch, ForkJoinPool pool) throws Exception {
+        long start = System.nanoTime();
+        List<Path> accepted = new ArrayList<>(batch.size());
+        for (Path file : batch) {
+            if (Stream.of(this.relative(root, file).split("/")).allMatch(segment -> segment.matches(ValidationPattern.FILE_PATTERN))) {
+                accepted.add(file);
+            } else {
+                LOGGER.log(Level.WARNING, "Skipping file with unsupported name: " + file);
+            }
+        }
+        // Hashing dominates the import: files are read in parallel on a dedicated pool sized by configuration. Staged keys
+        // are released to the collector if the batch is not committed, or for files already present in the target.
+        LongAdder bytes = new LongAdder();
+        Queue<String> staged = new ConcurrentLinkedQueue<>();
+        String checkpoint = this.relative(root, batch.getLast());
+        List<FileUpload> uploads;
+        try {
+            List<FileUpload> ingested = pool.submit(() -> accepted.parallelStream().map(file -> this.ingest(root, file, bytes, staged)).toList()).get();
+            // Nodes and checkpoint are committed together: a crash replays at most the current batch, whose blobs are
+            // already in the store and only need to be linked again. Files whose path is already taken, by a previous
+            // import or by a replayed batch, are skipped so that a name collision never blocks the job.
+            uploads = QuarkusTransaction.requiringNew().call(() -> {
+                Set<String> conflicts = files.conflicts(target, ingested.stream().map(FileUpload::getPath).toList());
+                List<FileUpload> added = new ArrayList<>(ingested.size());
+                for (FileUpload upload : ingested) {
+                    if (conflicts.contains(upload.getPath())) {
+                        LOGGER.log(Level.WARNING, "Skipping file already present in target: " + upload.getPath());
+                        collector.release(upload.getContent());
+                    } else {
+                        added.add(upload);
+                    }
+                }
+                if (!added.isEmpty()) {
+                    files.addAll(target, added.iterator());
+                }
+                ImportJob job = em.find(ImportJob.class, id);
+                job.setFiles(job.getFiles() + added.size());
+                job.setSkipped(job.getSkipped() + batch.size() - added.size());
+                job.setBytes(job.getBytes() + bytes.sum());
+                job.setCheckpoint(checkpoint);
+                job.setUpdated(System.currentTimeMillis());
+                return added;
+            });
+        } catch (Exception e) {
+            staged.forEach(collector::release);
+            throw e;
+        }
+        metrics.addMetric("import.files", uploads.size());
+        metrics.addMetric("import.bytes", bytes.sum());
+        long elapsed = Math.max((System.nanoTime() - start) / 1000000, 1);
+        LOGGER.log(Level.INFO, "Import job " + id + ": batch of {0} files ({1} bytes) imported in {2} ms, checkpoint: {3}",
+                new Object[]{uploads.size(), bytes.sum(), elapsed, checkpoint});
+    }
+
+    private FileUpload ingest(Path root, Path file, LongAdder bytes, Queue<String> staged) {
+        try {
+            FileUpload upload = new FileUpload(this.relative(root, file), null);
+            upload.setContent(datastore.ingest(file, config.link()));
+            staged.add(upload.getContent());
+            bytes.add(Files.size(file));
+            return upload;
+        } catch (DataStoreException | IOException e) {
+            throw new IllegalStateException("unable to ingest file: " + file, e);
+        }
+    }
+
+    private ImportJob update(String id, Consumer<ImportJob> mutator) {
+        return QuarkusTransaction.requiringNew().call(() -> {
+            ImportJob job = em.find(ImportJob.class, id);
+            mutator.accept(job);
+            job.setUpdated(System.currentTimeMillis());
+            return job;
+        });
+    }
+
+    private Path resolve(String source) throws ImportException {
+        Path root = Paths.get(config.root()).toAbsolutePath().normalize();
+        Path path = root.resolve((source == null) ? "" : source).normalize();
+        if (!path.startsWith(root)) {
+            throw new ImportException("import source must be located under: " + root);
+        }
+        return path;
+    }
+
+    private String relative(Path root, Path file) {
+        return root.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.importer.entity;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+@Entity
+@NamedQueries({
+        @NamedQuery(name = "ImportJob.findAll", query = "SELECT j FROM ImportJob j ORDER BY j.started DESC"),
+        @NamedQuery(name = "ImportJob.findByStatuses", query = "SELECT j FROM ImportJob j WHERE j.status IN :statuses"),
+})
+@Table(name = "import_job")
+public class ImportJob implements Serializable {
+
+    @Id
+    @Column(length = 50)
+    private String id;
+    @Column(length = 1024)
+    private String source;
+    @Column(length = 50)
+    private String target;
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20)
+    private Status status;
+    private long files;
+    private long skipped;
+    private long bytes;
+    @Column(length = 4096)
+    private String checkpoint;
+    private long started;
+    private long updated;
+    private long finished;
+    @Column(length = 1024)
+    private String error;
+
+    public ImportJob() {
+    }
+
+    public ImportJob(String id, String source, String target) {
+        this.id = id;
+        this.source = source;
+        this.target = target;
+        this.status = Status.PENDING;
+        this.started = System.currentTimeMillis();
+        this.updated = this.started;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public void setSource(String source) {
+        this.source = source;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public void setTarget(String target) {
+        this.target = target;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public long getFiles() {
+        return files;
+    }
+
+    public void setFiles(long files) {
+        this.files = files;
+    }
+
+    public long getSkipped() {
+        return skipped;
+    }
+
+    public void setSkipped(long skipped) {
+        this.skipped = skipped;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+
+    public String getCheckpoint() {
+        return checkpoint;
+    }
+
+    public void setCheckpoint(String checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    public long getStarted() {
+        return started;
+    }
+
+    public void setStarted(long started) {
+        this.started = started;
+    }
+
+    public long getUpdated() {
+        return updated;
+    }
+
+    public void setUpdated(long updated) {
+        this.updated = updated;
+    }
+
+    public long getFinished() {
+        return finished;
+    }
+
+    public void setFinished(long finished) {
+        this.finished = finished;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public long getElapsed() {
+        return Math.max(((finished > 0) ? finished : updated) - started, 1);
+    }
+
+    public double getFilesPerSecond() {
+        return files * 1000d / getElapsed();
+    }
+
+    public double getBytesPerSecond() {
+        return bytes * 1000d / getElapsed();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ImportJob importJob = (ImportJob) o;
+        return Objects.equals(id, importJob.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id);
+    }
+
+    @Override
+    public String toString() {
+        return "ImportJob{" +
+                "id='" + id + '\'' +
+                ", source='" + source + '\'' +
+                ", target='" + target + '\'' +
+                ", status=" + status +
+                ", files=" + files +
+                ", skipped=" + skipped +
+                ", bytes=" + bytes +
+                ", checkpoint='" + checkpoint + '\'' +
+                '}';
+    }
+
+    public enum Status {
+        PENDING,
+        RUNNING,
+        DONE,
+        FAILED
+    }
+}
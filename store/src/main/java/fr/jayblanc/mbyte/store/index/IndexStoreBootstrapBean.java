@@ -1,27 +1,69 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
 package fr.jayblanc.mbyte.store.index;
 
+import fr.jayblanc.mbyte.store.changes.ChangeCursorExpiredException;
+import fr.jayblanc.mbyte.store.changes.ChangeService;
+import fr.jayblanc.mbyte.store.changes.entity.NodeChange;
+import fr.jayblanc.mbyte.store.files.FileService;
 import fr.jayblanc.mbyte.store.files.FileServiceBean;
-import fr.jayblanc.mbyte.store.files.entity.Node;
+import io.quarkus.narayana.jta.QuarkusTransaction;
 import io.quarkus.runtime.Startup;
 import jakarta.annotation.PostConstruct;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
-import jakarta.persistence.EntityManager;
+import org.eclipse.microprofile.context.ManagedExecutor;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * At startup the index is reconciled with the store by default: fingerprints of the indexed documents are compared with
+ * a streamed walk of the tree and only missing, stale or orphaned documents are sent to the index outbox, so the cost is
+ * proportional to the drift rather than to the size of the store.
+ * <p>
+ * Full reindex is a blue/green switch: the tree is imported in the background into a brand-new collection while the
+ * current one keeps serving searches and receiving updates. Once the document count of the new collection is verified,
+ * the store alias is moved to it in one step and the old collection is dropped. Nodes changed during the rebuild are then
+ * replayed from the changes journal through the index outbox, so the new collection misses nothing.
+ */
 @Startup
 @Singleton
 public class IndexStoreBootstrapBean {
 
     private static final Logger LOGGER = Logger.getLogger(IndexStoreBootstrapBean.class.getName());
+    private static final int REPLAY_PAGE_SIZE = 1000;
+    private static final int UNAVAILABLE_RETRY_SECONDS = 30;
 
     @Inject IndexStoreConfig config;
-    @Inject EntityManager em;
     @Inject FileServiceBean files;
     @Inject IndexStoreService index;
+    @Inject IndexStoreServiceWorker worker;
+    @Inject ChangeService changes;
+    @Inject ManagedExecutor executor;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
 
     @PostConstruct
     public void reindexIfEnabled() {
@@ -29,22 +71,181 @@ public class IndexStoreBootstrapBean {
             LOGGER.log(Level.INFO, "Typesense bootstrap reindex disabled");
             return;
         }
-        List<Node> nodes = em.createNamedQuery("Node.findAll", Node.class).getResultList();
+        if (config.bootstrap().mode() == IndexStoreConfig.Bootstrap.Mode.REBUILD) {
+            this.startWhenAvailable(this::rebuild);
+        } else {
+            this.startWhenAvailable(this::reconcile);
+        }
+    }
+
+    /**
+     * The store starts without waiting for the index: if it is not reachable yet the bootstrap is postponed until it is.
+     */
+    private void startWhenAvailable(Runnable task) {
+        if (index.isAvailable()) {
+            this.start(task);
+            return;
+        }
+        LOGGER.log(Level.INFO, "Index unavailable, bootstrap postponed for {0}s", UNAVAILABLE_RETRY_SECONDS);
+        CompletableFuture.delayedExecutor(UNAVAILABLE_RETRY_SECONDS, TimeUnit.SECONDS, executor).execute(() -> this.startWhenAvailable(task));
+    }
+
+    /**
+     * @return false if a rebuild or a reconciliation is already running
+     */
+    public boolean rebuildInBackground() {
+        return this.start(this::rebuild);
+    }
+
+    /**
+     * @return false if a rebuild or a reconciliation is already running
+     */
+    public boolean reconcileInBackground() {
+        return this.start(this::reconcile);
+    }
+
+    private boolean start(Runnable task) {
+        if (!running.compareAndSet(false, true)) {
+            LOGGER.log(Level.INFO, "Typesense rebuild or reconciliation already running");
+            return false;
+        }
+        executor.runAsync(() -> {
+            try {
+                task.run();
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    private void rebuild() {
+        String collection = null;
+        try {
+            long cursor = changes.cursor();
+            collection = index.createCollection();
+            LOGGER.log(Level.INFO, "Rebuilding store index into collection: {0}", collection);
+            Rebuild rebuild = new Rebuild(collection);
+            files.walk(FileService.ROOT_NODE_ID, (path, node) -> rebuild.add(files.getIndexableContent(node.getId())));
+            rebuild.flush();
+            long count = index.count(collection);
+            // A rejected object may still have some of its passages, its first one included, in the collection.
+            if (count < rebuild.imported || count > rebuild.imported + rebuild.rejected.size()) {
+                throw new IndexStoreException("collection " + collection + " holds " + count + " document(s) where " + rebuild.imported + " were imported");
+            }
+            String promoted = collection;
+            String previous = index.promote(promoted);
+            // Serving now: a failure from here on must not drop it.
+            collection = null;
+            if (previous != null && !previous.equals(promoted)) {
+                index.drop(previous);
+            }
+            LOGGER.log(Level.INFO, "Store index rebuilt, {0} document(s) imported, {1} rejected", new Object[]{rebuild.imported, rebuild.rejected.size()});
+            this.submit("index.retry", rebuild.rejected);
+            this.replay(cursor);
+        } catch (ChangeCursorExpiredException e) {
+            LOGGER.log(Level.WARNING, "Changes made during the rebuild are no longer in the journal, a new rebuild is needed", e);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Store index rebuild failed", e);
+            if (collection != null) {
+                try {
+                    index.drop(collection);
+                } catch (IndexStoreException ex) {
+                    LOGGER.log(Level.WARNING, "Unable to drop collection of failed rebuild: " + collection, ex);
+                }
+            }
+        }
+    }
+
+    private void reconcile() {
         try {
-            index.clearStoreDocuments();
+            LOGGER.log(Level.INFO, "Reconciling store index");
+            IndexStoreDrift drift = new IndexStoreDrift(index.fingerprints());
+            List<String> pending = new ArrayList<>();
+            files.walk(FileService.ROOT_NODE_ID, (path, node) -> {
+                if (!drift.visit(node)) {
+                    return;
+                }
+                pending.add(node.getId());
+                if (pending.size() >= REPLAY_PAGE_SIZE) {
+                    this.submit("index.reconcile", pending);
+                }
+            });
+            // Whatever was not visited has no live node anymore: its job will find nothing to index and delete it.
+            for (String orphan : drift.orphans()) {
+                pending.add(orphan);
+                if (pending.size() >= REPLAY_PAGE_SIZE) {
+                    this.submit("index.reconcile", pending);
+                }
+            }
+            this.submit("index.reconcile", pending);
+            LOGGER.log(Level.INFO, "Store index reconciled: {0} missing, {1} stale and {2} orphaned document(s) submitted",
+                    new Object[]{drift.missing(), drift.stale(), drift.orphaned()});
         } catch (Exception e) {
-            LOGGER.log(Level.WARNING, "Unable to purge existing Typesense documents before reindex", e);
+            LOGGER.log(Level.SEVERE, "Store index reconciliation failed", e);
+        }
+    }
+
+    private void submit(String type, List<String> nodes) {
+        QuarkusTransaction.requiringNew().run(() -> nodes.forEach(node -> worker.submit(type, node)));
+        nodes.clear();
+    }
+
+    private void replay(long cursor) throws ChangeCursorExpiredException {
+        List<NodeChange> page;
+        long replayed = 0;
+        do {
+            page = changes.list(cursor, REPLAY_PAGE_SIZE);
+            List<String> nodes = new ArrayList<>(page.stream().map(NodeChange::getNode).distinct().toList());
+            replayed += nodes.size();
+            this.submit("index.replay", nodes);
+            if (!page.isEmpty()) {
+                cursor = page.getLast().getPosition();
+            }
+        } while (page.size() == REPLAY_PAGE_SIZE);
+        LOGGER.log(Level.INFO, "{0} node(s) changed during rebuild submitted for indexing", replayed);
+    }
+
+    class Rebuild {
+
+        private final String collection;
+        private final List<IndexableContent> batch = new ArrayList<>();
+        private final List<String> rejected = new ArrayList<>();
+        private long bytes;
+        private long imported;
+
+        Rebuild(String collection) {
+            this.collection = collection;
         }
-        LOGGER.log(Level.INFO, "Reindexing {0} node(s) into Typesense", nodes.size());
-        int indexed = 0;
-        for (Node node : nodes) {
+
+        void add(IndexableContent content) throws IOException {
+            if (content == null) {
+                return;
+            }
+            batch.add(content);
+            bytes += (content.getContent() == null) ? 0 : content.getContent().length();
+            if (batch.size() >= config.batch().size() || bytes >= config.batch().maxBytes()) {
+                this.flush();
+            }
+        }
+
+        void flush() throws IOException {
+            if (batch.isEmpty()) {
+                return;
+            }
             try {
-                index.index(files.getIndexableContent(node.getId()));
-                indexed++;
-            } catch (Exception e) {
-                LOGGER.log(Level.WARNING, "Unable to reindex node " + node.getId(), e);
+                Map<String, String> failures = index.indexAll(collection, batch);
+                imported += batch.size() - failures.size();
+                rejected.addAll(failures.keySet());
+            } catch (IndexStoreException e) {
+                throw new IOException("unable to import batch into collection " + collection, e);
             }
+            batch.clear();
+            bytes = 0;
         }
-        LOGGER.log(Level.INFO, "Typesense reindex completed, indexed {0}/{1} node(s)", new Object[]{indexed, nodes.size()});
     }
 }
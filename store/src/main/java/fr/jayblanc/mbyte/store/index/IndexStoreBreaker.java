@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.index;
+
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Circuit breaker of the index client. After a number of consecutive failures (unreachable index, timeouts, server
+ * errors) the breaker opens and requests are refused without being sent. Once the open period is over a single trial
+ * request is let through: its success closes the breaker, its failure opens it again for another period.
+ */
+final class IndexStoreBreaker {
+
+    private static final Logger LOGGER = Logger.getLogger(IndexStoreBreaker.class.getName());
+
+    enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int threshold;
+    private final long openMillis;
+    private final LongSupplier clock;
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+    private boolean trial;
+
+    IndexStoreBreaker(int threshold, long openMillis, LongSupplier clock) {
+        this.threshold = Math.max(1, threshold);
+        this.openMillis = openMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * @return true if a request may be sent; in half open state only the first caller gets true until its outcome is
+     * known
+     */
+    synchronized boolean allow() {
+        if (state == State.OPEN) {
+            if (clock.getAsLong() - openedAt < openMillis) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            trial = false;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trial) {
+                return false;
+            }
+            trial = true;
+        }
+        return true;
+    }
+
+    synchronized void success() {
+        if (state != State.CLOSED) {
+            LOGGER.log(Level.INFO, "Index reachable again, circuit breaker closed");
+        }
+        state = State.CLOSED;
+        failures = 0;
+        trial = false;
+    }
+
+    /**
+     * @return true if this failure opened the breaker
+     */
+    synchronized boolean failure() {
+        failures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && failures >= threshold)) {
+            LOGGER.log(Level.WARNING, "Index unreachable after {0} failure(s), circuit breaker open for {1}ms", new Object[]{failures, openMillis});
+            state = State.OPEN;
+            openedAt = clock.getAsLong();
+            trial = false;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * The request let through gave no outcome (cancelled): another one may be tried.
+     */
+    synchronized void abandon() {
+        trial = false;
+    }
+
+    synchronized State state() {
+        if (state == State.OPEN && clock.getAsLong() - openedAt >= openMillis) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    synchronized int failures() {
+        return failures;
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.index;
+
+/**
+ * Thrown when no slot is available for a request to the index, either at once for requests that must not wait
+ * (searches) or within the acquire timeout for the others.
+ */
+public class IndexStoreBusyException extends IndexStoreException {
+
+    public IndexStoreBusyException(String s) {
+        super(s);
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.index;
+
+import fr.jayblanc.mbyte.store.metrics.MetricsService;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Non-blocking HTTP client for Typesense with bounded concurrency per class of operation.
+ * <p>
+ * Requests are sent with {@link HttpClient#sendAsync} over a small dedicated pool; connections are kept alive and
+ * reused by the JDK client (Typesense speaks HTTP/1.1, so there is no HTTP/2 multiplexing to gain). Each class of
+ * operation owns a number of in-flight slots: searches are refused at once when all their slots are taken, so an
+ * overloaded index sheds load instead of queueing requests, while indexing and administration wait for a slot, which
+ * slows the index worker down to what the index absorbs. Responses consumed as streams hold their slot only until their
+ * headers are received.
+ * <p>
+ * Latency is published per endpoint as a histogram in the metrics: typesense.&lt;endpoint&gt;.latency.&lt;bound&gt;ms
+ * counts requests that took less than the bound (and more than the previous one), next to .count, .total-ms and
+ * .errors.
+ * <p>
+ * All requests go through a {@link IndexStoreBreaker circuit breaker}: while the index is unreachable they fail at once
+ * with an {@link IndexStoreUnavailableException} instead of waiting for connect and read timeouts.
+ */
+final class IndexStoreClient implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(IndexStoreClient.class.getName());
+    private static final long[] LATENCY_BOUNDS_MS = {5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000};
+
+    enum Operation {
+        SEARCH,
+        CONVERSE,
+        INDEX,
+        ADMIN
+    }
+
+    private final MetricsService metrics;
+    private final ExecutorService executor;
+    private final HttpClient client;
+    private final Map<Operation, Semaphore> slots = new EnumMap<>(Operation.class);
+    private final Duration acquireTimeout;
+    private final IndexStoreBreaker breaker;
+
+    IndexStoreClient(IndexStoreConfig.Client config, IndexStoreConfig.Breaker breaker, MetricsService metrics) {
+        this.metrics = metrics;
+        this.breaker = new IndexStoreBreaker(breaker.failureThreshold(), breaker.openSeconds() * 1000L, System::currentTimeMillis);
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(config.threads(), runnable -> {
+            Thread thread = new Thread(runnable, "typesense-client-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(3))
+                .executor(executor)
+                .build();
+        this.slots.put(Operation.SEARCH, new Semaphore(config.searchConcurrency()));
+        this.slots.put(Operation.CONVERSE, new Semaphore(config.converseConcurrency()));
+        this.slots.put(Operation.INDEX, new Semaphore(config.indexConcurrency()));
+        this.slots.put(Operation.ADMIN, new Semaphore(config.adminConcurrency()));
+        this.acquireTimeout = Duration.ofMillis(config.acquireTimeoutMs());
+    }
+
+    /**
+     * Sends without blocking the caller, the returned future fails with an {@link IndexStoreBusyException} when no slot
+     * of the operation is available.
+     */
+    <T> CompletableFuture<HttpResponse<T>> sendAsync(Operation operation, HttpRequest request, HttpResponse.BodyHandler<T> handler) {
+        if (!slots.get(operation).tryAcquire()) {
+            metrics.incMetric("typesense." + endpoint(request.uri()) + ".rejected");
+            return CompletableFuture.failedFuture(new IndexStoreBusyException("Too many concurrent " + operation.name().toLowerCase() + " requests to the index"));
+        }
+        if (!breaker.allow()) {
+            slots.get(operation).release();
+            return CompletableFuture.failedFuture(new IndexStoreUnavailableException("Index unavailable, circuit breaker open"));
+        }
+        return this.dispatch(operation, request, handler);
+    }
+
+    /**
+     * Sends and waits for the response, waiting first up to the acquire timeout for a slot of the operation.
+     */
+    <T> HttpResponse<T> send(Operation operation, HttpRequest request, HttpResponse.BodyHandler<T> handler) throws IOException, InterruptedException, IndexStoreBusyException, IndexStoreUnavailableException {
+        if (!slots.get(operation).tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+            metrics.incMetric("typesense." + endpoint(request.uri()) + ".rejected");
+            throw new IndexStoreBusyException("No " + operation.name().toLowerCase() + " slot available for the index within " + acquireTimeout.toMillis() + "ms");
+        }
+        if (!breaker.allow()) {
+            slots.get(operation).release();
+            throw new IndexStoreUnavailableException("Index unavailable, circuit breaker open");
+        }
+        CompletableFuture<HttpResponse<T>> response = this.dispatch(operation, request, handler);
+        try {
+            return response.get();
+        } catch (InterruptedException e) {
+            response.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            throw new IOException("Request to the index failed: " + request.uri().getPath(), e.getCause());
+        }
+    }
+
+    int available(Operation operation) {
+        return slots.get(operation).availablePermits();
+    }
+
+    /**
+     * @return false while the breaker is open, requests being refused without trying the index
+     */
+    boolean isAvailable() {
+        return breaker.state() != IndexStoreBreaker.State.OPEN;
+    }
+
+    IndexStoreBreaker.State state() {
+        return breaker.state();
+    }
+
+    int failures() {
+        return breaker.failures();
+    }
+
+    private <T> CompletableFuture<HttpResponse<T>> dispatch(Operation operation, HttpRequest request, HttpResponse.BodyHandler<T> handler) {
+        String endpoint = endpoint(request.uri());
+        long start = System.nanoTime();
+        CompletableFuture<HttpResponse<T>> response;
+        try {
+            response = client.sendAsync(request, handler);
+        } catch (RuntimeException e) {
+            slots.get(operation).release();
+            breaker.abandon();
+            throw e;
+        }
+        return response.whenComplete((result, error) -> {
+            slots.get(operation).release();
+            boolean failed = error != null || result.statusCode() >= 500;
+            if (error instanceof CancellationException) {
+                breaker.abandon();
+            } else if (!failed) {
+                breaker.success();
+            } else if (breaker.failure()) {
+                metrics.incMetric("typesense.breaker.opened");
+            }
+            this.record(endpoint, (System.nanoTime() - start) / 1_000_000L, failed);
+        });
+    }
+
+    private void record(String endpoint, long elapsed, boolean failed) {
+        String prefix = "typesense." + endpoint;
+        metrics.incMetric(prefix + ".count");
+        metrics.addMetric(prefix + ".total-ms", elapsed);
+        if (failed) {
+            metrics.incMetric(prefix + ".errors");
+        }
+        for (long bound : LATENCY_BOUNDS_MS) {
+            if (elapsed < bound) {
+                metrics.incMetric(prefix + ".latency." + bound + "ms");
+                return;
+            }
+        }
+        metrics.incMetric(prefix + ".latency.inf");
+    }
+
+    /**
+     * Endpoint label of a request, without the names of collections, aliases and models: /collections/x/documents/search
+     * gives collections.documents.search.
+     */
+    static String endpoint(URI uri) {
+        StringBuilder endpoint = new StringBuilder();
+        String previous = "";
+        for (String segment : uri.getPath().split("/")) {
+            if (segment.isEmpty() || previous.equals("collections") || previous.equals("aliases") || previous.equals("models")) {
+                previous = segment.isEmpty() ? previous : "";
+                continue;
+            }
+            if (!endpoint.isEmpty()) {
+                endpoint.append('.');
+            }
+            endpoint.append(segment);
+            previous = segment;
+        }
+        return endpoint.isEmpty() ? "root" : endpoint.toString();
+    }
+
+    @Override
+    public void close() {
+        LOGGER.log(Level.INFO, "Closing Typesense client");
+        client.shutdownNow();
+        executor.shutdownNow();
+    }
+}
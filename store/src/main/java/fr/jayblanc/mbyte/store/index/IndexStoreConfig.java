@@ -29,14 +29,58 @@ public interface IndexStoreConfig {
 
     Bootstrap bootstrap();
 
+    Batch batch();
+
+    Outbox outbox();
+
+    Passage passage();
+
     Typesense typesense();
 
+    Lucene lucene();
+
     enum Backend {
-        TYPESENSE
+        TYPESENSE,
+        LUCENE
     }
 
     interface Bootstrap {
         boolean reindex();
+        Mode mode();
+
+        enum Mode {
+            RECONCILE,
+            REBUILD
+        }
+    }
+
+    interface Batch {
+        int size();
+        long maxBytes();
+    }
+
+    interface Outbox {
+        String pollInterval();
+        int debounceMs();
+        int leaseSeconds();
+        int maxAttempts();
+        int backoffSeconds();
+        int maxBackoffSeconds();
+        int retentionHours();
+    }
+
+    interface Passage {
+        int size();
+        int overlap();
+        int maxChars();
+    }
+
+    interface Lucene {
+        String home();
+        String refreshInterval();
+        String commitInterval();
+        double ramBufferMb();
+        int maxResults();
     }
 
     interface Typesense {
@@ -46,10 +90,26 @@ public interface IndexStoreConfig {
         String apiKey();
         String collection();
         String storeId();
+        Client client();
+        Breaker breaker();
         Embedding embedding();
         Conversation conversation();
     }
 
+    interface Client {
+        int threads();
+        int searchConcurrency();
+        int converseConcurrency();
+        int indexConcurrency();
+        int adminConcurrency();
+        int acquireTimeoutMs();
+    }
+
+    interface Breaker {
+        int failureThreshold();
+        int openSeconds();
+    }
+
     interface Embedding {
         String field();
         String modelName();
@@ -16,7 +16,12 @@
  */
 package fr.jayblanc.mbyte.store.index;
 
+import org.apache.commons.codec.digest.MurmurHash3;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 public class IndexStoreDocumentBuilder {
@@ -31,22 +36,81 @@ public class IndexStoreDocumentBuilder {
     public static final String PARENT_FIELD = "parent";
     public static final String STORE_ID_FIELD = "store_id";
     public static final String MODIFIED_AT_FIELD = "modified_at";
+    public static final String CONTENT_HASH_FIELD = "content_hash";
+    public static final String EMBEDDING_HASH_FIELD = "embedding_hash";
+    public static final String PARENT_ID_FIELD = "parent_id";
+    public static final String PASSAGE_FIELD = "passage";
 
     public static Map<String, Object> buildDocument(IndexableContent object) {
+        return buildDocument(object, object.getIdentifier(), 0, object.getContent());
+    }
+
+    /**
+     * One document per passage of the content: the first one keeps the object identifier and the others are suffixed
+     * with their rank. All of them carry the object identifier as parent_id, so they can be grouped or removed together.
+     */
+    public static List<Map<String, Object>> buildDocuments(IndexableContent object, int passageSize, int passageOverlap) {
+        List<String> passages = IndexStorePassages.split(object.getContent(), passageSize, passageOverlap);
+        List<Map<String, Object>> documents = new ArrayList<>(passages.size());
+        for (int i = 0; i < passages.size(); i++) {
+            documents.add(buildDocument(object, passageIdentifier(object.getIdentifier(), i), i, passages.get(i)));
+        }
+        return documents;
+    }
+
+    public static String passageIdentifier(String identifier, int passage) {
+        return (passage == 0) ? identifier : identifier + ":" + passage;
+    }
+
+    private static Map<String, Object> buildDocument(IndexableContent object, String identifier, int passage, String content) {
         Map<String, Object> document = new LinkedHashMap<>();
-        document.put(ID_FIELD, object.getIdentifier());
+        document.put(ID_FIELD, identifier);
+        document.put(PARENT_ID_FIELD, object.getIdentifier());
+        document.put(PASSAGE_FIELD, passage);
         document.put(TYPE_FIELD, object.getType());
         document.put(SCOPE_FIELD, object.getScope().name());
-        document.put(CONTENT_FIELD, object.getContent());
+        document.put(CONTENT_FIELD, content);
         document.put(NAME_FIELD, object.getName());
         document.put(MIMETYPE_FIELD, object.getMimetype());
         document.put(NODE_TYPE_FIELD, object.getNodeType());
         document.put(PARENT_FIELD, object.getParent());
         document.put(STORE_ID_FIELD, object.getStoreId());
         document.put(MODIFIED_AT_FIELD, object.getModifiedAt());
+        document.put(CONTENT_HASH_FIELD, object.getContentHash());
+        document.put(EMBEDDING_HASH_FIELD, embeddingHash(content, object.getName()));
         return document;
     }
 
+    /**
+     * Same document without the fields the embedding is computed from: sent as a partial update, it refreshes the
+     * metadata and leaves the stored embedding as is.
+     */
+    public static Map<String, Object> withoutEmbeddingSources(Map<String, Object> document) {
+        Map<String, Object> partial = new LinkedHashMap<>(document);
+        partial.remove(CONTENT_FIELD);
+        partial.remove(NAME_FIELD);
+        return partial;
+    }
+
+    /**
+     * Digest of the exact text the embedding is computed from (see the embed.from of the collection schema): two
+     * documents with the same digest have the same embedding.
+     */
+    public static String embeddingHash(String content, String name) {
+        String source = ((content == null) ? "" : content) + "\u0000" + ((name == null) ? "" : name);
+        long[] hash = MurmurHash3.hash128x64(source.getBytes(StandardCharsets.UTF_8));
+        return String.format("%016x%016x", hash[0], hash[1]);
+    }
+
+    /**
+     * Compact digest of the node state a document was built from, used to find stale documents without comparing (or
+     * even loading) their content.
+     */
+    public static long fingerprint(String name, String parent, long modifiedAt, String contentHash) {
+        String state = name + "\u0000" + parent + "\u0000" + modifiedAt + "\u0000" + ((contentHash == null) ? "" : contentHash);
+        return MurmurHash3.hash128x64(state.getBytes(StandardCharsets.UTF_8))[0];
+    }
+
     private IndexStoreDocumentBuilder() {
     }
 }
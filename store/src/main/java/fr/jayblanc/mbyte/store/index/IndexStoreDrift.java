@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.index;
+
+import fr.jayblanc.mbyte.store.files.entity.NodeInfo;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Drift between the store tree and the index, measured from the fingerprints of the indexed documents: each visited
+ * node is missing, stale or in sync, and the documents whose node was never visited are orphans. The fingerprints map
+ * is consumed by the visit.
+ */
+final class IndexStoreDrift {
+
+    private final Map<String, Long> indexed;
+    private long missing;
+    private long stale;
+
+    IndexStoreDrift(Map<String, Long> indexed) {
+        this.indexed = indexed;
+    }
+
+    /**
+     * @return true if the document of the node has to be indexed again
+     */
+    boolean visit(NodeInfo node) {
+        Long fingerprint = indexed.remove(node.getId());
+        if (fingerprint == null) {
+            missing++;
+            return true;
+        }
+        if (fingerprint != IndexStoreDocumentBuilder.fingerprint(node.getName(), node.getParent(), node.getModification(),
+                node.isFolder() ? "" : node.getContent())) {
+            stale++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the documents of nodes not visited, only meaningful once the whole tree has been visited
+     */
+    Set<String> orphans() {
+        return indexed.keySet();
+    }
+
+    long missing() {
+        return missing;
+    }
+
+    long stale() {
+        return stale;
+    }
+
+    long orphaned() {
+        return indexed.size();
+    }
+}
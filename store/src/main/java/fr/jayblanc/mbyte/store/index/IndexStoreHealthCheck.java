@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.index;
+
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.smallrye.health.api.Wellness;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.health.HealthCheck;
+import org.eclipse.microprofile.health.HealthCheckResponse;
+
+/**
+ * Reports the index circuit breaker as a wellness check (/q/health/well): the store keeps serving in degraded mode
+ * while the index is down, so this must not make the instance unready.
+ */
+@IfBuildProperty(name = "store.index.backend", stringValue = "typesense", enableIfMissing = true)
+@Wellness
+@ApplicationScoped
+public class IndexStoreHealthCheck implements HealthCheck {
+
+    @Inject IndexStoreServiceBean index;
+
+    @Override
+    public HealthCheckResponse call() {
+        String collection = index.collection();
+        return HealthCheckResponse.named("index")
+                .status(index.breakerState() != IndexStoreBreaker.State.OPEN && collection != null)
+                .withData("breaker", index.breakerState().name())
+                .withData("failures", index.breakerFailures())
+                .withData("collection", (collection == null) ? "unresolved" : collection)
+                .withData("search-slots", index.availableSlots(IndexStoreClient.Operation.SEARCH))
+                .withData("index-slots", index.availableSlots(IndexStoreClient.Operation.INDEX))
+                .build();
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.index;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JSONL encoding of a batch for the Typesense import endpoint and decoding of its per-document results.
+ */
+final class IndexStoreImport {
+
+    private IndexStoreImport() {
+    }
+
+    /**
+     * Serializes documents one line at a time as the stream is read, so the request body is never built as a whole.
+     */
+    static InputStream encode(ObjectMapper mapper, List<Map<String, Object>> documents) {
+        Iterator<Map<String, Object>> iterator = documents.iterator();
+        return new SequenceInputStream(new Enumeration<>() {
+            @Override
+            public boolean hasMoreElements() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                try {
+                    byte[] line = mapper.writeValueAsBytes(iterator.next());
+                    byte[] terminated = new byte[line.length + 1];
+                    System.arraycopy(line, 0, terminated, 0, line.length);
+                    terminated[line.length] = '\n';
+                    return new ByteArrayInputStream(terminated);
+                } catch (JsonProcessingException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Reads the import response, one result line per document in request order, and returns the failed documents
+     * identifiers with their error.
+     */
+    static Map<String, String> failures(ObjectMapper mapper, List<String> identifiers, InputStream response) throws IOException {
+        Map<String, String> failures = new LinkedHashMap<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(response, StandardCharsets.UTF_8));
+        int index = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            JsonNode result = mapper.readTree(line);
+            if (!result.path("success").asBoolean(false)) {
+                String identifier = (index < identifiers.size()) ? identifiers.get(index) : result.path("id").asText("");
+                failures.put(identifier, result.path("error").asText("unknown error"));
+            }
+            index++;
+        }
+        for (int i = index; i < identifiers.size(); i++) {
+            failures.put(identifiers.get(i), "no result returned");
+        }
+        return failures;
+    }
+}
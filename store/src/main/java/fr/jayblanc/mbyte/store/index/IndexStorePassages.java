@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.index;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits the text of a document into overlapping passages of bounded size, each one indexed and embedded on its own.
+ * Cuts are moved back to the last whitespace of the window when there is one in its second half, so words are not
+ * split and the overlap keeps a sentence cut at a boundary readable in at least one passage.
+ */
+final class IndexStorePassages {
+
+    private IndexStorePassages() {
+    }
+
+    static List<String> split(String text, int size, int overlap) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("passage size must be positive");
+        }
+        if (text == null || text.length() <= size) {
+            return List.of((text == null) ? "" : text);
+        }
+        int step = Math.max(1, Math.min(overlap, size / 2));
+        List<String> passages = new ArrayList<>();
+        int start = 0;
+        while (start < text.length()) {
+            int end = Math.min(text.length(), start + size);
+            if (end < text.length()) {
+                int cut = lastWhitespace(text, start + size / 2, end);
+                if (cut > 0) {
+                    end = cut;
+                }
+            }
+            passages.add(text.substring(start, end).strip());
+            if (end >= text.length()) {
+                break;
+            }
+            int next = end - ((overlap <= 0) ? 0 : step);
+            // Starts the next passage on a word boundary as well, without ever losing the overlap.
+            int boundary = lastWhitespace(text, Math.max(start + 1, next - step), next);
+            start = Math.max(start + 1, (boundary > 0) ? boundary : next);
+        }
+        return passages;
+    }
+
+    private static int lastWhitespace(String text, int from, int to) {
+        for (int i = to - 1; i >= from; i--) {
+            if (Character.isWhitespace(text.charAt(i))) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+}
@@ -17,19 +17,75 @@
 package fr.jayblanc.mbyte.store.index;
 
 import java.io.InputStream;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
 
 public interface IndexStoreService {
 
     void clearStoreDocuments() throws IndexStoreException;
 
+    /**
+     * @return false while the index cannot be reached: its operations then fail at once with an
+     * {@link IndexStoreUnavailableException}
+     */
+    boolean isAvailable();
+
     void index(IndexableContent object) throws IndexStoreException;
 
+    /**
+     * Upserts a batch of objects, each one as one document per passage of its content.
+     *
+     * @return the identifiers of the objects that were rejected, with the reason
+     */
+    Map<String, String> indexAll(List<IndexableContent> objects) throws IndexStoreException;
+
+    /**
+     * Same as {@link #indexAll(List)} but targets the given collection instead of the one currently serving.
+     */
+    Map<String, String> indexAll(String collection, List<IndexableContent> objects) throws IndexStoreException;
+
     void remove(String identifier) throws IndexStoreException;
 
-    List<IndexStoreResult> search(String scope, String query) throws IndexStoreException;
+    void removeAll(Collection<String> identifiers) throws IndexStoreException;
+
+    /**
+     * Streams the documents of the store and returns their fingerprints by identifier.
+     *
+     * @see IndexStoreDocumentBuilder#fingerprint(String, String, long, String)
+     */
+    Map<String, Long> fingerprints() throws IndexStoreException;
+
+    /**
+     * Searches without blocking the caller. The stage fails with an {@link IndexStoreBusyException} when too many
+     * searches are already running, or with an {@link IndexStoreException}.
+     */
+    CompletionStage<List<IndexStoreResult>> search(String scope, String query);
+
+    /**
+     * Same as {@link #search(String, String)} for conversational searches.
+     */
+    CompletionStage<IndexStoreConversationResult> converse(String scope, String query, String conversationId);
+
+    /**
+     * Creates a new, empty, versioned collection for a rebuild; it is not used until promoted.
+     */
+    String createCollection() throws IndexStoreException;
+
+    /**
+     * @return the number of indexed objects of the store in the collection, whatever their number of passages
+     */
+    long count(String collection) throws IndexStoreException;
+
+    /**
+     * Atomically makes the given collection the one serving reads and writes.
+     *
+     * @return the collection previously serving if it can be dropped, null otherwise
+     */
+    String promote(String collection) throws IndexStoreException;
 
-    IndexStoreConversationResult converse(String scope, String query, String conversationId) throws IndexStoreException;
+    void drop(String collection) throws IndexStoreException;
 
     InputStream converseStream(String scope, String query, String conversationId) throws IndexStoreException;
 
@@ -18,29 +18,44 @@ package fr.jayblanc.mbyte.store.index;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.jayblanc.mbyte.store.metrics.MetricsService;
+import io.quarkus.arc.properties.IfBuildProperty;
 import io.quarkus.runtime.Startup;
+import fr.jayblanc.mbyte.store.index.IndexStoreClient.Operation;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import jakarta.transaction.Transactional;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.net.URI;
 import java.net.URLEncoder;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
+@IfBuildProperty(name = "store.index.backend", stringValue = "typesense", enableIfMissing = true)
 @Startup
 @Singleton
 public class IndexStoreServiceBean implements IndexStoreService {
@@ -48,12 +63,16 @@ public class IndexStoreServiceBean implements IndexStoreService {
     private static final Logger LOGGER = Logger.getLogger(IndexStoreServiceBean.class.getName());
     private static final Duration CONVERSATION_RETRY_INTERVAL = Duration.ofSeconds(15);
     private static final Duration CONVERSATION_REQUEST_TIMEOUT = Duration.ofSeconds(90);
+    private static final Duration IMPORT_REQUEST_TIMEOUT = Duration.ofSeconds(120);
+    private static final Duration EXPORT_REQUEST_TIMEOUT = Duration.ofMinutes(30);
 
     @Inject IndexStoreConfig config;
     @Inject ObjectMapper mapper;
+    @Inject MetricsService metrics;
 
-    private HttpClient client;
+    private IndexStoreClient client;
     private URI baseUri;
+    private volatile String collection;
     private volatile boolean conversationReady;
     private volatile Instant lastConversationInitAttempt;
     private final Object conversationInitLock = new Object();
@@ -61,18 +80,77 @@ public class IndexStoreServiceBean implements IndexStoreService {
     @PostConstruct
     public void init() {
         LOGGER.log(Level.INFO, "Initializing Typesense index service");
-        client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(3)).build();
+        client = new IndexStoreClient(config.typesense().client(), config.typesense().breaker(), metrics);
         baseUri = URI.create(String.format("%s://%s:%d", config.typesense().protocol(), config.typesense().host(), config.typesense().port()));
         conversationReady = false;
         lastConversationInitAttempt = Instant.EPOCH;
+        // The store does not depend on the index to start: when it is unreachable the collection is resolved on first
+        // use once the index is back, meanwhile searches fall back to names and index jobs wait in the outbox.
         try {
-            ensureCollection();
+            current();
             if (config.typesense().conversation().enabled()) {
                 ensureConversationReady();
             }
         } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Unable to initialize Typesense collection", e);
-            throw new RuntimeException("Unable to initialize Typesense collection", e);
+            LOGGER.log(Level.WARNING, "Typesense is not reachable, running without index until it is: " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        client.close();
+    }
+
+    @Override
+    public boolean isAvailable() {
+        if (!client.isAvailable()) {
+            return false;
+        }
+        try {
+            current();
+            return true;
+        } catch (IndexStoreException e) {
+            LOGGER.log(Level.FINE, "Typesense not available: " + e.getMessage());
+            return false;
+        }
+    }
+
+    IndexStoreBreaker.State breakerState() {
+        return client.state();
+    }
+
+    int breakerFailures() {
+        return client.failures();
+    }
+
+    int availableSlots(Operation operation) {
+        return client.available(operation);
+    }
+
+    String collection() {
+        return collection;
+    }
+
+    /**
+     * @return the collection serving the store, resolving (or creating) it first if the index was not reachable so far
+     */
+    private String current() throws IndexStoreException {
+        String current = collection;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (collection == null) {
+                try {
+                    ensureCollection();
+                } catch (IOException e) {
+                    throw new IndexStoreUnavailableException("Unable to resolve Typesense collection", e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IndexStoreUnavailableException("Interrupted while resolving Typesense collection", e);
+                }
+            }
+            return collection;
         }
     }
 
@@ -83,10 +161,10 @@ public class IndexStoreServiceBean implements IndexStoreService {
         LOGGER.log(Level.INFO, "Purging Typesense documents for store_id={0}", config.typesense().storeId());
         try {
             HttpRequest request = baseRequest(
-                    "/collections/" + encode(config.typesense().collection()) + "/documents?filter_by=" + encode(filter))
+                    "/collections/" + encode(current()) + "/documents?filter_by=" + encode(filter))
                     .DELETE()
                     .build();
-            sendExpectSuccess(request, "purge store documents for " + config.typesense().storeId());
+            sendExpectSuccess(Operation.ADMIN, request, "purge store documents for " + config.typesense().storeId());
         } catch (Exception e) {
             throw new IndexStoreException("Can't purge documents for store " + config.typesense().storeId(), e);
         }
@@ -96,101 +174,339 @@ public class IndexStoreServiceBean implements IndexStoreService {
     @Transactional(Transactional.TxType.SUPPORTS)
     public void index(IndexableContent object) throws IndexStoreException {
         LOGGER.log(Level.INFO, "Indexing object in Typesense: {0}", object.getIdentifier());
+        Map<String, String> failures = this.indexAll(List.of(object));
+        if (!failures.isEmpty()) {
+            throw new IndexStoreException("Can't index object " + object.getIdentifier() + ": " + failures.values().iterator().next());
+        }
+    }
+
+    @Override
+    @Transactional(Transactional.TxType.SUPPORTS)
+    public Map<String, String> indexAll(List<IndexableContent> objects) throws IndexStoreException {
+        return this.indexAll(current(), objects);
+    }
+
+    @Override
+    @Transactional(Transactional.TxType.SUPPORTS)
+    public Map<String, String> indexAll(String target, List<IndexableContent> objects) throws IndexStoreException {
+        LOGGER.log(Level.INFO, "Importing batch of {0} object(s) in Typesense collection {1}", new Object[]{objects.size(), target});
+        if (objects.isEmpty()) {
+            return Map.of();
+        }
+        // Long contents are indexed as several passages, each with its own embedding: a single vector for a whole book
+        // represents none of it, and smaller documents keep request payloads and index memory bounded.
+        List<Map<String, Object>> documents = new ArrayList<>();
+        Map<String, String> owners = new HashMap<>();
+        for (IndexableContent object : objects) {
+            for (Map<String, Object> document : IndexStoreDocumentBuilder.buildDocuments(object, config.passage().size(), config.passage().overlap())) {
+                documents.add(document);
+                owners.put((String) document.get(IndexStoreDocumentBuilder.ID_FIELD), object.getIdentifier());
+            }
+        }
+        // Embedding inference is by far the most expensive part of indexing: documents whose embedding sources did not
+        // change are sent as partial updates that keep the stored vector, and documents sharing their sources with an
+        // already indexed one (copies of a file) reuse its vector instead of computing it again.
+        Map<String, JsonNode> indexed = this.indexedPassages(target, objects.stream().map(IndexableContent::getIdentifier).toList());
+        List<Map<String, Object>> updates = new ArrayList<>();
+        List<Map<String, Object>> upserts = new ArrayList<>();
+        for (Map<String, Object> document : documents) {
+            JsonNode previous = indexed.get((String) document.get(IndexStoreDocumentBuilder.ID_FIELD));
+            if (previous != null && document.get(IndexStoreDocumentBuilder.EMBEDDING_HASH_FIELD).equals(previous.path(IndexStoreDocumentBuilder.EMBEDDING_HASH_FIELD).asText(null))) {
+                updates.add(IndexStoreDocumentBuilder.withoutEmbeddingSources(document));
+            } else {
+                upserts.add(document);
+            }
+        }
+        Map<String, JsonNode> vectors = this.embeddings(target, upserts.stream().map(document -> (String) document.get(IndexStoreDocumentBuilder.EMBEDDING_HASH_FIELD)).distinct().toList());
+        int copied = 0;
+        for (Map<String, Object> document : upserts) {
+            JsonNode vector = vectors.get((String) document.get(IndexStoreDocumentBuilder.EMBEDDING_HASH_FIELD));
+            if (vector != null) {
+                document.put(config.typesense().embedding().field(), vector);
+                copied++;
+            }
+        }
+        Map<String, String> failures = new LinkedHashMap<>();
+        this.importDocuments(target, "update", updates).forEach((identifier, error) -> failures.putIfAbsent(owners.get(identifier), error));
+        this.importDocuments(target, "upsert", upserts).forEach((identifier, error) -> failures.putIfAbsent(owners.get(identifier), error));
+        // Passages left over by a previous, longer version of a content.
+        List<String> stale = indexed.keySet().stream().filter(identifier -> !owners.containsKey(identifier)).toList();
+        if (!stale.isEmpty()) {
+            try {
+                this.delete(target, IndexStoreDocumentBuilder.ID_FIELD + ":" + values(stale), stale.size());
+            } catch (IndexStoreException e) {
+                LOGGER.log(Level.WARNING, "Unable to remove stale passages: " + e.getMessage(), e);
+                stale.forEach(identifier -> failures.putIfAbsent(indexed.get(identifier).path(IndexStoreDocumentBuilder.PARENT_ID_FIELD).asText(), e.getMessage()));
+            }
+        }
+        metrics.addMetric("index.embeddings.unchanged", updates.size());
+        metrics.addMetric("index.embeddings.copied", copied);
+        metrics.addMetric("index.embeddings.avoided", updates.size() + copied);
+        metrics.addMetric("index.embeddings.computed", upserts.size() - copied);
+        return failures;
+    }
+
+    private Map<String, String> importDocuments(String target, String action, List<Map<String, Object>> documents) throws IndexStoreException {
+        if (documents.isEmpty()) {
+            return Map.of();
+        }
+        List<String> identifiers = documents.stream().map(document -> (String) document.get(IndexStoreDocumentBuilder.ID_FIELD)).toList();
         try {
-            String payload = mapper.writeValueAsString(IndexStoreDocumentBuilder.buildDocument(object));
-            HttpRequest request = baseRequest("/collections/" + encode(config.typesense().collection()) + "/documents?action=upsert")
-                    .POST(HttpRequest.BodyPublishers.ofString(payload))
+            HttpRequest request = baseRequest("/collections/" + encode(target) + "/documents/import?action=" + action, IMPORT_REQUEST_TIMEOUT)
+                    .setHeader("Content-Type", "text/plain")
+                    .POST(HttpRequest.BodyPublishers.ofInputStream(() -> IndexStoreImport.encode(mapper, documents)))
                     .build();
-            sendExpectSuccess(request, "upsert document " + object.getIdentifier());
-        } catch (Exception e) {
-            throw new IndexStoreException("Can't index an object", e);
+            HttpResponse<InputStream> response = client.send(Operation.INDEX, request, HttpResponse.BodyHandlers.ofInputStream());
+            try (InputStream body = response.body()) {
+                if (response.statusCode() / 100 != 2) {
+                    throw new IndexStoreException("Unable to import batch, status=" + response.statusCode() + " body=" + new String(body.readAllBytes(), StandardCharsets.UTF_8));
+                }
+                // The import answers 200 even when some documents are rejected, each line carries its own outcome.
+                return IndexStoreImport.failures(mapper, identifiers, body);
+            }
+        } catch (IOException e) {
+            throw new IndexStoreException("Can't import a batch of " + documents.size() + " objects", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IndexStoreException("Interrupted while importing a batch of " + documents.size() + " objects", e);
+        }
+    }
+
+    /**
+     * @return the passages already indexed for the given objects, by identifier, with their parent and embedding hash
+     */
+    private Map<String, JsonNode> indexedPassages(String target, List<String> identifiers) {
+        Map<String, JsonNode> passages = new HashMap<>();
+        try {
+            this.export(Operation.INDEX, target, IndexStoreDocumentBuilder.PARENT_ID_FIELD + ":" + values(identifiers),
+                    String.join(",", IndexStoreDocumentBuilder.ID_FIELD, IndexStoreDocumentBuilder.PARENT_ID_FIELD, IndexStoreDocumentBuilder.EMBEDDING_HASH_FIELD), IMPORT_REQUEST_TIMEOUT,
+                    document -> passages.put(document.path(IndexStoreDocumentBuilder.ID_FIELD).asText(), document));
+        } catch (IndexStoreException e) {
+            LOGGER.log(Level.WARNING, "Unable to look up indexed documents, embeddings of the batch will be computed: " + e.getMessage());
+            passages.clear();
+        }
+        return passages;
+    }
+
+    /**
+     * @return an already computed embedding for each of the given embedding hashes that has one
+     */
+    private Map<String, JsonNode> embeddings(String target, List<String> hashes) {
+        Map<String, JsonNode> vectors = new HashMap<>();
+        if (hashes.isEmpty()) {
+            return vectors;
+        }
+        String field = config.typesense().embedding().field();
+        // During a rebuild the live collection is searched too, so the new collection reuses all the existing vectors.
+        for (String source : new LinkedHashSet<>(Arrays.asList(target, collection))) {
+            List<String> missing = hashes.stream().filter(hash -> !vectors.containsKey(hash)).toList();
+            if (source == null || missing.isEmpty()) {
+                continue;
+            }
+            try {
+                this.export(Operation.INDEX, source, IndexStoreDocumentBuilder.EMBEDDING_HASH_FIELD + ":" + values(missing),
+                        String.join(",", IndexStoreDocumentBuilder.EMBEDDING_HASH_FIELD, field), IMPORT_REQUEST_TIMEOUT, document -> {
+                            if (document.path(field).isArray() && !document.path(field).isEmpty()) {
+                                vectors.putIfAbsent(document.path(IndexStoreDocumentBuilder.EMBEDDING_HASH_FIELD).asText(), document.path(field));
+                            }
+                        });
+            } catch (IndexStoreException e) {
+                // Collections created before the embedding hash was indexed cannot be filtered on it, a rebuild fixes that.
+                LOGGER.log(Level.FINE, "Unable to look up reusable embeddings in collection " + source + ": " + e.getMessage());
+            }
         }
+        return vectors;
     }
 
     @Override
     @Transactional(Transactional.TxType.SUPPORTS)
     public void remove(String identifier) throws IndexStoreException {
         LOGGER.log(Level.INFO, "Removing document from Typesense: {0}", identifier);
+        this.removeAll(List.of(identifier));
+    }
+
+    @Override
+    @Transactional(Transactional.TxType.SUPPORTS)
+    public void removeAll(Collection<String> identifiers) throws IndexStoreException {
+        LOGGER.log(Level.INFO, "Removing {0} document(s) from Typesense", identifiers.size());
+        if (identifiers.isEmpty()) {
+            return;
+        }
+        // Documents indexed before passages existed have no parent_id, they are matched on their identifier.
+        this.delete(current(), "(" + IndexStoreDocumentBuilder.ID_FIELD + ":" + values(identifiers) + " || "
+                + IndexStoreDocumentBuilder.PARENT_ID_FIELD + ":" + values(identifiers) + ")", identifiers.size());
+    }
+
+    private void delete(String target, String filter, int size) throws IndexStoreException {
+        String storeFilter = IndexStoreDocumentBuilder.STORE_ID_FIELD + ":=" + config.typesense().storeId() + " && " + filter;
         try {
-            HttpRequest request = baseRequest("/collections/" + encode(config.typesense().collection()) + "/documents/" + encode(identifier))
+            HttpRequest request = baseRequest("/collections/" + encode(target) + "/documents?filter_by=" + encode(storeFilter)
+                    + "&batch_size=" + Math.max(1, size))
                     .DELETE()
                     .build();
-            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-            if (response.statusCode() != 200 && response.statusCode() != 404) {
-                throw new IndexStoreException("Can't remove object " + identifier + " from index, status=" + response.statusCode() + " body=" + response.body());
+            sendExpectSuccess(Operation.INDEX, request, "remove " + size + " documents");
+        } catch (IOException e) {
+            throw new IndexStoreException("Can't remove " + size + " objects from index", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IndexStoreException("Interrupted while removing " + size + " objects from index", e);
+        }
+    }
+
+    private static String values(Collection<String> values) {
+        return values.stream().map(value -> "`" + value + "`").collect(Collectors.joining(",", "[", "]"));
+    }
+
+    @Override
+    @Transactional(Transactional.TxType.SUPPORTS)
+    public Map<String, Long> fingerprints() throws IndexStoreException {
+        String collection = current();
+        LOGGER.log(Level.INFO, "Exporting document fingerprints from Typesense collection {0}", collection);
+        String fields = String.join(",", IndexStoreDocumentBuilder.ID_FIELD, IndexStoreDocumentBuilder.PARENT_ID_FIELD, IndexStoreDocumentBuilder.NAME_FIELD,
+                IndexStoreDocumentBuilder.PARENT_FIELD, IndexStoreDocumentBuilder.MODIFIED_AT_FIELD, IndexStoreDocumentBuilder.CONTENT_HASH_FIELD);
+        // Only the identifier and a 64 bits digest are kept per document, the export itself is never held.
+        Map<String, Long> fingerprints = new HashMap<>();
+        this.export(Operation.ADMIN, collection, null, fields, EXPORT_REQUEST_TIMEOUT, document -> {
+            String identifier = document.path(IndexStoreDocumentBuilder.ID_FIELD).asText();
+            String parent = document.path(IndexStoreDocumentBuilder.PARENT_ID_FIELD).asText(null);
+            if (parent == null) {
+                // Indexed before passages existed: never matches, so the node is indexed again.
+                fingerprints.put(identifier, 0L);
+            } else if (parent.equals(identifier)) {
+                fingerprints.put(identifier, IndexStoreDocumentBuilder.fingerprint(
+                        document.path(IndexStoreDocumentBuilder.NAME_FIELD).asText(null),
+                        document.path(IndexStoreDocumentBuilder.PARENT_FIELD).asText(null),
+                        document.path(IndexStoreDocumentBuilder.MODIFIED_AT_FIELD).asLong(),
+                        document.path(IndexStoreDocumentBuilder.CONTENT_HASH_FIELD).asText(null)));
             }
-        } catch (IOException | InterruptedException e) {
+        });
+        return fingerprints;
+    }
+
+    /**
+     * Streams the documents of the store matching the filter (all of them when null), one line at a time.
+     */
+    private void export(Operation operation, String target, String filter, String fields, Duration timeout, Consumer<JsonNode> consumer) throws IndexStoreException {
+        String storeFilter = IndexStoreDocumentBuilder.STORE_ID_FIELD + ":=" + config.typesense().storeId() + ((filter == null) ? "" : " && " + filter);
+        try {
+            HttpRequest request = baseRequest("/collections/" + encode(target) + "/documents/export?filter_by=" + encode(storeFilter)
+                    + "&include_fields=" + encode(fields), timeout)
+                    .GET().build();
+            HttpResponse<InputStream> response = client.send(operation, request, HttpResponse.BodyHandlers.ofInputStream());
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+                if (response.statusCode() / 100 != 2) {
+                    throw new IndexStoreException("Unable to export documents, status=" + response.statusCode());
+                }
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isBlank()) {
+                        consumer.accept(mapper.readTree(line));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new IndexStoreException("Can't export documents from collection " + target, e);
+        } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            throw new IndexStoreException("Can't remove object " + identifier + " from index", e);
+            throw new IndexStoreException("Interrupted while exporting documents from collection " + target, e);
         }
     }
 
     @Override
     @Transactional(Transactional.TxType.SUPPORTS)
-    public List<IndexStoreResult> search(String scope, String queryString) throws IndexStoreException {
+    public CompletionStage<List<IndexStoreResult>> search(String scope, String queryString) {
         LOGGER.log(Level.INFO, "Searching query in Typesense: {0}", queryString);
+        String collection;
         try {
-            String path = "/collections/" + encode(config.typesense().collection()) + "/documents/search"
-                    + "?q=" + encode(queryString == null || queryString.isBlank() ? "*" : queryString)
-                    + "&query_by=" + encode(String.join(",", IndexStoreDocumentBuilder.CONTENT_FIELD, IndexStoreDocumentBuilder.NAME_FIELD, IndexStoreDocumentBuilder.MIMETYPE_FIELD))
-                    + "&highlight_fields=" + encode(String.join(",", IndexStoreDocumentBuilder.CONTENT_FIELD, IndexStoreDocumentBuilder.NAME_FIELD))
-                    + "&filter_by=" + encode(IndexStoreDocumentBuilder.STORE_ID_FIELD + ":=" + config.typesense().storeId() + " && "
-                    + IndexStoreDocumentBuilder.SCOPE_FIELD + ":=" + scope)
-                    + "&per_page=100";
-            HttpRequest request = baseRequest(path).GET().build();
-            HttpResponse<String> response = sendExpectSuccess(request, "search query " + queryString);
-            JsonNode root = mapper.readTree(response.body());
-            return parseHits(root.path("hits"));
-        } catch (Exception e) {
-            throw new IndexStoreException("Can't search in index using '" + queryString + "'", e);
+            collection = current();
+        } catch (IndexStoreException e) {
+            return CompletableFuture.failedFuture(e);
         }
+        String path = "/collections/" + encode(collection) + "/documents/search"
+                + "?q=" + encode(queryString == null || queryString.isBlank() ? "*" : queryString)
+                + "&query_by=" + encode(String.join(",", IndexStoreDocumentBuilder.CONTENT_FIELD, IndexStoreDocumentBuilder.NAME_FIELD, IndexStoreDocumentBuilder.MIMETYPE_FIELD))
+                + "&highlight_fields=" + encode(String.join(",", IndexStoreDocumentBuilder.CONTENT_FIELD, IndexStoreDocumentBuilder.NAME_FIELD))
+                + "&filter_by=" + encode(IndexStoreDocumentBuilder.STORE_ID_FIELD + ":=" + config.typesense().storeId() + " && "
+                + IndexStoreDocumentBuilder.SCOPE_FIELD + ":=" + scope)
+                + "&group_by=" + encode(IndexStoreDocumentBuilder.PARENT_ID_FIELD) + "&group_limit=1"
+                + "&per_page=100";
+        HttpRequest request = baseRequest(path).GET().build();
+        // The caller is not blocked: the response is parsed on a thread of the client when it arrives.
+        return client.sendAsync(Operation.SEARCH, request, HttpResponse.BodyHandlers.ofString()).thenApply(response -> {
+            try {
+                JsonNode root = mapper.readTree(expectSuccess(response, "search query " + queryString).body());
+                // One group per file, holding its best passage.
+                List<JsonNode> hits = new ArrayList<>();
+                for (JsonNode group : root.path("grouped_hits")) {
+                    if (!group.path("hits").isEmpty()) {
+                        hits.add(group.path("hits").get(0));
+                    }
+                }
+                root.path("hits").forEach(hits::add);
+                return parseHits(hits);
+            } catch (IOException | IndexStoreException e) {
+                throw new CompletionException(new IndexStoreException("Can't search in index using '" + queryString + "'", e));
+            }
+        });
     }
 
     @Override
     @Transactional(Transactional.TxType.SUPPORTS)
-    public IndexStoreConversationResult converse(String scope, String query, String conversationId) throws IndexStoreException {
+    public CompletionStage<IndexStoreConversationResult> converse(String scope, String query, String conversationId) {
         if (!ensureConversationReady()) {
-            throw new IndexStoreException("Typesense conversational search is temporarily unavailable");
+            return CompletableFuture.failedFuture(new IndexStoreUnavailableException("Typesense conversational search is temporarily unavailable"));
         }
         LOGGER.log(Level.INFO, "Conversational search query in Typesense: {0}", query);
+        String collection;
         try {
-            String queryString = query == null || query.isBlank() ? "*" : query;
-            String path = "/multi_search"
-                    + "?q=" + encode(queryString)
-                    + "&conversation=true"
-                    + "&conversation_model_id=" + encode(config.typesense().conversation().modelId());
-            if (conversationId != null && !conversationId.isBlank()) {
-                path += "&conversation_id=" + encode(conversationId);
-            }
-
-            HttpRequest request = baseRequest(path, CONVERSATION_REQUEST_TIMEOUT)
-                    .POST(HttpRequest.BodyPublishers.ofString(mapper.writeValueAsString(buildConversationPayload(scope))))
+            collection = current();
+        } catch (IndexStoreException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        String queryString = query == null || query.isBlank() ? "*" : query;
+        String path = "/multi_search"
+                + "?q=" + encode(queryString)
+                + "&conversation=true"
+                + "&conversation_model_id=" + encode(config.typesense().conversation().modelId());
+        if (conversationId != null && !conversationId.isBlank()) {
+            path += "&conversation_id=" + encode(conversationId);
+        }
+        HttpRequest request;
+        try {
+            request = baseRequest(path, CONVERSATION_REQUEST_TIMEOUT)
+                    .POST(HttpRequest.BodyPublishers.ofString(mapper.writeValueAsString(buildConversationPayload(collection, scope))))
                     .build();
-            HttpResponse<String> response = sendExpectSuccess(request, "conversational search query " + queryString);
-            JsonNode root = mapper.readTree(response.body());
-            JsonNode conversation = root.path("conversation");
-            JsonNode results = root.path("results").isArray() && !root.path("results").isEmpty()
-                    ? root.path("results").get(0)
-                    : mapper.createObjectNode();
-
-            IndexStoreConversationResult result = new IndexStoreConversationResult();
-            result.setAnswer(conversation.path("answer").asText(""));
-            result.setConversationId(conversation.path("conversation_id").asText(""));
-            result.setQuery(conversation.path("query").asText(queryString));
-            result.setResults(parseHits(results.path("hits")));
-            return result;
-        } catch (Exception e) {
-            throw new IndexStoreException("Can't run conversational search using '" + query + "'", e);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(new IndexStoreException("Can't run conversational search using '" + query + "'", e));
         }
+        return client.sendAsync(Operation.CONVERSE, request, HttpResponse.BodyHandlers.ofString()).thenApply(response -> {
+            try {
+                JsonNode root = mapper.readTree(expectSuccess(response, "conversational search query " + queryString).body());
+                JsonNode conversation = root.path("conversation");
+                JsonNode results = root.path("results").isArray() && !root.path("results").isEmpty()
+                        ? root.path("results").get(0)
+                        : mapper.createObjectNode();
+
+                IndexStoreConversationResult result = new IndexStoreConversationResult();
+                result.setAnswer(conversation.path("answer").asText(""));
+                result.setConversationId(conversation.path("conversation_id").asText(""));
+                result.setQuery(conversation.path("query").asText(queryString));
+                result.setResults(parseHits(results.path("hits")));
+                return result;
+            } catch (IOException | IndexStoreException e) {
+                throw new CompletionException(new IndexStoreException("Can't run conversational search using '" + query + "'", e));
+            }
+        });
     }
 
     @Override
     @Transactional(Transactional.TxType.SUPPORTS)
     public InputStream converseStream(String scope, String query, String conversationId) throws IndexStoreException {
         if (!ensureConversationReady()) {
-            throw new IndexStoreException("Typesense conversational search is temporarily unavailable");
+            throw new IndexStoreUnavailableException("Typesense conversational search is temporarily unavailable");
         }
         LOGGER.log(Level.INFO, "Streaming conversational query in Typesense: {0}", query);
+        String collection = current();
         try {
             String queryString = query == null || query.isBlank() ? "*" : query;
             String path = "/multi_search"
@@ -202,36 +518,62 @@ public class IndexStoreServiceBean implements IndexStoreService {
                 path += "&conversation_id=" + encode(conversationId);
             }
             HttpRequest request = baseRequest(path, CONVERSATION_REQUEST_TIMEOUT)
-                    .POST(HttpRequest.BodyPublishers.ofString(mapper.writeValueAsString(buildConversationPayload(scope))))
+                    .POST(HttpRequest.BodyPublishers.ofString(mapper.writeValueAsString(buildConversationPayload(collection, scope))))
                     .build();
-            HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            HttpResponse<InputStream> response = client.send(Operation.CONVERSE, request, HttpResponse.BodyHandlers.ofInputStream());
             if (response.statusCode() / 100 != 2) {
                 String body = new String(response.body().readAllBytes(), StandardCharsets.UTF_8);
                 throw new IndexStoreException("Unable to stream conversational search, status=" + response.statusCode() + " body=" + body);
             }
             return response.body();
+        } catch (IndexStoreBusyException | IndexStoreUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             throw new IndexStoreException("Can't stream conversational search using '" + query + "'", e);
         }
     }
 
+    /**
+     * Documents are read and written through a per store alias, so that a full rebuild can fill a new collection while
+     * the current one keeps serving and then switch with a single alias update. A store still using the legacy shared
+     * collection keeps using it until its first rebuild.
+     */
     private void ensureCollection() throws IOException, InterruptedException, IndexStoreException {
-        String collection = config.typesense().collection();
-        HttpRequest get = baseRequest("/collections/" + encode(collection)).GET().build();
-        HttpResponse<String> existing = client.send(get, HttpResponse.BodyHandlers.ofString());
+        String alias = alias();
+        HttpResponse<String> existing = client.send(Operation.ADMIN, baseRequest("/aliases/" + encode(alias)).GET().build(), HttpResponse.BodyHandlers.ofString());
         if (existing.statusCode() == 200) {
-            LOGGER.log(Level.INFO, "Typesense collection already exists: {0}", collection);
-            ensureEmbeddingFieldIfMissing(mapper.readTree(existing.body()));
+            String target = mapper.readTree(existing.body()).path("collection_name").asText();
+            LOGGER.log(Level.INFO, "Typesense alias {0} already exists on collection: {1}", new Object[]{alias, target});
+            ensureEmbeddingFieldIfMissing(target);
+            ensurePassageFieldsIfMissing(target);
+            collection = alias;
             return;
         }
         if (existing.statusCode() != 404) {
-            throw new IOException("Unable to inspect Typesense collection, status=" + existing.statusCode() + " body=" + existing.body());
+            throw new IOException("Unable to inspect Typesense alias, status=" + existing.statusCode() + " body=" + existing.body());
         }
+        String legacy = config.typesense().collection();
+        HttpResponse<String> shared = client.send(Operation.ADMIN, baseRequest("/collections/" + encode(legacy)).GET().build(), HttpResponse.BodyHandlers.ofString());
+        if (shared.statusCode() == 200) {
+            LOGGER.log(Level.INFO, "Using legacy shared Typesense collection until next rebuild: {0}", legacy);
+            ensureEmbeddingFieldIfMissing(legacy);
+            ensurePassageFieldsIfMissing(legacy);
+            collection = legacy;
+            return;
+        }
+        this.promote(this.createCollection());
+    }
+
+    @Override
+    public String createCollection() throws IndexStoreException {
+        String name = alias() + "_" + System.currentTimeMillis();
         String payload = """
                 {
                   "name": "%s",
                   "fields": [
                     { "name": "id", "type": "string" },
+                    { "name": "parent_id", "type": "string", "facet": true, "optional": true },
+                    { "name": "passage", "type": "int32", "optional": true },
                     { "name": "store_id", "type": "string", "facet": true },
                     { "name": "type", "type": "string", "facet": true },
                     { "name": "scope", "type": "string", "facet": true },
@@ -248,21 +590,105 @@ public class IndexStoreServiceBean implements IndexStoreService {
                         "model_config": { "model_name": "%s" }
                       }
                     },
-                    { "name": "modified_at", "type": "int64", "sort": true }
+                    { "name": "modified_at", "type": "int64", "sort": true },
+                    { "name": "content_hash", "type": "string", "optional": true, "index": false },
+                    { "name": "embedding_hash", "type": "string", "optional": true }
                   ],
                   "default_sorting_field": "modified_at"
                 }
-                """.formatted(collection, config.typesense().embedding().field(), config.typesense().embedding().modelName());
-        HttpRequest create = baseRequest("/collections")
-                .POST(HttpRequest.BodyPublishers.ofString(payload))
-                .build();
-        sendExpectSuccess(create, "create collection " + collection);
-        LOGGER.log(Level.INFO, "Created Typesense collection: {0}", collection);
+                """.formatted(name, config.typesense().embedding().field(), config.typesense().embedding().modelName());
+        try {
+            HttpRequest create = baseRequest("/collections")
+                    .POST(HttpRequest.BodyPublishers.ofString(payload))
+                    .build();
+            sendExpectSuccess(Operation.ADMIN, create, "create collection " + name);
+        } catch (IOException e) {
+            throw new IndexStoreException("Can't create collection " + name, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IndexStoreException("Interrupted while creating collection " + name, e);
+        }
+        LOGGER.log(Level.INFO, "Created Typesense collection: {0}", name);
+        return name;
+    }
+
+    @Override
+    public long count(String target) throws IndexStoreException {
+        // Counts objects, not passages: only the first passage of each object.
+        String filter = IndexStoreDocumentBuilder.STORE_ID_FIELD + ":=" + config.typesense().storeId() + " && " + IndexStoreDocumentBuilder.PASSAGE_FIELD + ":=0";
+        try {
+            HttpResponse<String> response = sendExpectSuccess(Operation.ADMIN, baseRequest("/collections/" + encode(target) + "/documents/search?q=*&query_by="
+                    + encode(IndexStoreDocumentBuilder.NAME_FIELD) + "&filter_by=" + encode(filter) + "&per_page=1&include_fields=id").GET().build(), "count documents of collection " + target);
+            return mapper.readTree(response.body()).path("found").asLong();
+        } catch (IOException e) {
+            throw new IndexStoreException("Can't count documents of collection " + target, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IndexStoreException("Interrupted while counting documents of collection " + target, e);
+        }
+    }
+
+    @Override
+    public synchronized String promote(String target) throws IndexStoreException {
+        String alias = alias();
+        String previous = collection;
+        try {
+            if (!alias.equals(previous)) {
+                previous = null;
+            } else {
+                HttpResponse<String> current = sendExpectSuccess(Operation.ADMIN, baseRequest("/aliases/" + encode(alias)).GET().build(), "inspect alias " + alias);
+                previous = mapper.readTree(current.body()).path("collection_name").asText(null);
+            }
+            HttpRequest upsert = baseRequest("/aliases/" + encode(alias))
+                    .PUT(HttpRequest.BodyPublishers.ofString(mapper.writeValueAsString(Map.of("collection_name", target))))
+                    .build();
+            sendExpectSuccess(Operation.ADMIN, upsert, "point alias " + alias + " to " + target);
+        } catch (IOException e) {
+            throw new IndexStoreException("Can't point alias " + alias + " to collection " + target, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IndexStoreException("Interrupted while pointing alias " + alias + " to collection " + target, e);
+        }
+        String legacy = collection;
+        collection = alias;
+        LOGGER.log(Level.INFO, "Typesense alias {0} now points to collection: {1}", new Object[]{alias, target});
+        if (legacy != null && !legacy.equals(alias)) {
+            // The legacy collection is shared with other stores: only this store documents are removed from it.
+            try {
+                HttpRequest purge = baseRequest("/collections/" + encode(legacy) + "/documents?filter_by="
+                        + encode(IndexStoreDocumentBuilder.STORE_ID_FIELD + ":=" + config.typesense().storeId())).DELETE().build();
+                sendExpectSuccess(Operation.ADMIN, purge, "purge store documents from legacy collection " + legacy);
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Unable to purge store documents from legacy collection " + legacy, e);
+            }
+        }
+        return previous;
+    }
+
+    @Override
+    public void drop(String target) throws IndexStoreException {
+        LOGGER.log(Level.INFO, "Dropping Typesense collection: {0}", target);
+        try {
+            HttpResponse<String> response = client.send(Operation.ADMIN, baseRequest("/collections/" + encode(target)).DELETE().build(), HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200 && response.statusCode() != 404) {
+                throw new IndexStoreException("Can't drop collection " + target + ", status=" + response.statusCode() + " body=" + response.body());
+            }
+        } catch (IOException e) {
+            throw new IndexStoreException("Can't drop collection " + target, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IndexStoreException("Interrupted while dropping collection " + target, e);
+        }
+    }
+
+    private String alias() {
+        return config.typesense().collection() + "_" + config.typesense().storeId().replaceAll("[^A-Za-z0-9_-]", "_");
     }
 
-    private void ensureEmbeddingFieldIfMissing(JsonNode collectionNode) throws IOException, InterruptedException, IndexStoreException {
+    private void ensureEmbeddingFieldIfMissing(String target) throws IOException, InterruptedException, IndexStoreException {
         String fieldName = config.typesense().embedding().field();
-        for (JsonNode field : collectionNode.path("fields")) {
+        HttpResponse<String> existing = sendExpectSuccess(Operation.ADMIN, baseRequest("/collections/" + encode(target)).GET().build(), "inspect collection " + target);
+        for (JsonNode field : mapper.readTree(existing.body()).path("fields")) {
             if (fieldName.equals(field.path("name").asText())) {
                 return;
             }
@@ -281,20 +707,39 @@ public class IndexStoreServiceBean implements IndexStoreService {
                   ]
                 }
                 """.formatted(fieldName, config.typesense().embedding().modelName());
-        HttpRequest patch = baseRequest("/collections/" + encode(config.typesense().collection()))
+        HttpRequest patch = baseRequest("/collections/" + encode(target))
                 .method("PATCH", HttpRequest.BodyPublishers.ofString(payload))
                 .build();
-        sendExpectSuccess(patch, "add embedding field on collection " + config.typesense().collection());
+        sendExpectSuccess(Operation.ADMIN, patch, "add embedding field on collection " + target);
         LOGGER.log(Level.INFO, "Added embedding field ''{0}'' to Typesense collection {1}", new Object[]{
                 fieldName,
-                config.typesense().collection()
+                target
         });
     }
 
+    private void ensurePassageFieldsIfMissing(String target) throws IOException, InterruptedException, IndexStoreException {
+        Map<String, String> definitions = new LinkedHashMap<>();
+        definitions.put(IndexStoreDocumentBuilder.PARENT_ID_FIELD, "{ \"name\": \"parent_id\", \"type\": \"string\", \"facet\": true, \"optional\": true }");
+        definitions.put(IndexStoreDocumentBuilder.PASSAGE_FIELD, "{ \"name\": \"passage\", \"type\": \"int32\", \"optional\": true }");
+        definitions.put(IndexStoreDocumentBuilder.EMBEDDING_HASH_FIELD, "{ \"name\": \"embedding_hash\", \"type\": \"string\", \"optional\": true }");
+        HttpResponse<String> existing = sendExpectSuccess(Operation.ADMIN, baseRequest("/collections/" + encode(target)).GET().build(), "inspect collection " + target);
+        for (JsonNode field : mapper.readTree(existing.body()).path("fields")) {
+            definitions.remove(field.path("name").asText());
+        }
+        if (definitions.isEmpty()) {
+            return;
+        }
+        HttpRequest patch = baseRequest("/collections/" + encode(target))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{ \"fields\": [" + String.join(",", definitions.values()) + "] }"))
+                .build();
+        sendExpectSuccess(Operation.ADMIN, patch, "add passage fields on collection " + target);
+        LOGGER.log(Level.INFO, "Added fields {0} to Typesense collection {1}", new Object[]{definitions.keySet(), target});
+    }
+
     private void ensureConversationHistoryCollection() throws IOException, InterruptedException, IndexStoreException {
         String historyCollection = config.typesense().conversation().historyCollection();
         HttpRequest get = baseRequest("/collections/" + encode(historyCollection)).GET().build();
-        HttpResponse<String> existing = client.send(get, HttpResponse.BodyHandlers.ofString());
+        HttpResponse<String> existing = client.send(Operation.ADMIN, get, HttpResponse.BodyHandlers.ofString());
         if (existing.statusCode() == 200) {
             return;
         }
@@ -316,7 +761,7 @@ public class IndexStoreServiceBean implements IndexStoreService {
         HttpRequest create = baseRequest("/collections")
                 .POST(HttpRequest.BodyPublishers.ofString(payload))
                 .build();
-        sendExpectSuccess(create, "create conversation history collection " + historyCollection);
+        sendExpectSuccess(Operation.ADMIN, create, "create conversation history collection " + historyCollection);
         LOGGER.log(Level.INFO, "Created Typesense conversation history collection: {0}", historyCollection);
     }
 
@@ -324,7 +769,7 @@ public class IndexStoreServiceBean implements IndexStoreService {
         IndexStoreConfig.Conversation conversation = config.typesense().conversation();
         String modelPath = "/conversations/models/" + encode(conversation.modelId());
         HttpRequest get = baseRequest(modelPath).GET().build();
-        HttpResponse<String> existing = client.send(get, HttpResponse.BodyHandlers.ofString());
+        HttpResponse<String> existing = client.send(Operation.ADMIN, get, HttpResponse.BodyHandlers.ofString());
         if (existing.statusCode() == 200) {
             return;
         }
@@ -345,7 +790,7 @@ public class IndexStoreServiceBean implements IndexStoreService {
         HttpRequest create = baseRequest("/conversations/models")
                 .POST(HttpRequest.BodyPublishers.ofString(mapper.writeValueAsString(payload)))
                 .build();
-        sendExpectSuccess(create, "create conversation model " + conversation.modelId());
+        sendExpectSuccess(Operation.ADMIN, create, "create conversation model " + conversation.modelId());
         LOGGER.log(Level.INFO, "Created Typesense conversation model: {0}", conversation.modelId());
     }
 
@@ -374,23 +819,31 @@ public class IndexStoreServiceBean implements IndexStoreService {
         return fallback.length() > 240 ? fallback.substring(0, 240) : fallback;
     }
 
-    private List<IndexStoreResult> parseHits(JsonNode hitsNode) {
-        List<IndexStoreResult> results = new ArrayList<>();
+    /**
+     * Results are files, not passages: hits are reported under their parent identifier and only the best passage of a
+     * file is kept, hits being sorted by relevance.
+     */
+    private List<IndexStoreResult> parseHits(Iterable<JsonNode> hitsNode) {
+        Map<String, IndexStoreResult> results = new LinkedHashMap<>();
         for (JsonNode hit : hitsNode) {
             JsonNode document = hit.path("document");
+            String identifier = document.path(IndexStoreDocumentBuilder.PARENT_ID_FIELD).asText(document.path(IndexStoreDocumentBuilder.ID_FIELD).asText());
+            if (results.containsKey(identifier)) {
+                continue;
+            }
             IndexStoreResult result = new IndexStoreResult();
-            result.setIdentifier(document.path(IndexStoreDocumentBuilder.ID_FIELD).asText());
+            result.setIdentifier(identifier);
             result.setType(document.path(IndexStoreDocumentBuilder.TYPE_FIELD).asText());
             result.setScore((float) hit.path("text_match").asDouble(0));
             result.setExplain(extractExplain(hit, document));
-            results.add(result);
+            results.put(identifier, result);
         }
-        return results;
+        return new ArrayList<>(results.values());
     }
 
-    private Map<String, Object> buildConversationPayload(String scope) {
+    private Map<String, Object> buildConversationPayload(String collection, String scope) {
         Map<String, Object> search = new LinkedHashMap<>();
-        search.put("collection", config.typesense().collection());
+        search.put("collection", collection);
         search.put("query_by", config.typesense().embedding().field());
         search.put("filter_by", IndexStoreDocumentBuilder.STORE_ID_FIELD + ":=" + config.typesense().storeId()
                 + " && " + IndexStoreDocumentBuilder.SCOPE_FIELD + ":=" + scope);
@@ -415,8 +868,12 @@ public class IndexStoreServiceBean implements IndexStoreService {
                 .header("X-TYPESENSE-API-KEY", config.typesense().apiKey());
     }
 
-    private HttpResponse<String> sendExpectSuccess(HttpRequest request, String action) throws IOException, InterruptedException, IndexStoreException {
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+    private HttpResponse<String> sendExpectSuccess(Operation operation, HttpRequest request, String action) throws IOException, InterruptedException, IndexStoreException {
+        HttpResponse<String> response = client.send(operation, request, HttpResponse.BodyHandlers.ofString());
+        return expectSuccess(response, action);
+    }
+
+    private HttpResponse<String> expectSuccess(HttpResponse<String> response, String action) throws IndexStoreException {
         if (response.statusCode() / 100 != 2) {
             throw new IndexStoreException("Unable to " + action + ", status=" + response.statusCode() + " body=" + response.body());
         }
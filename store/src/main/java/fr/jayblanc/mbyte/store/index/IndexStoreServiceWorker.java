@@ -16,7 +16,26 @@
  */
 package fr.jayblanc.mbyte.store.index;
 
+import fr.jayblanc.mbyte.store.index.entity.IndexStoreJob;
+
+import java.util.List;
+import java.util.Map;
+
 public interface IndexStoreServiceWorker {
 
+    /**
+     * Records, within the current transaction, that the index must be synchronized with the given node.
+     */
     void submit(String type, String item);
+
+    List<IndexStoreJob> jobs(IndexStoreJob.Status status, int offset, int limit);
+
+    Map<IndexStoreJob.Status, Long> stats();
+
+    /**
+     * Schedules a failed or dead job for an immediate new attempt.
+     *
+     * @return false if no such job exists
+     */
+    boolean retry(String id);
 }
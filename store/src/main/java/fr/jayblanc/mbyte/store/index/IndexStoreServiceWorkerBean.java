@@ -16,26 +16,52 @@
  */
 package fr.jayblanc.mbyte.store.index;
 
-import io.quarkus.runtime.Startup;
+import fr.jayblanc.mbyte.store.index.entity.IndexStoreJob;
+import fr.jayblanc.mbyte.store.metrics.MetricsService;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.inject.Instance;
 import jakarta.inject.Inject;
-import jakarta.inject.Singleton;
-import org.eclipse.microprofile.context.ManagedExecutor;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.transaction.Transactional;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-@Startup
-@Singleton
+/**
+ * Index jobs form a transactional outbox: they are inserted with the node change they describe and a dispatcher claims
+ * the due ones in batches with SKIP LOCKED, so several instances can share the work without blocking each other. A
+ * claimed job is leased: if its instance dies before acknowledging it, it becomes due again when the lease expires.
+ * Failed jobs are retried with an exponential backoff and jitter, then parked as DEAD after the last attempt.
+ * <p>
+ * A job does not carry the operation to apply but only the node to synchronize: the index is updated from the node
+ * current state, so jobs can be retried or processed out of order without resurrecting stale documents. This is also
+ * what allows bursts of events on a node (file.create then folder.update, N uploads in a folder...) to collapse into a
+ * single job while it waits for its debounce window. The index.events / index.jobs metrics give the coalescing ratio.
+ * <p>
+ * While the index is unavailable nothing is claimed and jobs stay parked in the outbox; a batch interrupted by the
+ * index becoming unavailable is put back as pending without counting an attempt.
+ */
+@ApplicationScoped
 public class IndexStoreServiceWorkerBean implements IndexStoreServiceWorker {
 
     private static final Logger LOGGER = Logger.getLogger(IndexStoreServiceWorkerBean.class.getName());
-    private static final String[] EVENTS_HANDLE = {"folder.create", "folder.delete", "file.create", "file.delete"};
+    private static final int SKIP_LOCKED = -2;
 
-    @Inject ManagedExecutor executor;
+    @Inject IndexStoreConfig config;
+    @Inject EntityManager em;
+    @Inject MetricsService metrics;
 
     @Inject IndexStoreService indexStore;
 
@@ -43,58 +69,229 @@ public class IndexStoreServiceWorkerBean implements IndexStoreServiceWorker {
     Instance<IndexableContentProvider> providers;
 
     @Override
+    @Transactional(Transactional.TxType.REQUIRED)
     public void submit(String type, String node) {
-        LOGGER.log(Level.INFO, "Submitting new job to worker");
+        LOGGER.log(Level.FINE, "Submitting index job " + type + " for node: " + node);
+        metrics.incMetric("index.events");
+        // A node with a job still waiting for its debounce window absorbs the new event: the job already resyncs the
+        // node from its latest state when it runs. The conditional update never touches a job claimed meanwhile, in which
+        // case a new job is needed since the claimed one may have read the node before this change.
+        int coalesced = em.createNamedQuery("IndexStoreJob.coalesce").setParameter("type", type).setParameter("node", node)
+                .setParameter("status", IndexStoreJob.Status.PENDING).executeUpdate();
+        if (coalesced > 0) {
+            metrics.incMetric("index.coalesced");
+            return;
+        }
+        long now = System.currentTimeMillis();
         IndexStoreJob job = new IndexStoreJob();
         job.setId(UUID.randomUUID().toString());
         job.setStatus(IndexStoreJob.Status.PENDING);
         job.setType(type);
         job.setNode(node);
-        executor.submit(new JobWorker(job));
+        job.setCreation(now);
+        job.setDue(now + config.outbox().debounceMs());
+        em.persist(job);
+        metrics.incMetric("index.jobs");
     }
 
-    class JobWorker implements Runnable {
+    @Override
+    @Transactional(Transactional.TxType.REQUIRED)
+    public List<IndexStoreJob> jobs(IndexStoreJob.Status status, int offset, int limit) {
+        return em.createNamedQuery("IndexStoreJob.findByStatus", IndexStoreJob.class).setParameter("status", status)
+                .setFirstResult(offset).setMaxResults(limit).getResultList();
+    }
 
-        private static final Logger LOGGER = Logger.getLogger(JobWorker.class.getName());
+    @Override
+    @Transactional(Transactional.TxType.REQUIRED)
+    public Map<IndexStoreJob.Status, Long> stats() {
+        Map<IndexStoreJob.Status, Long> stats = new EnumMap<>(IndexStoreJob.Status.class);
+        for (IndexStoreJob.Status status : IndexStoreJob.Status.values()) {
+            stats.put(status, 0L);
+        }
+        for (Object[] row : em.createNamedQuery("IndexStoreJob.countByStatus", Object[].class).getResultList()) {
+            stats.put((IndexStoreJob.Status) row[0], (Long) row[1]);
+        }
+        return stats;
+    }
 
-        private final IndexStoreJob job;
+    @Override
+    @Transactional(Transactional.TxType.REQUIRED)
+    public boolean retry(String id) {
+        IndexStoreJob job = em.find(IndexStoreJob.class, id);
+        if (job == null) {
+            return false;
+        }
+        LOGGER.log(Level.INFO, "Retrying index job: " + job);
+        if (job.getStatus() == IndexStoreJob.Status.FAILED || job.getStatus() == IndexStoreJob.Status.DEAD) {
+            job.setStatus(IndexStoreJob.Status.PENDING);
+            job.setFailures(0);
+            job.setDue(System.currentTimeMillis());
+        }
+        return true;
+    }
 
-        public JobWorker(IndexStoreJob job) {
-            this.job = job;
+    @Scheduled(every = "{store.index.outbox.poll-interval}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    public void dispatch() {
+        if (!indexStore.isAvailable()) {
+            LOGGER.log(Level.FINE, "Index unavailable, index jobs left in the outbox");
+            return;
         }
+        List<IndexStoreJob> claimed;
+        do {
+            claimed = this.claim();
+            if (!claimed.isEmpty()) {
+                Batch batch = new Batch();
+                for (IndexStoreJob job : claimed) {
+                    batch.add(job);
+                    if (batch.isFull()) {
+                        batch.flush();
+                        batch = new Batch();
+                    }
+                }
+                batch.flush();
+            }
+        } while (claimed.size() >= config.batch().size() && indexStore.isAvailable());
+    }
 
-        @Override
-        public void run() {
-            LOGGER.log(Level.INFO, "Handle job: " + job.getId());
-            StringBuilder report = new StringBuilder();
-            try {
-                if (job.getType().endsWith("create") || job.getType().endsWith("update")) {
-                    Optional<IndexableContent> content = providers.stream()
-                            .map(provider -> provider.getIndexableContent(job.getNode()))
-                            .filter(Objects::nonNull).findFirst();
-
-                    if (content.isPresent()) {
-                        LOGGER.log(Level.INFO, "Submitting content to index store: " + content.get().getIdentifier());
-                        indexStore.index(content.get());
+    @Scheduled(every = "1h", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    @Transactional(Transactional.TxType.REQUIRED)
+    public void compact() {
+        int removed = em.createNamedQuery("IndexStoreJob.deleteDoneBefore").setParameter("status", IndexStoreJob.Status.DONE)
+                .setParameter("limit", System.currentTimeMillis() - config.outbox().retentionHours() * 3600000L).executeUpdate();
+        LOGGER.log(Level.INFO, "Index outbox compacted, {0} completed job(s) removed", removed);
+    }
+
+    List<IndexStoreJob> claim() {
+        return QuarkusTransaction.requiringNew().call(() -> {
+            long now = System.currentTimeMillis();
+            List<IndexStoreJob> jobs = em.createNamedQuery("IndexStoreJob.findDue", IndexStoreJob.class)
+                    .setParameter("statuses", List.of(IndexStoreJob.Status.PENDING, IndexStoreJob.Status.RUNNING, IndexStoreJob.Status.FAILED))
+                    .setParameter("now", now)
+                    .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                    .setHint("jakarta.persistence.lock.timeout", SKIP_LOCKED)
+                    .setMaxResults(config.batch().size()).getResultList();
+            for (IndexStoreJob job : jobs) {
+                job.setStatus(IndexStoreJob.Status.RUNNING);
+                job.setStartDate(now);
+                job.setDue(now + config.outbox().leaseSeconds() * 1000L);
+            }
+            return jobs;
+        });
+    }
+
+    void complete(List<IndexStoreJob> jobs, Map<String, String> failures) {
+        QuarkusTransaction.requiringNew().run(() -> {
+            long now = System.currentTimeMillis();
+            for (IndexStoreJob claimed : jobs) {
+                IndexStoreJob job = em.find(IndexStoreJob.class, claimed.getId());
+                if (job == null) {
+                    continue;
+                }
+                job.setStopDate(now);
+                String failure = failures.get(job.getNode());
+                if (failure == null) {
+                    job.setStatus(IndexStoreJob.Status.DONE);
+                    job.setOutput("Job done.");
+                } else {
+                    job.setFailures(job.getFailures() + 1);
+                    job.setOutput("Error while processing job: " + failure);
+                    if (job.getFailures() >= config.outbox().maxAttempts()) {
+                        LOGGER.log(Level.WARNING, "Index job exhausted its attempts and is dead: " + job);
+                        job.setStatus(IndexStoreJob.Status.DEAD);
+                        metrics.incMetric("index.dead");
                     } else {
-                        LOGGER.log(Level.WARNING, "No content found for node: " + job.getNode());
-                        report.append("No content found for node: ").append(job.getNode());
+                        job.setStatus(IndexStoreJob.Status.FAILED);
+                        job.setDue(now + this.backoff(job.getFailures()));
                     }
                 }
+            }
+        });
+    }
 
-                if (job.getType().endsWith("remove")) {
-                    indexStore.remove(job.getNode());
+    void requeue(List<IndexStoreJob> jobs) {
+        QuarkusTransaction.requiringNew().run(() -> {
+            long now = System.currentTimeMillis();
+            for (IndexStoreJob claimed : jobs) {
+                IndexStoreJob job = em.find(IndexStoreJob.class, claimed.getId());
+                if (job != null) {
+                    job.setStatus(IndexStoreJob.Status.PENDING);
+                    job.setDue(now);
                 }
+            }
+        });
+        metrics.addMetric("index.requeued", jobs.size());
+    }
 
-                report.append("Job done.");
-                job.setOutput(report.toString());
-            } catch (Exception e) {
-                report.append("Error while processing job: ").append(e.getMessage());
-                LOGGER.log(Level.WARNING, "Something wrong happened: " + e.getMessage(), e);
+    private long backoff(int failures) {
+        long base = config.outbox().backoffSeconds() * 1000L;
+        long delay = Math.min(config.outbox().maxBackoffSeconds() * 1000L, base << Math.min(failures - 1, 20));
+        // Half fixed, half random: retries of a batch that failed together spread out instead of hitting the index at once.
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    class Batch {
+
+        private final List<IndexStoreJob> jobs = new ArrayList<>();
+        private final Map<String, IndexableContent> upserts = new LinkedHashMap<>();
+        private final List<String> removals = new ArrayList<>();
+        private long bytes;
+
+        void add(IndexStoreJob job) {
+            LOGGER.log(Level.FINE, "Adding job to batch: " + job);
+            jobs.add(job);
+            if (upserts.containsKey(job.getNode()) || removals.contains(job.getNode())) {
+                metrics.incMetric("index.coalesced");
+                return;
+            }
+            Optional<IndexableContent> content = providers.stream()
+                    .map(provider -> provider.getIndexableContent(job.getNode()))
+                    .filter(Objects::nonNull).findFirst();
+            if (content.isPresent()) {
+                upserts.put(job.getNode(), content.get());
+                bytes += (content.get().getContent() == null) ? 0 : content.get().getContent().length();
+            } else {
+                removals.add(job.getNode());
             }
-            LOGGER.log(Level.INFO, "Job done.");
         }
-    }
 
+        boolean isFull() {
+            return bytes >= config.batch().maxBytes();
+        }
+
+        void flush() {
+            if (jobs.isEmpty()) {
+                return;
+            }
+            LOGGER.log(Level.INFO, "Flushing index batch: {0} upsert(s), {1} removal(s), {2} byte(s)", new Object[]{upserts.size(), removals.size(), bytes});
+            Map<String, String> failures = new LinkedHashMap<>();
+            try {
+                try {
+                    failures.putAll(indexStore.indexAll(new ArrayList<>(upserts.values())));
+                } catch (IndexStoreUnavailableException e) {
+                    throw e;
+                } catch (IndexStoreException e) {
+                    LOGGER.log(Level.WARNING, "Unable to import index batch: " + e.getMessage(), e);
+                    upserts.keySet().forEach(node -> failures.put(node, e.getMessage()));
+                }
+                try {
+                    indexStore.removeAll(removals);
+                } catch (IndexStoreUnavailableException e) {
+                    throw e;
+                } catch (IndexStoreException e) {
+                    LOGGER.log(Level.WARNING, "Unable to remove index batch: " + e.getMessage(), e);
+                    removals.forEach(node -> failures.put(node, e.getMessage()));
+                }
+            } catch (IndexStoreUnavailableException e) {
+                // Jobs resync nodes from their current state, replaying the ones already applied is harmless.
+                LOGGER.log(Level.WARNING, "Index unavailable, batch put back in the outbox: " + e.getMessage());
+                requeue(jobs);
+                return;
+            }
+            complete(jobs, failures);
+            metrics.incMetric("index.batches");
+            metrics.addMetric("index.documents", upserts.size() + removals.size());
+            metrics.addMetric("index.failures", failures.size());
+        }
+    }
 
 }
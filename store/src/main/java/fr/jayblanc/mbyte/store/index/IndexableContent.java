@@ -27,6 +27,7 @@ public class IndexableContent {
     private String parent;
     private String storeId;
     private long modifiedAt;
+    private String contentHash;
     private Scope scope;
 
     public IndexableContent() {
@@ -104,6 +105,14 @@ public class IndexableContent {
         this.modifiedAt = modifiedAt;
     }
 
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
     public Scope getScope() {
         return scope;
     }
@@ -0,0 +1,590 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.index;
+
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.quarkus.runtime.Startup;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.simple.SimpleQueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.uhighlight.DefaultPassageFormatter;
+import org.apache.lucene.search.uhighlight.UnifiedHighlighter;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Embedded index for small deployments and tests: the store runs without any search server, documents being kept in
+ * a Lucene index under the store root.
+ * <p>
+ * Collections are index directories, the one serving being recorded in a <code>current</code> file so that a rebuild
+ * can be promoted atomically as with Typesense aliases. Writes are applied to an {@link IndexWriter} and become
+ * searchable when the near-real-time readers are refreshed, they are made durable by periodic commits: what a crash
+ * loses since the last commit is indexed again by the reconciliation at startup. Ranking is the default BM25 of Lucene,
+ * without embeddings, so conversational search is not available.
+ */
+@Startup
+@Singleton
+@IfBuildProperty(name = "store.index.backend", stringValue = "lucene")
+public class LuceneIndexStoreServiceBean implements IndexStoreService {
+
+    private static final Logger LOGGER = Logger.getLogger(LuceneIndexStoreServiceBean.class.getName());
+    private static final String CURRENT_FILE = "current";
+    private static final String COLLECTION_PREFIX = "nodes_";
+    private static final Pattern COLLECTION_NAME = Pattern.compile("[A-Za-z0-9_-]+");
+    private static final Sort MOST_RECENT = new Sort(new SortField(IndexStoreDocumentBuilder.MODIFIED_AT_FIELD, SortField.Type.LONG, true));
+    private static final Map<String, Float> QUERY_FIELDS = Map.of(
+            IndexStoreDocumentBuilder.CONTENT_FIELD, 1.0f,
+            IndexStoreDocumentBuilder.NAME_FIELD, 2.0f,
+            IndexStoreDocumentBuilder.MIMETYPE_FIELD, 1.0f);
+    private static final String[] HIGHLIGHT_FIELDS = { IndexStoreDocumentBuilder.CONTENT_FIELD, IndexStoreDocumentBuilder.NAME_FIELD };
+    private static final Set<String> RESULT_FIELDS = Set.of(IndexStoreDocumentBuilder.PARENT_ID_FIELD, IndexStoreDocumentBuilder.TYPE_FIELD,
+            IndexStoreDocumentBuilder.CONTENT_FIELD, IndexStoreDocumentBuilder.NAME_FIELD);
+    private static final Set<String> FINGERPRINT_FIELDS = Set.of(IndexStoreDocumentBuilder.ID_FIELD, IndexStoreDocumentBuilder.PARENT_ID_FIELD,
+            IndexStoreDocumentBuilder.NAME_FIELD, IndexStoreDocumentBuilder.PARENT_FIELD, IndexStoreDocumentBuilder.MODIFIED_AT_FIELD,
+            IndexStoreDocumentBuilder.CONTENT_HASH_FIELD);
+    private static final FieldType TEXT_TYPE = new FieldType(TextField.TYPE_STORED);
+
+    static {
+        // Offsets in the postings let the highlighter work without analyzing the stored text again.
+        TEXT_TYPE.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
+        TEXT_TYPE.freeze();
+    }
+
+    @Inject IndexStoreConfig config;
+
+    private final Analyzer analyzer = new StandardAnalyzer();
+    private final Map<String, Generation> generations = new ConcurrentHashMap<>();
+    private Path home;
+    private volatile String collection;
+
+    @PostConstruct
+    public void init() {
+        home = Paths.get(config.lucene().home());
+        LOGGER.log(Level.INFO, "Initializing Lucene index service in {0}", home);
+        try {
+            Files.createDirectories(home);
+            Path current = home.resolve(CURRENT_FILE);
+            if (Files.exists(current)) {
+                String name = Files.readString(current, StandardCharsets.UTF_8).trim();
+                generation(name);
+                collection = name;
+            } else {
+                promote(createCollection());
+            }
+            LOGGER.log(Level.INFO, "Lucene index serving collection {0}", collection);
+        } catch (IOException | IndexStoreException e) {
+            throw new IllegalStateException("Unable to open the Lucene index in " + home, e);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        for (Map.Entry<String, Generation> entry : generations.entrySet()) {
+            try {
+                entry.getValue().close();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to close Lucene collection " + entry.getKey(), e);
+            }
+        }
+        generations.clear();
+        analyzer.close();
+    }
+
+    /**
+     * Makes the latest writes visible to searches without committing them.
+     */
+    @Scheduled(every = "{store.index.lucene.refresh-interval}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void refresh() {
+        for (Map.Entry<String, Generation> entry : generations.entrySet()) {
+            try {
+                entry.getValue().searchers.maybeRefresh();
+            } catch (IOException | AlreadyClosedException e) {
+                LOGGER.log(Level.WARNING, "Unable to refresh readers of Lucene collection " + entry.getKey(), e);
+            }
+        }
+    }
+
+    /**
+     * Commits are batched rather than done per write: each one syncs the new segments to disk.
+     */
+    @Scheduled(every = "{store.index.lucene.commit-interval}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void commit() {
+        for (Map.Entry<String, Generation> entry : generations.entrySet()) {
+            try {
+                IndexWriter writer = entry.getValue().writer;
+                if (writer.hasUncommittedChanges()) {
+                    writer.commit();
+                }
+            } catch (IOException | AlreadyClosedException e) {
+                LOGGER.log(Level.WARNING, "Unable to commit Lucene collection " + entry.getKey(), e);
+            }
+        }
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return collection != null;
+    }
+
+    @Override
+    public void clearStoreDocuments() throws IndexStoreException {
+        LOGGER.log(Level.INFO, "Purging Lucene documents of collection {0}", collection);
+        try {
+            generation(current()).writer.deleteAll();
+        } catch (IOException | AlreadyClosedException e) {
+            throw new IndexStoreException("Can't purge documents of collection " + collection, e);
+        }
+    }
+
+    @Override
+    public void index(IndexableContent object) throws IndexStoreException {
+        LOGGER.log(Level.INFO, "Indexing object in Lucene: {0}", object.getIdentifier());
+        Map<String, String> failures = this.indexAll(List.of(object));
+        if (!failures.isEmpty()) {
+            throw new IndexStoreException("Can't index object " + object.getIdentifier() + ": " + failures.values().iterator().next());
+        }
+    }
+
+    @Override
+    public Map<String, String> indexAll(List<IndexableContent> objects) throws IndexStoreException {
+        return this.indexAll(current(), objects);
+    }
+
+    @Override
+    public Map<String, String> indexAll(String target, List<IndexableContent> objects) throws IndexStoreException {
+        LOGGER.log(Level.INFO, "Indexing {0} objects in Lucene collection {1}", new Object[] { objects.size(), target });
+        IndexWriter writer = generation(target).writer;
+        IndexStoreConfig.Passage passage = config.passage();
+        Map<String, String> failures = new LinkedHashMap<>();
+        try {
+            for (IndexableContent object : objects) {
+                List<Document> documents = new ArrayList<>();
+                for (Map<String, Object> fields : IndexStoreDocumentBuilder.buildDocuments(object, passage.size(), passage.overlap())) {
+                    documents.add(toDocument(fields));
+                }
+                // Replaces all the passages of the object at once, so fewer passages than before leave nothing stale.
+                try {
+                    writer.updateDocuments(new Term(IndexStoreDocumentBuilder.PARENT_ID_FIELD, object.getIdentifier()), documents);
+                } catch (IllegalArgumentException e) {
+                    failures.put(object.getIdentifier(), e.getMessage());
+                }
+            }
+        } catch (IOException | AlreadyClosedException e) {
+            throw new IndexStoreException("Can't index documents in collection " + target, e);
+        }
+        if (!failures.isEmpty()) {
+            LOGGER.log(Level.WARNING, "{0} objects rejected by Lucene collection {1}", new Object[] { failures.size(), target });
+        }
+        return failures;
+    }
+
+    @Override
+    public void remove(String identifier) throws IndexStoreException {
+        LOGGER.log(Level.INFO, "Removing document from Lucene: {0}", identifier);
+        this.removeAll(List.of(identifier));
+    }
+
+    @Override
+    public void removeAll(Collection<String> identifiers) throws IndexStoreException {
+        if (identifiers.isEmpty()) {
+            return;
+        }
+        Term[] terms = identifiers.stream().map(identifier -> new Term(IndexStoreDocumentBuilder.PARENT_ID_FIELD, identifier)).toArray(Term[]::new);
+        try {
+            generation(current()).writer.deleteDocuments(terms);
+        } catch (IOException | AlreadyClosedException e) {
+            throw new IndexStoreException("Can't remove documents from collection " + collection, e);
+        }
+    }
+
+    @Override
+    public Map<String, Long> fingerprints() throws IndexStoreException {
+        String target = current();
+        LOGGER.log(Level.INFO, "Reading document fingerprints from Lucene collection {0}", target);
+        Generation generation = generation(target);
+        Map<String, Long> fingerprints = new HashMap<>();
+        try {
+            generation.searchers.maybeRefreshBlocking();
+            IndexSearcher searcher = generation.searchers.acquire();
+            try {
+                for (LeafReaderContext leaf : searcher.getIndexReader().leaves()) {
+                    Bits live = leaf.reader().getLiveDocs();
+                    StoredFields stored = leaf.reader().storedFields();
+                    for (int doc = 0; doc < leaf.reader().maxDoc(); doc++) {
+                        if (live != null && !live.get(doc)) {
+                            continue;
+                        }
+                        Document document = stored.document(doc, FINGERPRINT_FIELDS);
+                        String identifier = document.get(IndexStoreDocumentBuilder.ID_FIELD);
+                        if (identifier.equals(document.get(IndexStoreDocumentBuilder.PARENT_ID_FIELD))) {
+                            fingerprints.put(identifier, IndexStoreDocumentBuilder.fingerprint(
+                                    document.get(IndexStoreDocumentBuilder.NAME_FIELD),
+                                    document.get(IndexStoreDocumentBuilder.PARENT_FIELD),
+                                    document.getField(IndexStoreDocumentBuilder.MODIFIED_AT_FIELD).numericValue().longValue(),
+                                    document.get(IndexStoreDocumentBuilder.CONTENT_HASH_FIELD)));
+                        }
+                    }
+                }
+            } finally {
+                generation.searchers.release(searcher);
+            }
+        } catch (IOException | AlreadyClosedException e) {
+            throw new IndexStoreException("Can't read documents from collection " + target, e);
+        }
+        return fingerprints;
+    }
+
+    /**
+     * Searches are local and fast, they run on the caller thread and the returned stage is already completed.
+     */
+    @Override
+    public CompletionStage<List<IndexStoreResult>> search(String scope, String queryString) {
+        LOGGER.log(Level.INFO, "Searching query in Lucene: {0}", queryString);
+        try {
+            return CompletableFuture.completedFuture(this.searchResults(scope, queryString));
+        } catch (IndexStoreException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private List<IndexStoreResult> searchResults(String scope, String queryString) throws IndexStoreException {
+        String target = current();
+        Generation generation = generation(target);
+        boolean all = queryString == null || queryString.isBlank() || queryString.trim().equals("*");
+        Query match;
+        if (all) {
+            match = new MatchAllDocsQuery();
+        } else {
+            SimpleQueryParser parser = new SimpleQueryParser(analyzer, QUERY_FIELDS);
+            parser.setDefaultOperator(BooleanClause.Occur.MUST);
+            match = parser.parse(queryString);
+        }
+        // The index belongs to this store only, the scope is the only filter needed.
+        Query query = new BooleanQuery.Builder()
+                .add(match, BooleanClause.Occur.MUST)
+                .add(new TermQuery(new Term(IndexStoreDocumentBuilder.SCOPE_FIELD, scope)), BooleanClause.Occur.FILTER)
+                .build();
+        int max = config.lucene().maxResults();
+        try {
+            IndexSearcher searcher = generation.searchers.acquire();
+            try {
+                // Several passages of a file may match: enough of them are read to still fill a page with files.
+                TopDocs top = all ? searcher.search(query, max * 4, MOST_RECENT) : searcher.search(query, max * 4);
+                StoredFields stored = searcher.storedFields();
+                Map<String, IndexStoreResult> results = new LinkedHashMap<>();
+                Map<String, Document> documents = new HashMap<>();
+                List<Integer> docs = new ArrayList<>();
+                for (ScoreDoc hit : top.scoreDocs) {
+                    Document document = stored.document(hit.doc, RESULT_FIELDS);
+                    String identifier = document.get(IndexStoreDocumentBuilder.PARENT_ID_FIELD);
+                    if (results.containsKey(identifier)) {
+                        continue;
+                    }
+                    IndexStoreResult result = new IndexStoreResult();
+                    result.setIdentifier(identifier);
+                    result.setType(document.get(IndexStoreDocumentBuilder.TYPE_FIELD));
+                    result.setScore(Float.isNaN(hit.score) ? 0 : hit.score);
+                    results.put(identifier, result);
+                    documents.put(identifier, document);
+                    docs.add(hit.doc);
+                    if (results.size() == max) {
+                        break;
+                    }
+                }
+                Map<String, String[]> highlights = all ? Map.of() : highlight(searcher, query, docs);
+                int index = 0;
+                for (IndexStoreResult result : results.values()) {
+                    result.setExplain(explain(highlights, index++, documents.get(result.getIdentifier())));
+                }
+                return new ArrayList<>(results.values());
+            } finally {
+                generation.searchers.release(searcher);
+            }
+        } catch (IOException | AlreadyClosedException e) {
+            throw new IndexStoreException("Can't search in index using '" + queryString + "'", e);
+        }
+    }
+
+    private Map<String, String[]> highlight(IndexSearcher searcher, Query query, List<Integer> docs) throws IOException {
+        UnifiedHighlighter highlighter = UnifiedHighlighter.builder(searcher, analyzer)
+                .withFormatter(new DefaultPassageFormatter("<mark>", "</mark>", "... ", false))
+                .withMaxNoHighlightPassages(0)
+                .build();
+        int[] passages = new int[HIGHLIGHT_FIELDS.length];
+        Arrays.fill(passages, 1);
+        return highlighter.highlightFields(HIGHLIGHT_FIELDS, query, docs.stream().mapToInt(Integer::intValue).toArray(), passages);
+    }
+
+    private String explain(Map<String, String[]> highlights, int index, Document document) {
+        for (String field : HIGHLIGHT_FIELDS) {
+            String[] snippets = highlights.get(field);
+            if (snippets != null && snippets[index] != null && !snippets[index].isBlank()) {
+                return snippets[index];
+            }
+        }
+        String fallback = document.get(IndexStoreDocumentBuilder.CONTENT_FIELD);
+        if (fallback == null || fallback.isBlank()) {
+            fallback = document.get(IndexStoreDocumentBuilder.NAME_FIELD);
+        }
+        if (fallback == null) {
+            return "";
+        }
+        return fallback.length() > 240 ? fallback.substring(0, 240) : fallback;
+    }
+
+    @Override
+    public CompletionStage<IndexStoreConversationResult> converse(String scope, String query, String conversationId) {
+        return CompletableFuture.failedFuture(new IndexStoreUnavailableException("Conversational search is not available with the Lucene index"));
+    }
+
+    @Override
+    public InputStream converseStream(String scope, String query, String conversationId) throws IndexStoreException {
+        throw new IndexStoreUnavailableException("Conversational search is not available with the Lucene index");
+    }
+
+    @Override
+    public String createCollection() throws IndexStoreException {
+        String name = COLLECTION_PREFIX + System.currentTimeMillis();
+        LOGGER.log(Level.INFO, "Creating Lucene collection {0}", name);
+        try {
+            generation(name).writer.commit();
+        } catch (IOException | AlreadyClosedException e) {
+            throw new IndexStoreException("Can't create collection " + name, e);
+        }
+        return name;
+    }
+
+    @Override
+    public long count(String target) throws IndexStoreException {
+        Generation generation = generation(target);
+        try {
+            generation.searchers.maybeRefreshBlocking();
+            IndexSearcher searcher = generation.searchers.acquire();
+            try {
+                return searcher.count(IntPoint.newExactQuery(IndexStoreDocumentBuilder.PASSAGE_FIELD, 0));
+            } finally {
+                generation.searchers.release(searcher);
+            }
+        } catch (IOException | AlreadyClosedException e) {
+            throw new IndexStoreException("Can't count documents of collection " + target, e);
+        }
+    }
+
+    @Override
+    public synchronized String promote(String target) throws IndexStoreException {
+        Generation generation = generation(target);
+        try {
+            // Promoting is the end of a rebuild: it must survive a restart, so the collection is committed first.
+            generation.writer.commit();
+            generation.searchers.maybeRefreshBlocking();
+            Path temporary = home.resolve(CURRENT_FILE + ".tmp");
+            Files.writeString(temporary, target, StandardCharsets.UTF_8);
+            Files.move(temporary, home.resolve(CURRENT_FILE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | AlreadyClosedException e) {
+            throw new IndexStoreException("Can't promote collection " + target, e);
+        }
+        String previous = collection;
+        collection = target;
+        LOGGER.log(Level.INFO, "Lucene collection {0} now serving, was {1}", new Object[] { target, previous });
+        return (previous == null || previous.equals(target)) ? null : previous;
+    }
+
+    @Override
+    public synchronized void drop(String name) throws IndexStoreException {
+        if (!COLLECTION_NAME.matcher(name).matches()) {
+            throw new IndexStoreException("Invalid collection name " + name);
+        }
+        if (name.equals(collection)) {
+            throw new IndexStoreException("Can't drop collection " + name + " while it is serving");
+        }
+        LOGGER.log(Level.INFO, "Dropping Lucene collection {0}", name);
+        try {
+            Generation generation = generations.remove(name);
+            if (generation != null) {
+                generation.discard();
+            }
+            Path directory = home.resolve(name);
+            if (Files.exists(directory)) {
+                try (Stream<Path> paths = Files.walk(directory)) {
+                    for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                        Files.delete(path);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new IndexStoreException("Can't drop collection " + name, e);
+        }
+    }
+
+    private String current() throws IndexStoreException {
+        String current = collection;
+        if (current == null) {
+            throw new IndexStoreUnavailableException("Lucene index is not opened");
+        }
+        return current;
+    }
+
+    /**
+     * @return the opened collection of the given name, opening (or creating) its directory on first use
+     */
+    private Generation generation(String name) throws IndexStoreException {
+        Generation generation = generations.get(name);
+        if (generation != null) {
+            return generation;
+        }
+        if (!COLLECTION_NAME.matcher(name).matches()) {
+            throw new IndexStoreException("Invalid collection name " + name);
+        }
+        synchronized (generations) {
+            generation = generations.get(name);
+            if (generation == null) {
+                try {
+                    generation = new Generation(FSDirectory.open(home.resolve(name)), analyzer, config.lucene().ramBufferMb());
+                } catch (IOException e) {
+                    throw new IndexStoreException("Can't open collection " + name, e);
+                }
+                generations.put(name, generation);
+            }
+            return generation;
+        }
+    }
+
+    private static Document toDocument(Map<String, Object> fields) {
+        Document document = new Document();
+        for (Map.Entry<String, Object> field : fields.entrySet()) {
+            String name = field.getKey();
+            Object value = field.getValue();
+            if (value == null) {
+                continue;
+            }
+            switch (name) {
+                case IndexStoreDocumentBuilder.CONTENT_FIELD, IndexStoreDocumentBuilder.NAME_FIELD, IndexStoreDocumentBuilder.MIMETYPE_FIELD ->
+                        document.add(new Field(name, value.toString(), TEXT_TYPE));
+                case IndexStoreDocumentBuilder.PASSAGE_FIELD -> {
+                    int passage = ((Number) value).intValue();
+                    document.add(new IntPoint(name, passage));
+                    document.add(new StoredField(name, passage));
+                }
+                case IndexStoreDocumentBuilder.MODIFIED_AT_FIELD -> {
+                    long modifiedAt = ((Number) value).longValue();
+                    document.add(new LongPoint(name, modifiedAt));
+                    document.add(new NumericDocValuesField(name, modifiedAt));
+                    document.add(new StoredField(name, modifiedAt));
+                }
+                default -> document.add(new StringField(name, value.toString(), Field.Store.YES));
+            }
+        }
+        return document;
+    }
+
+    /**
+     * One collection: its directory, the writer and the near-real-time readers opened from that writer.
+     */
+    private static final class Generation {
+
+        private final Directory directory;
+        private final IndexWriter writer;
+        private final SearcherManager searchers;
+
+        private Generation(Directory directory, Analyzer analyzer, double ramBufferMb) throws IOException {
+            this.directory = directory;
+            this.writer = new IndexWriter(directory, new IndexWriterConfig(analyzer)
+                    .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND)
+                    .setRAMBufferSizeMB(ramBufferMb)
+                    .setCommitOnClose(true));
+            this.searchers = new SearcherManager(writer, null);
+        }
+
+        private void close() throws IOException {
+            try {
+                searchers.close();
+                writer.close();
+            } finally {
+                directory.close();
+            }
+        }
+
+        /**
+         * Closes without committing what was not yet.
+         */
+        private void discard() throws IOException {
+            try {
+                searchers.close();
+                writer.rollback();
+            } finally {
+                directory.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.index.entity;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Outbox entry asking to bring the index in line with the current state of a node. Entries are written in the same
+ * transaction as the node change and stay until the index acknowledged them, so nothing is lost on failure or restart.
+ */
+@Entity
+@NamedQueries({
+        @NamedQuery(name = "IndexStoreJob.findDue", query = "SELECT j FROM IndexStoreJob j WHERE j.status IN :statuses AND j.due <= :now ORDER BY j.due ASC"),
+        @NamedQuery(name = "IndexStoreJob.coalesce", query = "UPDATE IndexStoreJob j SET j.type = :type WHERE j.node = :node AND j.status = :status"),
+        @NamedQuery(name = "IndexStoreJob.findByStatus", query = "SELECT j FROM IndexStoreJob j WHERE j.status = :status ORDER BY j.creation DESC"),
+        @NamedQuery(name = "IndexStoreJob.findByNode", query = "SELECT j FROM IndexStoreJob j WHERE j.node = :node ORDER BY j.creation DESC"),
+        @NamedQuery(name = "IndexStoreJob.countByStatus", query = "SELECT j.status, count(j) FROM IndexStoreJob j GROUP BY j.status"),
+        @NamedQuery(name = "IndexStoreJob.deleteDoneBefore", query = "DELETE FROM IndexStoreJob j WHERE j.status = :status AND j.stopDate < :limit"),
+})
+@Table(name = "index_job", indexes = {
+        @Index(name = "index_job_status_due", columnList = "status, due"),
+        @Index(name = "index_job_node", columnList = "node"),
+})
+public class IndexStoreJob implements Serializable {
+
+    @Id
+    @Column(length = 50)
+    private String id;
+    @Column(length = 50)
+    private String type;
+    @Column(length = 50)
+    private String node;
+    private long creation;
+    private long due;
+    private long startDate;
+    private long stopDate;
+    private int failures;
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20)
+    private Status status;
+    @Column(length = 1024)
+    private String output;
+
+    public IndexStoreJob() {
+        this.failures = 0;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public String getNode() {
+        return node;
+    }
+
+    public void setNode(String node) {
+        this.node = node;
+    }
+
+    public long getCreation() {
+        return creation;
+    }
+
+    public void setCreation(long creation) {
+        this.creation = creation;
+    }
+
+    public long getDue() {
+        return due;
+    }
+
+    public void setDue(long due) {
+        this.due = due;
+    }
+
+    public long getStartDate() {
+        return startDate;
+    }
+
+    public void setStartDate(long startDate) {
+        this.startDate = startDate;
+    }
+
+    public long getStopDate() {
+        return stopDate;
+    }
+
+    public void setStopDate(long stopDate) {
+        this.stopDate = stopDate;
+    }
+
+    public int getFailures() {
+        return failures;
+    }
+
+    public void setFailures(int failures) {
+        this.failures = failures;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public String getOutput() {
+        return output;
+    }
+
+    public void setOutput(String output) {
+        this.output = (output != null && output.length() > 1024) ? output.substring(0, 1024) : output;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        IndexStoreJob that = (IndexStoreJob) o;
+        return creation == that.creation && due == that.due && startDate == that.startDate && stopDate == that.stopDate && failures == that.failures
+                && Objects.equals(id, that.id) && Objects.equals(type, that.type) && Objects.equals(node, that.node) && status == that.status
+                && Objects.equals(output, that.output);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, type, node, creation, due, startDate, stopDate, failures, status, output);
+    }
+
+    @Override
+    public String toString() {
+        return "IndexStoreJob{" +
+                "id='" + id + '\'' +
+                ", type='" + type + '\'' +
+                ", node='" + node + '\'' +
+                ", creation=" + creation +
+                ", due=" + due +
+                ", startDate=" + startDate +
+                ", stopDate=" + stopDate +
+                ", failures=" + failures +
+                ", status=" + status +
+                ", output='" + output + '\'' +
+                '}';
+    }
+
+    public enum Status {
+        PENDING,
+        RUNNING,
+        DONE,
+        FAILED,
+        DEAD
+    }
+
+}
@@ -32,4 +32,6 @@ public interface MetricsService {
 
     void decMetric(String key);
 
+    void addMetric(String key, long value);
+
 }
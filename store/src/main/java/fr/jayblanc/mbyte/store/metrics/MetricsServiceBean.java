@@ -78,6 +78,14 @@ public class MetricsServiceBean implements MetricsService {
         latestMetrics.put(key, Math.min(latestMetrics.getOrDefault(key, 0L) - 1, 0L));
     }
 
+    @Override
+    @Lock
+    public void addMetric(String key, long value) {
+        LOGGER.log(Level.FINE, "add " + value + " to metric for key: " + key);
+        metrics.put(key, metrics.getOrDefault(key, 0L) + value);
+        latestMetrics.put(key, latestMetrics.getOrDefault(key, 0L) + value);
+    }
+
     @Scheduled(every="5m")
     public void razLatestMetrics() {
         LOGGER.log(Level.INFO, "reset latest metrics");
@@ -24,8 +24,9 @@ import jakarta.transaction.Status;
 import jakarta.transaction.TransactionManager;
 import jakarta.transaction.TransactionScoped;
 
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -34,7 +35,7 @@ public class NotificationServiceBean implements NotificationService {
 
     private static final Logger LOGGER = Logger.getLogger(NotificationService.class.getName());
 
-    private final Queue<Event> events = new ConcurrentLinkedQueue<>();
+    private final Map<String, Event> events = Collections.synchronizedMap(new LinkedHashMap<>());
 
     @Inject EventBus bus;
     @Inject TransactionManager tm;
@@ -46,7 +47,14 @@ public class NotificationServiceBean implements NotificationService {
     @Override public void notify(String type, String source) throws NotificationServiceException {
         LOGGER.log(Level.INFO, "Throwing event of type: " + type);
         try {
-            events.add(Event.build(type, source));
+            // Several mutations in one transaction often touch the same node (e.g. a folder updated for each child added),
+            // consumers only need to hear about it once, at the position of the latest occurrence so that the last event
+            // published for a node is always the last one thrown (create, remove, create ends with create).
+            synchronized (events) {
+                String key = type + ":" + source;
+                events.remove(key);
+                events.put(key, Event.build(type, source));
+            }
         } catch (Exception e) {
             throw new NotificationServiceException("Unable to throw event", e);
         }
@@ -62,7 +70,7 @@ public class NotificationServiceBean implements NotificationService {
         try {
             LOGGER.log(Level.INFO, "Transaction ended: " + tm.getTransaction() + " with status: " + tm.getStatus());
             if (tm.getStatus() == Status.STATUS_COMMITTED) {
-                events.forEach(this::publishEvent);
+                events.values().forEach(this::publishEvent);
             }
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Unable to publish events after commit", e);
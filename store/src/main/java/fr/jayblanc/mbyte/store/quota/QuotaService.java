@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.quota;
+
+import fr.jayblanc.mbyte.store.quota.entity.StoreUsage;
+
+public interface QuotaService {
+
+    /**
+     * Checks, before any byte is received, that the declared amount of data (negative when unknown) and number of files
+     * fit in the remaining quota. This is only an early refusal, see consume for the check on the stored size.
+     */
+    void admit(long bytes, long files) throws QuotaExceededException;
+
+    /**
+     * Applies the actual change of usage within the current transaction, once the data has been stored.
+     */
+    void record(long bytes, long files);
+
+    /**
+     * Applies a growth of usage within the current transaction, once the data has been stored, and checks the resulting
+     * usage against the quota. Unlike admit, it relies on the actual stored size, whatever was declared by the client
+     * (chunked upload, delta patch). An exceeded quota marks the current transaction for rollback.
+     */
+    void consume(long bytes, long files) throws QuotaExceededException;
+
+    StoreUsage usage();
+
+    long maxBytes();
+
+    long maxFiles();
+
+}
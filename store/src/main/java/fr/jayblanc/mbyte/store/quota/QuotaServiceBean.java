@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.quota;
+
+import fr.jayblanc.mbyte.store.quota.entity.StoreUsage;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Transactional;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+@ApplicationScoped
+public class QuotaServiceBean implements QuotaService {
+
+    private static final Logger LOGGER = Logger.getLogger(QuotaServiceBean.class.getName());
+
+    @Inject QuotaConfig config;
+    @Inject EntityManager em;
+
+    @Override
+    @Transactional(Transactional.TxType.REQUIRED)
+    public void admit(long bytes, long files) throws QuotaExceededException {
+        LOGGER.log(Level.FINE, "Admission of " + bytes + " bytes and " + files + " files");
+        if (config.maxBytes() <= 0 && config.maxFiles() <= 0) {
+            return;
+        }
+        StoreUsage usage = this.usage();
+        if (config.maxBytes() > 0 && usage.getBytes() + Math.max(bytes, 0) > config.maxBytes()) {
+            throw new QuotaExceededException("store quota of " + config.maxBytes() + " bytes would be exceeded, " + usage.getBytes() + " bytes already used");
+        }
+        if (config.maxFiles() > 0 && usage.getFiles() + files > config.maxFiles()) {
+            throw new QuotaExceededException("store quota of " + config.maxFiles() + " files would be exceeded, " + usage.getFiles() + " files already stored");
+        }
+    }
+
+    @Override
+    @Transactional(Transactional.TxType.MANDATORY)
+    public void record(long bytes, long files) {
+        if (bytes == 0 && files == 0) {
+            return;
+        }
+        LOGGER.log(Level.FINE, "Recording usage change of " + bytes + " bytes and " + files + " files");
+        // Single row updated in place by the database: constant cost whatever the size of the store, and concurrent
+        // transactions are serialized on the row lock only for the short time between this update and their commit.
+        em.createNamedQuery("StoreUsage.add").setParameter("id", StoreUsage.STORE_USAGE_ID).setParameter("bytes", bytes)
+                .setParameter("files", files).executeUpdate();
+    }
+
+    @Override
+    @Transactional(value = Transactional.TxType.MANDATORY, rollbackOn = QuotaExceededException.class)
+    public void consume(long bytes, long files) throws QuotaExceededException {
+        this.record(bytes, files);
+        if (config.maxBytes() <= 0 && config.maxFiles() <= 0) {
+            return;
+        }
+        // The usage row stays locked by the update until commit: concurrent uploads are checked one after the other
+        // against the usage they really lead to.
+        StoreUsage usage = em.find(StoreUsage.class, StoreUsage.STORE_USAGE_ID);
+        if (usage == null) {
+            return;
+        }
+        em.refresh(usage);
+        if (config.maxBytes() > 0 && bytes > 0 && usage.getBytes() > config.maxBytes()) {
+            throw new QuotaExceededException("store quota of " + config.maxBytes() + " bytes exceeded, " + bytes + " bytes stored for " + (usage.getBytes() - bytes) + " bytes already used");
+        }
+        if (config.maxFiles() > 0 && files > 0 && usage.getFiles() > config.maxFiles()) {
+            throw new QuotaExceededException("store quota of " + config.maxFiles() + " files exceeded, " + (usage.getFiles() - files) + " files already stored");
+        }
+    }
+
+    @Override
+    @Transactional(Transactional.TxType.REQUIRED)
+    public StoreUsage usage() {
+        StoreUsage usage = em.find(StoreUsage.class, StoreUsage.STORE_USAGE_ID);
+        return (usage == null) ? new StoreUsage() : usage;
+    }
+
+    @Override
+    public long maxBytes() {
+        return config.maxBytes();
+    }
+
+    @Override
+    public long maxFiles() {
+        return config.maxFiles();
+    }
+}
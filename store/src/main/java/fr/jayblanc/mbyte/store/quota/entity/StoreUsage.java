@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.quota.entity;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Usage counters of the store (bytes of file contents and versions, number of files), maintained incrementally.
+ */
+@Entity
+@NamedQueries({
+        @NamedQuery(name = "StoreUsage.add", query = "UPDATE StoreUsage u SET u.bytes = u.bytes + :bytes, u.files = u.files + :files WHERE u.id = :id"),
+})
+@Table(name = "store_usage")
+public class StoreUsage implements Serializable {
+
+    public static final String STORE_USAGE_ID = "store";
+
+    @Id
+    @Column(length = 50)
+    private String id;
+    private long bytes;
+    private long files;
+
+    public StoreUsage() {
+        this.id = STORE_USAGE_ID;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+
+    public long getFiles() {
+        return files;
+    }
+
+    public void setFiles(long files) {
+        this.files = files;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        StoreUsage that = (StoreUsage) o;
+        return bytes == that.bytes && files == that.files && Objects.equals(id, that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, bytes, files);
+    }
+
+    @Override
+    public String toString() {
+        return "StoreUsage{" +
+                "id='" + id + '\'' +
+                ", bytes=" + bytes +
+                ", files=" + files +
+                '}';
+    }
+}
@@ -18,12 +18,17 @@ package fr.jayblanc.mbyte.store.search;
 
 import java.io.InputStream;
 import java.util.List;
+import java.util.concurrent.CompletionStage;
 
 public interface SearchService {
 
-    List<SearchResult> search(String query) throws SearchServiceException;
+    /**
+     * The stage fails with a {@link SearchBusyException} when the index is saturated, or with a
+     * {@link SearchServiceException}.
+     */
+    CompletionStage<List<SearchResult>> search(String query);
 
-    SearchConversationResult converse(String query, String conversationId) throws SearchServiceException;
+    CompletionStage<SearchConversationResult> converse(String query, String conversationId);
 
     InputStream streamConversation(String query, String conversationId) throws SearchServiceException;
 
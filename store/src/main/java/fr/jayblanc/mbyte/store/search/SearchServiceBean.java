@@ -17,18 +17,27 @@
 package fr.jayblanc.mbyte.store.search;
 
 import fr.jayblanc.mbyte.store.auth.AuthenticationService;
-import fr.jayblanc.mbyte.store.index.IndexStoreConversationResult;
+import fr.jayblanc.mbyte.store.files.entity.NodeInfo;
+import fr.jayblanc.mbyte.store.index.IndexStoreBusyException;
 import fr.jayblanc.mbyte.store.index.IndexStoreException;
-import fr.jayblanc.mbyte.store.index.IndexStoreResult;
 import fr.jayblanc.mbyte.store.index.IndexStoreService;
+import fr.jayblanc.mbyte.store.index.IndexStoreUnavailableException;
 import fr.jayblanc.mbyte.store.index.IndexableContent;
 import fr.jayblanc.mbyte.store.metrics.GenerateMetric;
+import fr.jayblanc.mbyte.store.metrics.MetricsService;
+import io.quarkus.narayana.jta.QuarkusTransaction;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
 import jakarta.transaction.Transactional;
 
 import java.io.InputStream;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -37,39 +46,32 @@ import java.util.stream.Collectors;
 public class SearchServiceBean implements SearchService {
 
     private static final Logger LOGGER = Logger.getLogger(SearchServiceBean.class.getName());
+    private static final int DEGRADED_LIMIT = 100;
 
     @Inject IndexStoreService index;
     @Inject AuthenticationService auth;
+    @Inject EntityManager em;
+    @Inject MetricsService metrics;
 
     @Override
     @GenerateMetric(key = "search", type = GenerateMetric.Type.INCREMENT)
     @Transactional(Transactional.TxType.SUPPORTS)
-    public List<SearchResult> search(String query) throws SearchServiceException {
+    public CompletionStage<List<SearchResult>> search(String query) {
         LOGGER.log(Level.FINE, "Searching results for query: " + query);
-        try {
-            String scope = (auth.getConnectedProfile().isOwner())? IndexableContent.Scope.PRIVATE.name(): IndexableContent.Scope.PUBLIC.name();
-            List<IndexStoreResult> results = index.search(scope, query);
-            return results.stream().map(res -> {
-                SearchResult result = SearchResult.fromIndexStoreResult(res);
-                return result;
-            }).collect(Collectors.toList());
-        } catch (IndexStoreException e ) {
-            throw new SearchServiceException("Error while searching query", e);
-        }
+        String scope = (auth.getConnectedProfile().isOwner())? IndexableContent.Scope.PRIVATE.name(): IndexableContent.Scope.PUBLIC.name();
+        return complete(index.search(scope, query), results -> results.stream().map(res -> {
+            SearchResult result = SearchResult.fromIndexStoreResult(res);
+            return result;
+        }).collect(Collectors.toList()), () -> searchNames(scope, query), "Error while searching query");
     }
 
     @Override
     @GenerateMetric(key = "search.conversation", type = GenerateMetric.Type.INCREMENT)
     @Transactional(Transactional.TxType.SUPPORTS)
-    public SearchConversationResult converse(String query, String conversationId) throws SearchServiceException {
+    public CompletionStage<SearchConversationResult> converse(String query, String conversationId) {
         LOGGER.log(Level.FINE, "Conversational search for query: " + query);
-        try {
-            String scope = (auth.getConnectedProfile().isOwner()) ? IndexableContent.Scope.PRIVATE.name() : IndexableContent.Scope.PUBLIC.name();
-            IndexStoreConversationResult result = index.converse(scope, query, conversationId);
-            return SearchConversationResult.fromIndexStoreResult(result);
-        } catch (IndexStoreException e) {
-            throw new SearchServiceException("Error while running conversational search", e);
-        }
+        String scope = (auth.getConnectedProfile().isOwner()) ? IndexableContent.Scope.PRIVATE.name() : IndexableContent.Scope.PUBLIC.name();
+        return complete(index.converse(scope, query, conversationId), SearchConversationResult::fromIndexStoreResult, null, "Error while running conversational search");
     }
 
     @Override
@@ -80,9 +82,63 @@ public class SearchServiceBean implements SearchService {
         try {
             String scope = (auth.getConnectedProfile().isOwner()) ? IndexableContent.Scope.PRIVATE.name() : IndexableContent.Scope.PUBLIC.name();
             return index.converseStream(scope, query, conversationId);
+        } catch (IndexStoreBusyException | IndexStoreUnavailableException e) {
+            throw new SearchBusyException("Error while streaming conversational search", e);
         } catch (IndexStoreException e) {
             throw new SearchServiceException("Error while streaming conversational search", e);
         }
     }
 
+    /**
+     * Degraded search used while the index is unavailable: a plain match on node names, most recent first. Only the
+     * owner gets results, as with the index where every node is private.
+     */
+    private List<SearchResult> searchNames(String scope, String query) {
+        metrics.incMetric("search.degraded");
+        if (!IndexableContent.Scope.PRIVATE.name().equals(scope) || query == null || query.isBlank() || query.equals("*")) {
+            return List.of();
+        }
+        LOGGER.log(Level.INFO, "Index unavailable, searching node names for query: " + query);
+        String pattern = "%" + query.toLowerCase().replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%";
+        List<NodeInfo> nodes = QuarkusTransaction.requiringNew().call(() -> em.createNamedQuery("Node.searchByName", NodeInfo.class)
+                .setParameter("pattern", pattern).setMaxResults(DEGRADED_LIMIT).getResultList());
+        return nodes.stream().map(node -> {
+            SearchResult result = new SearchResult();
+            result.setIdentifier(node.getId());
+            result.setType("node");
+            result.setExplain(node.getName());
+            return result;
+        }).collect(Collectors.toList());
+    }
+
+    /**
+     * Maps the result of an index stage, failures being completed as is (not wrapped in a CompletionException) so that
+     * they reach the exception mappers of the API. When the index is unavailable the degraded supplier, if any, provides
+     * the result instead.
+     */
+    private static <T, R> CompletionStage<R> complete(CompletionStage<T> stage, Function<T, R> mapping, Supplier<R> degraded, String message) {
+        CompletableFuture<R> result = new CompletableFuture<>();
+        stage.whenComplete((value, error) -> {
+            Throwable cause = (error instanceof CompletionException && error.getCause() != null) ? error.getCause() : error;
+            if (cause == null) {
+                try {
+                    result.complete(mapping.apply(value));
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(new SearchServiceException(message, e));
+                }
+            } else if (cause instanceof IndexStoreUnavailableException && degraded != null) {
+                try {
+                    result.complete(degraded.get());
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(new SearchServiceException(message, e));
+                }
+            } else if (cause instanceof IndexStoreBusyException || cause instanceof IndexStoreUnavailableException) {
+                result.completeExceptionally(new SearchBusyException(message, cause));
+            } else {
+                result.completeExceptionally(new SearchServiceException(message, cause));
+            }
+        });
+        return result;
+    }
+
 }
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.activity;
+
+import fr.jayblanc.mbyte.store.activity.entity.NodeAccess;
+import fr.jayblanc.mbyte.store.files.FileService;
+import fr.jayblanc.mbyte.store.files.entity.NodeInfo;
+import io.quarkus.test.TestTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Jerome Blanchard
+ */
+@QuarkusTest
+public class ActivityServiceTest {
+
+    private static final Logger LOGGER = Logger.getLogger(ActivityServiceTest.class.getName());
+
+    @Inject ActivityServiceBean activity;
+    @Inject FileService service;
+
+    @Test
+    @TestTransaction
+    public void recentKeysetPagingTest() throws Exception {
+        LOGGER.log(Level.INFO, "Starting Recent Keyset Paging Test");
+        String folder = service.add(FileService.ROOT_NODE_ID, "test-" + UUID.randomUUID());
+        // Modifications in the future put the files on top of the feed, ties are broken by id.
+        long modification = System.currentTimeMillis() + 86400000L;
+        List<String> latest = new ArrayList<>();
+        List<String> older = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            String id = service.add(folder, "file" + i + ".txt", new ByteArrayInputStream(UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8)));
+            service.get(id).setModification((i < 3) ? modification : modification - 1);
+            ((i < 3) ? latest : older).add(id);
+        }
+        latest.sort(Comparator.reverseOrder());
+        older.sort(Comparator.reverseOrder());
+        List<String> expected = new ArrayList<>(latest);
+        expected.addAll(older);
+
+        List<String> ids = new ArrayList<>();
+        long before = Long.MAX_VALUE;
+        String cursor = "";
+        while (ids.size() < expected.size()) {
+            List<NodeInfo> page = activity.recent(before, cursor, 2);
+            assertFalse(page.isEmpty());
+            page.forEach(node -> ids.add(node.getId()));
+            before = page.getLast().getModification();
+            cursor = page.getLast().getId();
+        }
+
+        assertEquals(expected, ids.subList(0, expected.size()));
+    }
+
+    @Test
+    public void activityKeysetPagingTest() throws Exception {
+        LOGGER.log(Level.INFO, "Starting Activity Keyset Paging Test");
+        // Entries are written by the flush in their own transaction.
+        String folder = service.add(FileService.ROOT_NODE_ID, "test-" + UUID.randomUUID());
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            String id = service.add(folder, "file" + i + ".txt", new ByteArrayInputStream(UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8)));
+            activity.access("open", service.get(id));
+            expected.add(0, id);
+        }
+        activity.flush();
+
+        List<String> nodes = new ArrayList<>();
+        long cursor = Long.MAX_VALUE;
+        while (nodes.size() < expected.size()) {
+            List<NodeAccess> page = activity.activity(cursor, 2);
+            assertFalse(page.isEmpty());
+            assertTrue(page.getFirst().getSeq() < cursor);
+            page.forEach(access -> nodes.add(access.getNode()));
+            cursor = page.getLast().getSeq();
+        }
+
+        assertEquals(expected, nodes.subList(0, expected.size()));
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.api.resources;
+
+import fr.jayblanc.mbyte.store.files.FileUpload;
+import jakarta.ws.rs.BadRequestException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Jerome Blanchard
+ */
+public class NodesResourceBulkTest {
+
+    private static final Logger LOGGER = Logger.getLogger(NodesResourceBulkTest.class.getName());
+
+    @Test
+    public void filenameTest() {
+        LOGGER.log(Level.INFO, "Starting Filename Test");
+        assertEquals("docs/a.txt", NodesResource.filename("form-data; name=\"file\"; filename=\"docs/a.txt\""));
+        assertEquals("a.txt", NodesResource.filename("form-data; filename=a.txt"));
+        assertNull(NodesResource.filename("form-data; name=\"field\""));
+        assertNull(NodesResource.filename(null));
+    }
+
+    @Test
+    public void uploadPathTest() {
+        LOGGER.log(Level.INFO, "Starting Upload Path Test");
+        FileUpload upload = NodesResource.upload("docs/2025/a.txt", InputStream.nullInputStream());
+        assertEquals("docs/2025", upload.getFolder());
+        assertEquals("a.txt", upload.getName());
+        for (String path : List.of("../a.txt", "docs/../a.txt", "/a.txt", "docs//a.txt", "docs/", "./a.txt", "a*.txt")) {
+            assertThrows(BadRequestException.class, () -> NodesResource.upload(path, InputStream.nullInputStream()), path);
+        }
+    }
+
+    @Test
+    public void zipUploadsTest() throws IOException {
+        LOGGER.log(Level.INFO, "Starting Zip Uploads Test");
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(archive)) {
+            zos.putNextEntry(new ZipEntry("docs/"));
+            zos.closeEntry();
+            entry(zos, "docs/a.txt", "content a");
+            entry(zos, "b.txt", "content b");
+        }
+        List<String> paths = new ArrayList<>();
+        List<String> contents = new ArrayList<>();
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(archive.toByteArray()))) {
+            NodesResource.ZipUploadIterator uploads = new NodesResource.ZipUploadIterator(zis);
+            while (uploads.hasNext()) {
+                FileUpload upload = uploads.next();
+                paths.add(upload.getPath());
+                // Closing an entry, as the data store does, must not close the archive.
+                try (InputStream data = upload.getData()) {
+                    contents.add(new String(data.readAllBytes(), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        assertEquals(List.of("docs/a.txt", "b.txt"), paths);
+        assertEquals(List.of("content a", "content b"), contents);
+    }
+
+    @Test
+    public void zipUploadsInvalidPathTest() throws IOException {
+        LOGGER.log(Level.INFO, "Starting Zip Uploads Invalid Path Test");
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(archive)) {
+            entry(zos, "../escape.txt", "content");
+        }
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(archive.toByteArray()))) {
+            NodesResource.ZipUploadIterator uploads = new NodesResource.ZipUploadIterator(zis);
+            assertTrue(uploads.hasNext());
+            assertThrows(BadRequestException.class, uploads::next);
+        }
+    }
+
+    private static void entry(ZipOutputStream zos, String name, String content) throws IOException {
+        zos.putNextEntry(new ZipEntry(name));
+        zos.write(content.getBytes(StandardCharsets.UTF_8));
+        zos.closeEntry();
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.changes;
+
+import fr.jayblanc.mbyte.store.changes.entity.NodeChange;
+import fr.jayblanc.mbyte.store.files.FileService;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Jerome Blanchard
+ */
+@QuarkusTest
+public class ChangeServiceTest {
+
+    private static final Logger LOGGER = Logger.getLogger(ChangeServiceTest.class.getName());
+
+    @Inject ChangeServiceBean changes;
+    @Inject FileService files;
+
+    @Test
+    public void listCommittedChangesTest() throws Exception {
+        LOGGER.log(Level.INFO, "Starting List Committed Changes Test");
+        long cursor = changes.cursor();
+        String id = files.add(FileService.ROOT_NODE_ID, "changes-" + UUID.randomUUID());
+
+        List<NodeChange> list = changes.list(cursor, 100);
+        assertTrue(list.stream().anyMatch(change -> change.getNode().equals(id) && change.getType().equals("folder.create")));
+        long previous = cursor;
+        for (NodeChange change : list) {
+            assertTrue(change.getPosition() > previous);
+            previous = change.getPosition();
+        }
+        assertEquals(previous, changes.cursor());
+        assertTrue(changes.list(previous, 100).isEmpty());
+    }
+
+    @Test
+    public void watchWaitsForChangeTest() throws Exception {
+        LOGGER.log(Level.INFO, "Starting Watch Waits For Change Test");
+        long cursor = changes.cursor();
+        CompletableFuture<List<NodeChange>> watch = changes.watch(cursor, 100, 20).toCompletableFuture();
+        assertFalse(watch.isDone());
+
+        String id = files.add(FileService.ROOT_NODE_ID, "changes-" + UUID.randomUUID());
+
+        List<NodeChange> list = watch.get(10, TimeUnit.SECONDS);
+        assertTrue(list.stream().anyMatch(change -> change.getNode().equals(id)));
+    }
+
+    @Test
+    public void watchTimeoutTest() throws Exception {
+        LOGGER.log(Level.INFO, "Starting Watch Timeout Test");
+        long start = System.currentTimeMillis();
+        List<NodeChange> list = changes.watch(changes.cursor(), 100, 1).toCompletableFuture().get(10, TimeUnit.SECONDS);
+        assertTrue(list.isEmpty());
+        assertTrue(System.currentTimeMillis() - start >= 1000);
+    }
+
+    @Test
+    public void compactionHorizonTest() throws Exception {
+        LOGGER.log(Level.INFO, "Starting Compaction Horizon Test");
+        long cursor = changes.cursor();
+        String name = "changes-" + UUID.randomUUID();
+        String id = files.add(FileService.ROOT_NODE_ID, name, stream("first"));
+        files.update(FileService.ROOT_NODE_ID, name, stream("second"));
+        long head = changes.cursor();
+
+        // Superseded changes leave gaps but keep the latest change of each node: no new snapshot is needed.
+        changes.compact(System.currentTimeMillis() + 1000, 0);
+        List<NodeChange> list = changes.list(cursor, 100);
+        assertEquals(List.of("file.update"), list.stream().filter(change -> change.getNode().equals(id)).map(NodeChange::getType).toList());
+        assertEquals(head, changes.cursor());
+
+        // Expired changes move the horizon: only a cursor older than it is rejected.
+        changes.compact(0, System.currentTimeMillis() + 1000);
+        assertThrows(ChangeCursorExpiredException.class, () -> changes.list(cursor, 100));
+        assertTrue(changes.list(head, 100).isEmpty());
+        ExecutionException expired = assertThrows(ExecutionException.class, () -> changes.watch(cursor, 100, 0).toCompletableFuture().get());
+        assertInstanceOf(ChangeCursorExpiredException.class, expired.getCause());
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
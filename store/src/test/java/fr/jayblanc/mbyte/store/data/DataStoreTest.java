@@ -26,8 +26,16 @@ import org.junit.jupiter.api.Test;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -42,6 +50,9 @@ public class DataStoreTest {
     @Inject
     DataStore store;
 
+    @Inject
+    DataStoreConfig config;
+
     @Test
     void testExists() {
 
@@ -93,4 +104,62 @@ public class DataStoreTest {
         assertEquals(KEY, KEY2);
     }
 
+    @Test
+    public void deduplicatedPutKeepsBlobFromCollectionTest() throws DataStoreException, IOException {
+        LOGGER.log(Level.INFO, "Starting Deduplicated Put Keeps Blob From Collection Test");
+        String content = UUID.randomUUID().toString();
+        String key = store.put(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+        Path blob = Paths.get(config.home(), key);
+        Files.setLastModifiedTime(blob, FileTime.fromMillis(System.currentTimeMillis() - 3600000));
+        long limit = System.currentTimeMillis() - 60000;
+
+        // A deduplicated put returns the existing blob, it must not be collected until the caller references it.
+        assertEquals(key, store.put(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8))));
+        assertFalse(store.delete(key, limit));
+        assertTrue(store.exists(key));
+
+        Files.setLastModifiedTime(blob, FileTime.fromMillis(System.currentTimeMillis() - 3600000));
+        try (Stream<String> keys = store.keys()) {
+            assertTrue(keys.anyMatch(key::equals));
+        }
+        assertTrue(store.delete(key, limit));
+        assertFalse(store.exists(key));
+    }
+
+    @Test
+    public void ingestCopiesWritableFileTest() throws DataStoreException, DataNotFoundException, IOException {
+        LOGGER.log(Level.INFO, "Starting Ingest Copies Writable File Test");
+        String content = "ingested " + UUID.randomUUID();
+        Path file = Files.createTempFile("ingest", ".txt");
+        try {
+            Files.writeString(file, content);
+            String key = store.ingest(file, true);
+
+            // A writable source could change under the storage: it is copied even when linking is enabled.
+            assertFalse(Files.isSameFile(file, Paths.get(config.home(), key)));
+            Files.writeString(file, "changed");
+            assertEquals(content, new String(IOUtils.toByteArray(store.get(key)), StandardCharsets.UTF_8));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void ingestLinksReadOnlyFileTest() throws DataStoreException, DataNotFoundException, IOException {
+        LOGGER.log(Level.INFO, "Starting Ingest Links Read Only File Test");
+        String content = "ingested " + UUID.randomUUID();
+        Path file = Files.createTempFile(Paths.get(config.home()).getParent(), "ingest", ".txt");
+        try {
+            Files.writeString(file, content);
+            Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("r--r--r--"));
+            String key = store.ingest(file, true);
+
+            assertEquals(content, new String(IOUtils.toByteArray(store.get(key)), StandardCharsets.UTF_8));
+            // Same file system as the storage: the content is linked, not copied.
+            assertTrue(Files.isSameFile(file, Paths.get(config.home(), key)));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
 }
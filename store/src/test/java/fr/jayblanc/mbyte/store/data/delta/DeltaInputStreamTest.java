@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.data.delta;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Jerome Blanchard
+ */
+public class DeltaInputStreamTest {
+
+    private static final Logger LOGGER = Logger.getLogger(DeltaInputStreamTest.class.getName());
+
+    private static final int BLOCK_SIZE = 2048;
+
+    @Test
+    public void rollingChecksumTest() {
+        LOGGER.log(Level.INFO, "Starting Rolling Checksum Test");
+        byte[] data = random(10000);
+        RollingChecksum checksum = new RollingChecksum();
+        checksum.reset(data, 0, BLOCK_SIZE);
+        for (int i = 1; i < 1000; i++) {
+            checksum.roll(data[i - 1], data[i + BLOCK_SIZE - 1]);
+            assertEquals(RollingChecksum.of(data, i, BLOCK_SIZE), checksum.value());
+        }
+    }
+
+    @Test
+    public void signatureTest() throws IOException {
+        LOGGER.log(Level.INFO, "Starting Signature Test");
+        byte[] data = random(10000);
+        DeltaSignature signature = DeltaSignature.compute("key", new ByteArrayInputStream(data), BLOCK_SIZE);
+        assertEquals(10000, signature.getSize());
+        assertEquals(5, signature.getBlocks().size());
+        assertEquals(RollingChecksum.of(data, 8192, 10000 - 8192), signature.getBlocks().get(4).getWeak());
+    }
+
+    @Test
+    public void rebuildTest() throws IOException {
+        LOGGER.log(Level.INFO, "Starting Rebuild Test");
+        byte[] base = random(10000);
+        ByteArrayOutputStream delta = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(delta);
+        dos.writeInt(DeltaInputStream.MAGIC);
+        dos.writeInt(BLOCK_SIZE);
+        dos.write(DeltaInputStream.COPY);
+        dos.writeInt(0);
+        dos.writeInt(2);
+        dos.write(DeltaInputStream.LITERAL);
+        dos.writeInt(3);
+        dos.write(new byte[]{1, 2, 3});
+        dos.write(DeltaInputStream.COPY);
+        dos.writeInt(4);
+        dos.writeInt(1);
+        dos.write(DeltaInputStream.END);
+
+        byte[] expected = new byte[2 * BLOCK_SIZE + 3 + (10000 - 4 * BLOCK_SIZE)];
+        System.arraycopy(base, 0, expected, 0, 2 * BLOCK_SIZE);
+        System.arraycopy(new byte[]{1, 2, 3}, 0, expected, 2 * BLOCK_SIZE, 3);
+        System.arraycopy(base, 4 * BLOCK_SIZE, expected, 2 * BLOCK_SIZE + 3, 10000 - 4 * BLOCK_SIZE);
+
+        Path file = Files.write(Files.createTempFile("delta", ".bin"), base);
+        try (SeekableByteChannel channel = FileChannel.open(file)) {
+            byte[] rebuilt = new DeltaInputStream(new ByteArrayInputStream(delta.toByteArray()), channel).readAllBytes();
+            assertArrayEquals(expected, rebuilt);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void truncatedDeltaTest() throws IOException {
+        LOGGER.log(Level.INFO, "Starting Truncated Delta Test");
+        ByteArrayOutputStream delta = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(delta);
+        dos.writeInt(DeltaInputStream.MAGIC);
+        dos.writeInt(BLOCK_SIZE);
+        dos.write(DeltaInputStream.LITERAL);
+        dos.writeInt(10);
+        dos.write(new byte[]{1, 2, 3});
+        Path file = Files.createTempFile("delta", ".bin");
+        try (SeekableByteChannel channel = FileChannel.open(file)) {
+            DeltaInputStream dis = new DeltaInputStream(new ByteArrayInputStream(delta.toByteArray()), channel);
+            assertThrows(DeltaFormatException.class, dis::readAllBytes);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static byte[] random(int size) {
+        byte[] data = new byte[size];
+        new Random(42).nextBytes(data);
+        return data;
+    }
+}
@@ -0,0 +1,409 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.files;
+
+import fr.jayblanc.mbyte.store.data.DataStore;
+import fr.jayblanc.mbyte.store.files.entity.Node;
+import fr.jayblanc.mbyte.store.files.entity.NodeVersion;
+import fr.jayblanc.mbyte.store.files.exceptions.NodeAlreadyExistsException;
+import fr.jayblanc.mbyte.store.files.exceptions.NodeNotFoundException;
+import fr.jayblanc.mbyte.store.files.exceptions.NodeTypeException;
+import io.quarkus.test.TestTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Jerome Blanchard
+ */
+@QuarkusTest
+public class FileServiceTest {
+
+    private static final Logger LOGGER = Logger.getLogger(FileServiceTest.class.getName());
+
+    @Inject FileService service;
+    @Inject FileServiceConfig config;
+    @Inject BlobCollectorBean collector;
+    @Inject DataStore datastore;
+
+    @Test
+    @TestTransaction
+    public void updateKeepsPreviousVersionTest() throws Exception {
+        LOGGER.log(Level.INFO, "Starting Update Keeps Previous Version Test");
+        String folder = folder();
+        String id = service.add(folder, "file.txt", stream("version 0"));
+        service.update(folder, "file.txt", stream("version 1"));
+
+        assertEquals("version 1", read(service.getContent(id)));
+        List<NodeVersion> versions = service.versions(id);
+        assertEquals(1, versions.size());
+        assertEquals("version 0", read(service.getVersionContent(id, versions.get(0).getId())));
+
+        // Same content again: nothing to archive.
+        service.update(folder, "file.txt", stream("version 1"));
+        assertEquals(1, service.versions(id).size());
+    }
+
+    @Test
+    @TestTransaction
+    public void restoreVersionTest() throws Exception {
+        LOGGER.log(Level.INFO, "Starting Restore Version Test");
+        String folder = folder();
+        String id = service.add(folder, "file.txt", stream("version 0"));
+        service.update(folder, "file.txt", stream("version 1"));
+        NodeVersion version = service.versions(id).get(0);
+
+        service.restore(id, version.getId());
+
+        assertEquals("version 0", read(service.getContent(id)));
+        List<NodeVersion> versions = service.versions(id);
+        assertEquals(1, versions.size());
+        assertNotEquals(version.getId(), versions.get(0).getId());
+        assertEquals("version 1", read(service.getVersionContent(id, versions.get(0).getId())));
+    }
+
+    @Test
+    @TestTransaction
+    public void versionsRetentionTest() throws Exception {
+        LOGGER.log(Level.INFO, "Starting Versions Retention Test");
+        int keep = config.versions().keep();
+        assertTrue(keep > 0);
+        String folder = folder();
+        String first = UUID.randomUUID().toString();
+        String id = service.add(folder, "file.txt", stream(first));
+        String firstKey = service.get(id).getContent();
+        for (int i = 1; i <= keep + 2; i++) {
+            // Versions are ordered by archive time, keep them apart.
+            Thread.sleep(2);
+            service.update(folder, "file.txt", stream(first + " " + i));
+        }
+
+        List<NodeVersion> versions = service.versions(id);
+        assertEquals(keep, versions.size());
+        assertTrue(versions.stream().noneMatch(version -> version.getContent().equals(firstKey)));
+        assertEquals(0, collector.countReferences(firstKey));
+
+        // Dropped versions release their blob, deleted once nothing references it anymore and the grace period is over.
+        collector.collect(System.currentTimeMillis() - 60000);
+        assertTrue(datastore.exists(firstKey));
+        collector.collect(Long.MAX_VALUE);
+        assertFalse(datastore.exists(firstKey));
+        assertTrue(datastore.exists(versions.get(0).getContent()));
+    }
+
+    @Test
+    public void sweepTest() throws Exception {
+        LOGGER.log(Level.INFO, "Starting Sweep Test");
+        // The sweep reads the references in its own transactions, so the tree must be committed.
+        String folder = folder();
+        String id = service.add(folder, "file.txt", stream(UUID.randomUUID().toString()));
+        String key = service.get(id).getContent();
+        // A blob nothing references, as left by a rolled back upload, and never released to the collector.
+        String orphan = datastore.put(stream(UUID.randomUUID().toString()));
+
+        collector.sweep(System.currentTimeMillis() - 60000);
+        assertTrue(datastore.exists(orphan));
+
+        assertTrue(collector.sweep(Long.MAX_VALUE) >= 1);
+        assertFalse(datastore.exists(orphan));
+        assertTrue(datastore.exists(key));
+    }
+
+    @Test
+    @TestTransaction
+    public void bulkUploadTest() throws Exception {
+        LOGGER.log(Level.INFO, "Starting Bulk Upload Test");
+        String folder = folder();
+        service.add(folder, "docs");
+        List<String> ids = service.addAll(folder, List.of(
+                new FileUpload("a.txt", stream("content a")),
+                new FileUpload("docs/b.txt", stream("content b")),
+                new FileUpload("docs/2025/c.txt", stream("content c"))).iterator());
+
+        assertEquals(3, ids.size());
+        String prefix = service.getFullPath(service.path(folder)) + "/";
+        assertEquals(prefix + "a.txt", service.getFullPath(service.path(ids.get(0))));
+        assertEquals(prefix + "docs/b.txt", service.getFullPath(service.path(ids.get(1))));
+        assertEquals(prefix + "docs/2025/c.txt", service.getFullPath(service.path(ids.get(2))));
+        assertEquals("content c", read(service.getContent(ids.get(2))));
+        // The existing folder is reused and gets the new file and the new sub folder.
+        List<Node> path = service.path(ids.get(1));
+        assertEquals(2, path.get(path.size() - 2).getSize());
+    }
+
+    @Test
+    public void bulkUploadIsAllOrNothingTest() throws Exception {
+        LOGGER.log(Level.INFO, "Starting Bulk Upload Is All Or Nothing Test");
+        String folder = folder();
+        service.add(folder, "existing.txt", stream("existing"));
+
+        assertThrows(NodeAlreadyExistsException.class, () -> service.addAll(folder, List.of(
+                new FileUpload("new.txt", stream("new")),
+                new FileUpload("existing.txt", stream("again"))).iterator()));
+        assertThrows(NodeAlreadyExistsException.class, () -> service.addAll(folder, List.of(
+                new FileUpload("twice.txt", stream("one")),
+                new FileUpload("twice.txt", stream("two"))).iterator()));
+
+        assertEquals(List.of("existing.txt"), service.list(folder).stream().map(Node::getName).toList());
+    }
+
+    @Test
+    @TestTransaction
+    public void hasContentTest() throws Exception {
+        LOGGER.log(Level.INFO, "Starting Has Content Test");
+        String folder = folder();
+        String id = service.add(folder, "file.txt", stream(UUID.randomUUID().toString()));
+        String first = service.get(id).getContent();
+        service.update(folder, "file.txt", stream(UUID.randomUUID().toString()));
+        String second = service.get(id).getContent();
+
+        assertTrue(service.hasContent(id, first));
+        assertTrue(service.hasContent(id, second));
+        assertFalse(service.hasContent(id, "0".repeat(64)));
+        assertFalse(service.hasContent(folder, second));
+    }
+
+    @Test
+    @TestTransaction
+    public void conflictsTest() throws Exception {
+        LOGGER.log(Level.INFO, "Starting Conflicts Test");
+        String folder = folder();
+        String sub = service.add(folder, "sub");
+        service.add(folder, "a.txt", stream("content a"));
+        service.add(sub, "b.txt", stream("content b"));
+
+        Set<String> conflicts = service.conflicts(folder, List.of("a.txt", "new.txt", "sub", "sub/b.txt", "sub/c.txt", "missing/d.txt", "a.txt/e.txt"));
+        assertEquals(Set.of("a.txt", "sub", "sub/b.txt", "a.txt/e.txt"), conflicts);
+    }
+
+    @Test
+    @TestTransaction
+    public void batchGetTest() throws Exception {
+        LOGGER.log(Level.INFO, "Starting Batch Get Test");
+        String folder = folder();
+        String a = service.add(folder, "a.txt", stream("content a"));
+        String b = service.add(folder, "b");
+        String missing = UUID.randomUUID().toString();
+
+        Map<String, Node> nodes = service.get(List.of(a, b, missing, a));
+
+        // Unknown ids are left out, duplicates collapse.
+        assertEquals(Set.of(a, b), nodes.keySet());
+        assertEquals("a.txt", nodes.get(a).getName());
+        assertTrue(nodes.get(b).isFolder());
+        assertTrue(service.get(List.of()).isEmpty());
+    }
+
+    @Test
+    @TestTransaction
+    public void applyOperationsTest() throws Exception {
+        LOGGER.log(Level.INFO, "Starting Apply Operations Test");
+        String folder = folder();
+        String source = service.add(folder, "source.txt", stream("content"));
+        String old = service.add(folder, "old.txt", stream("old"));
+        String key = service.get(source).getContent();
+
+        List<String> results = service.apply(List.of(
+                operation(NodeOperation.Type.MKDIR, null, folder, "docs", null),
+                operation(NodeOperation.Type.CREATE, null, "$0", "a.txt", key),
+                operation(NodeOperation.Type.MOVE, "$1", folder, "b.txt", null),
+                operation(NodeOperation.Type.DELETE, old, null, null, null)));
+
+        assertEquals(4, results.size());
+        // References resolve to the node produced by the referenced step.
+        assertEquals(results.get(1), results.get(2));
+        assertEquals(old, results.get(3));
+        Node docs = service.get(results.get(0));
+        assertTrue(docs.isFolder());
+        assertEquals(0, docs.getSize());
+        Node moved = service.get(results.get(1));
+        assertEquals(folder, moved.getParent());
+        assertEquals("b.txt", moved.getName());
+        assertEquals("content", read(service.getContent(moved.getId())));
+        assertEquals(FileService.TRASH_NODE_ID, service.get(old).getParent());
+    }
+
+    @Test
+    public void applyOperationsIsAllOrNothingTest() throws Exception {
+        LOGGER.log(Level.INFO, "Starting Apply Operations Is All Or Nothing Test");
+        // The batch runs in its own transaction, the tree must be committed to observe the rollback.
+        String folder = folder();
+        String existing = service.add(folder, "existing.txt", stream("existing"));
+
+        assertThrows(NodeAlreadyExistsException.class, () -> service.apply(List.of(
+                operation(NodeOperation.Type.MKDIR, null, folder, "docs", null),
+                operation(NodeOperation.Type.DELETE, existing, null, null, null),
+                operation(NodeOperation.Type.MKDIR, null, folder, "docs", null))));
+        assertThrows(NodeNotFoundException.class, () -> service.apply(List.of(
+                operation(NodeOperation.Type.MKDIR, null, folder, "docs", null),
+                operation(NodeOperation.Type.MKDIR, null, "$5", "sub", null))));
+
+        List<String> names = new ArrayList<>();
+        service.walk(folder, (path, node) -> names.add(path));
+        assertEquals(List.of("", "existing.txt"), names);
+        assertEquals(1, service.get(folder).getSize());
+    }
+
+    @Test
+    @TestTransaction
+    public void restoreFromTrashTest() throws Exception {
+        LOGGER.log(Level.INFO, "Starting Restore From Trash Test");
+        String folder = folder();
+        String id = service.add(folder, "file.txt", stream("content"));
+        service.remove(folder, "file.txt");
+
+        Node trashed = service.get(id);
+        assertEquals(FileService.TRASH_NODE_ID, trashed.getParent());
+        assertEquals(folder, trashed.getOrigin());
+        assertEquals(0, service.get(folder).getSize());
+
+        service.restoreFromTrash(id);
+
+        Node restored = service.get(id);
+        assertEquals(folder, restored.getParent());
+        assertNull(restored.getOrigin());
+        assertFalse(restored.isTrashed());
+        assertEquals(1, service.get(folder).getSize());
+        assertEquals("content", read(service.getContent(id)));
+    }
+
+    @Test
+    @TestTransaction
+    public void restoreFromTrashCollisionTest() throws Exception {
+        LOGGER.log(Level.INFO, "Starting Restore From Trash Collision Test");
+        String folder = folder();
+        String id = service.add(folder, "file.txt", stream("removed"));
+        service.remove(folder, "file.txt");
+        // Same name removed twice: both stay in the trash side by side.
+        String other = service.add(folder, "file.txt", stream("removed again"));
+        service.remove(folder, "file.txt");
+        String taken = service.add(folder, "file.txt", stream("taken"));
+
+        // The name is taken in the origin folder: the node stays in the trash.
+        assertThrows(NodeAlreadyExistsException.class, () -> service.restoreFromTrash(id));
+        assertEquals(FileService.TRASH_NODE_ID, service.get(id).getParent());
+
+        service.remove(folder, "file.txt");
+        service.restoreFromTrash(id);
+        assertEquals(folder, service.get(id).getParent());
+        assertThrows(NodeAlreadyExistsException.class, () -> service.restoreFromTrash(other));
+        assertEquals(FileService.TRASH_NODE_ID, service.get(taken).getParent());
+    }
+
+    @Test
+    @TestTransaction
+    public void restoreFromTrashWithoutOriginTest() throws Exception {
+        LOGGER.log(Level.INFO, "Starting Restore From Trash Without Origin Test");
+        String folder = folder();
+        String name = "orphan-" + UUID.randomUUID() + ".txt";
+        String id = service.add(folder, name, stream("content"));
+        service.remove(folder, name);
+        // Origin folder purged: the node comes back at the root.
+        service.remove(FileService.ROOT_NODE_ID, service.get(folder).getName());
+        service.purge(folder);
+
+        service.restoreFromTrash(id);
+
+        assertEquals(FileService.ROOT_NODE_ID, service.get(id).getParent());
+        assertNull(service.get(id).getOrigin());
+    }
+
+    @Test
+    @TestTransaction
+    public void purgeTest() throws Exception {
+        LOGGER.log(Level.INFO, "Starting Purge Test");
+        String folder = folder();
+        String id = service.add(folder, "file.txt", stream(UUID.randomUUID().toString()));
+        String key = service.get(id).getContent();
+        long trashSize = service.get(FileService.TRASH_NODE_ID).getSize();
+
+        // Only trashed nodes can be purged.
+        assertThrows(NodeTypeException.class, () -> service.purge(id));
+
+        service.remove(folder, "file.txt");
+        assertEquals(trashSize + 1, service.get(FileService.TRASH_NODE_ID).getSize());
+        service.purge(id);
+
+        assertThrows(NodeNotFoundException.class, () -> service.get(id));
+        assertEquals(trashSize, service.get(FileService.TRASH_NODE_ID).getSize());
+        assertEquals(0, collector.countReferences(key));
+    }
+
+    @Test
+    public void archiveTreeTest() throws Exception {
+        LOGGER.log(Level.INFO, "Starting Archive Tree Test");
+        // The archive reads the tree in its own transactions, so the tree must be committed.
+        String folder = folder();
+        String sub = service.add(folder, "sub");
+        service.add(folder, "a.txt", stream("content a"));
+        service.add(sub, "b.txt", stream("content b"));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        service.archive(folder, output);
+
+        Map<String, String> entries = new HashMap<>();
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(output.toByteArray()))) {
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                entries.put(entry.getName(), new String(zis.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        assertEquals(Map.of("a.txt", "content a", "sub/", "", "sub/b.txt", "content b"), entries);
+    }
+
+    private String folder() throws Exception {
+        return service.add(FileService.ROOT_NODE_ID, "test-" + UUID.randomUUID());
+    }
+
+    private static NodeOperation operation(NodeOperation.Type type, String id, String parent, String name, String content) {
+        NodeOperation operation = new NodeOperation();
+        operation.setType(type);
+        operation.setId(id);
+        operation.setParent(parent);
+        operation.setName(name);
+        operation.setContent(content);
+        return operation;
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(InputStream is) throws IOException {
+        try (is) {
+            return new String(is.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
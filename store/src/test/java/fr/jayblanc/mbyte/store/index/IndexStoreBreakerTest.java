@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Jerome Blanchard
+ */
+public class IndexStoreBreakerTest {
+
+    private static final Logger LOGGER = Logger.getLogger(IndexStoreBreakerTest.class.getName());
+
+    private final AtomicLong now = new AtomicLong(1000);
+    private final IndexStoreBreaker breaker = new IndexStoreBreaker(3, 500, now::get);
+
+    @Test
+    public void opensAfterFailuresTest() {
+        LOGGER.log(Level.INFO, "Starting Opens After Failures Test");
+        assertTrue(breaker.allow());
+        assertFalse(breaker.failure());
+        assertFalse(breaker.failure());
+        breaker.success();
+        assertFalse(breaker.failure());
+        assertFalse(breaker.failure());
+        assertEquals(IndexStoreBreaker.State.CLOSED, breaker.state());
+        assertTrue(breaker.failure());
+        assertEquals(IndexStoreBreaker.State.OPEN, breaker.state());
+        assertFalse(breaker.allow());
+    }
+
+    @Test
+    public void singleTrialTest() {
+        LOGGER.log(Level.INFO, "Starting Single Trial Test");
+        for (int i = 0; i < 3; i++) {
+            breaker.failure();
+        }
+        now.addAndGet(499);
+        assertFalse(breaker.allow());
+        now.addAndGet(1);
+        assertEquals(IndexStoreBreaker.State.HALF_OPEN, breaker.state());
+        assertTrue(breaker.allow());
+        assertFalse(breaker.allow());
+        breaker.success();
+        assertEquals(IndexStoreBreaker.State.CLOSED, breaker.state());
+        assertTrue(breaker.allow());
+        assertTrue(breaker.allow());
+    }
+
+    @Test
+    public void failedTrialTest() {
+        LOGGER.log(Level.INFO, "Starting Failed Trial Test");
+        for (int i = 0; i < 3; i++) {
+            breaker.failure();
+        }
+        now.addAndGet(500);
+        assertTrue(breaker.allow());
+        assertTrue(breaker.failure());
+        assertFalse(breaker.allow());
+        now.addAndGet(500);
+        assertTrue(breaker.allow());
+        breaker.abandon();
+        assertTrue(breaker.allow());
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.index;
+
+import fr.jayblanc.mbyte.store.files.entity.Node;
+import fr.jayblanc.mbyte.store.files.entity.NodeInfo;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Jerome Blanchard
+ */
+public class IndexStoreDriftTest {
+
+    private static final Logger LOGGER = Logger.getLogger(IndexStoreDriftTest.class.getName());
+
+    @Test
+    public void driftByKindTest() {
+        LOGGER.log(Level.INFO, "Starting Drift By Kind Test");
+        NodeInfo synced = this.node(Node.Type.BLOB, "synced", "a.txt", 1000L, "hash-a");
+        NodeInfo stale = this.node(Node.Type.BLOB, "stale", "b.txt", 1000L, "hash-b");
+        NodeInfo renamed = this.node(Node.Type.TREE, "renamed", "docs", 1000L, null);
+        NodeInfo missing = this.node(Node.Type.BLOB, "missing", "c.txt", 1000L, "hash-c");
+        Map<String, Long> indexed = new HashMap<>();
+        indexed.put("synced", this.fingerprint(synced, synced.getContent()));
+        indexed.put("stale", this.fingerprint(stale, "hash-old"));
+        indexed.put("renamed", IndexStoreDocumentBuilder.fingerprint("old name", renamed.getParent(), renamed.getModification(), ""));
+        indexed.put("orphan", 42L);
+
+        IndexStoreDrift drift = new IndexStoreDrift(indexed);
+
+        assertFalse(drift.visit(synced));
+        assertTrue(drift.visit(stale));
+        assertTrue(drift.visit(renamed));
+        assertTrue(drift.visit(missing));
+        assertEquals(1, drift.missing());
+        assertEquals(2, drift.stale());
+        assertEquals(1, drift.orphaned());
+        assertEquals(Set.of("orphan"), drift.orphans());
+    }
+
+    @Test
+    public void folderContentIgnoredTest() {
+        LOGGER.log(Level.INFO, "Starting Folder Content Ignored Test");
+        NodeInfo folder = this.node(Node.Type.TREE, "folder", "docs", 1000L, "unexpected");
+        IndexStoreDrift drift = new IndexStoreDrift(new HashMap<>(Map.of("folder", this.fingerprint(folder, ""))));
+
+        assertFalse(drift.visit(folder));
+        assertEquals(0, drift.missing() + drift.stale() + drift.orphaned());
+    }
+
+    @Test
+    public void modificationMakesStaleTest() {
+        LOGGER.log(Level.INFO, "Starting Modification Makes Stale Test");
+        NodeInfo node = this.node(Node.Type.BLOB, "node", "a.txt", 1001L, "hash-a");
+        IndexStoreDrift drift = new IndexStoreDrift(new HashMap<>(Map.of("node",
+                IndexStoreDocumentBuilder.fingerprint(node.getName(), node.getParent(), 1000L, "hash-a"))));
+
+        assertTrue(drift.visit(node));
+        // A node is only counted once, a second visit finds no document left for it.
+        assertTrue(drift.visit(node));
+        assertEquals(1, drift.stale());
+        assertEquals(1, drift.missing());
+    }
+
+    private NodeInfo node(Node.Type type, String id, String name, long modification, String content) {
+        return new NodeInfo(type, id, "root", name, "text/plain", 0, modification, modification, content);
+    }
+
+    private long fingerprint(NodeInfo node, String content) {
+        return IndexStoreDocumentBuilder.fingerprint(node.getName(), node.getParent(), node.getModification(), content);
+    }
+}
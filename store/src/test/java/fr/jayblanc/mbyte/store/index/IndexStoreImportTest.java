@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.index;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the JSONL import against a local stand-in that mimics Typesense: a fixed cost per request, one result line per
+ * imported document, and rejection of documents flagged as invalid.
+ *
+ * @author Jerome Blanchard
+ */
+public class IndexStoreImportTest {
+
+    private static final Logger LOGGER = Logger.getLogger(IndexStoreImportTest.class.getName());
+    private static final long REQUEST_COST_MS = 2;
+    private static final int DOCUMENTS = 200;
+    private static final int BATCH_SIZE = 50;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final HttpClient client = HttpClient.newHttpClient();
+    private HttpServer server;
+    private URI base;
+    private int requests;
+
+    @BeforeEach
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/documents", this::handle);
+        server.start();
+        base = URI.create("http://localhost:" + server.getAddress().getPort());
+        requests = 0;
+    }
+
+    @AfterEach
+    public void stop() {
+        server.stop(0);
+    }
+
+    @Test
+    public void encodeTest() throws IOException {
+        LOGGER.log(Level.INFO, "Starting Encode Test");
+        byte[] encoded = IndexStoreImport.encode(mapper, documents(3)).readAllBytes();
+        String[] lines = new String(encoded, StandardCharsets.UTF_8).split("\n");
+        assertEquals(3, lines.length);
+        for (int i = 0; i < lines.length; i++) {
+            assertEquals("doc-" + i, mapper.readTree(lines[i]).path("id").asText());
+        }
+    }
+
+    @Test
+    public void failuresTest() throws Exception {
+        LOGGER.log(Level.INFO, "Starting Failures Test");
+        List<Map<String, Object>> documents = documents(10);
+        documents.get(3).put("invalid", true);
+        documents.get(7).put("invalid", true);
+        Map<String, String> failures = this.importBatch(documents);
+        assertEquals(List.of("doc-3", "doc-7"), new ArrayList<>(failures.keySet()));
+        assertEquals("Field `content` must be a string.", failures.get("doc-3"));
+    }
+
+    @Test
+    public void batchedImportTest() throws Exception {
+        LOGGER.log(Level.INFO, "Starting Batched Import Test");
+        List<Map<String, Object>> documents = documents(DOCUMENTS);
+        long start = System.nanoTime();
+        for (int i = 0; i < DOCUMENTS; i += BATCH_SIZE) {
+            assertTrue(this.importBatch(documents.subList(i, Math.min(i + BATCH_SIZE, DOCUMENTS))).isEmpty());
+        }
+        double throughput = DOCUMENTS / ((System.nanoTime() - start) / 1e9);
+        // Throughput is only reported: it depends on the stand-in request cost, the request count is what the import saves.
+        LOGGER.log(Level.INFO, String.format("Batched import: %d documents in %d requests, %.0f docs/s", DOCUMENTS, requests, throughput));
+        assertEquals(DOCUMENTS / BATCH_SIZE, requests);
+    }
+
+    private Map<String, String> importBatch(List<Map<String, Object>> documents) throws Exception {
+        List<String> identifiers = documents.stream().map(document -> (String) document.get("id")).toList();
+        HttpRequest request = HttpRequest.newBuilder(base.resolve("/documents/import?action=upsert"))
+                .POST(HttpRequest.BodyPublishers.ofInputStream(() -> IndexStoreImport.encode(mapper, documents))).build();
+        HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        try (InputStream body = response.body()) {
+            return IndexStoreImport.failures(mapper, identifiers, body);
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests++;
+        StringBuilder results = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                JsonNode document = mapper.readTree(line);
+                if (document.path("invalid").asBoolean(false)) {
+                    results.append("{\"success\":false,\"error\":\"Field `content` must be a string.\",\"document\":").append(line).append("}\n");
+                } else {
+                    results.append("{\"success\":true}\n");
+                }
+            }
+        }
+        try {
+            Thread.sleep(REQUEST_COST_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        byte[] payload = results.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, payload.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(payload);
+        }
+    }
+
+    private List<Map<String, Object>> documents(int count) {
+        List<Map<String, Object>> documents = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Map<String, Object> document = new LinkedHashMap<>();
+            document.put("id", "doc-" + i);
+            document.put("name", "file-" + i + ".txt");
+            document.put("content", "content of file " + i);
+            documents.add(document);
+        }
+        return documents;
+    }
+}
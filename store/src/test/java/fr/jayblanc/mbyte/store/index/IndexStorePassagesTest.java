@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Jerome Blanchard
+ */
+public class IndexStorePassagesTest {
+
+    private static final Logger LOGGER = Logger.getLogger(IndexStorePassagesTest.class.getName());
+
+    @Test
+    public void shortTextTest() {
+        LOGGER.log(Level.INFO, "Starting Short Text Test");
+        assertEquals(List.of("short text"), IndexStorePassages.split("short text", 100, 10));
+        assertEquals(List.of(""), IndexStorePassages.split(null, 100, 10));
+    }
+
+    @Test
+    public void boundedPassagesTest() {
+        LOGGER.log(Level.INFO, "Starting Bounded Passages Test");
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            text.append("word").append(i).append(' ');
+        }
+        List<String> passages = IndexStorePassages.split(text.toString(), 500, 50);
+        assertTrue(passages.size() > 1);
+        for (String passage : passages) {
+            assertTrue(passage.length() <= 500, "passage too long: " + passage.length());
+            assertFalse(passage.isBlank());
+            assertTrue(passage.startsWith("word"), "passage does not start on a word boundary: " + passage.substring(0, 10));
+        }
+        for (int i = 0; i < 2000; i++) {
+            String word = "word" + i + " ";
+            int j = i;
+            assertTrue(passages.stream().anyMatch(passage -> (passage + " ").contains(word)), "lost word" + j);
+        }
+        for (int i = 1; i < passages.size(); i++) {
+            String previous = passages.get(i - 1);
+            String first = passages.get(i).substring(0, passages.get(i).indexOf(' '));
+            assertTrue(previous.contains(first), "no overlap between passages " + (i - 1) + " and " + i);
+        }
+    }
+
+    @Test
+    public void noWhitespaceTest() {
+        LOGGER.log(Level.INFO, "Starting No Whitespace Test");
+        List<String> passages = IndexStorePassages.split("x".repeat(1000), 300, 0);
+        assertEquals(4, passages.size());
+        assertEquals(1000, passages.stream().mapToInt(String::length).sum());
+    }
+}
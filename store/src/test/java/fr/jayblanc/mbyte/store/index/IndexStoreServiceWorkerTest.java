@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.index;
+
+import fr.jayblanc.mbyte.store.index.entity.IndexStoreJob;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.TestTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Jerome Blanchard
+ */
+@QuarkusTest
+public class IndexStoreServiceWorkerTest {
+
+    private static final Logger LOGGER = Logger.getLogger(IndexStoreServiceWorkerTest.class.getName());
+
+    @Inject IndexStoreServiceWorkerBean worker;
+    @Inject IndexStoreConfig config;
+    @Inject EntityManager em;
+
+    @Test
+    @TestTransaction
+    public void submitCoalescesPendingJobTest() {
+        LOGGER.log(Level.INFO, "Starting Submit Coalesces Pending Job Test");
+        String node = UUID.randomUUID().toString();
+        worker.submit("file.create", node);
+        worker.submit("folder.update", node);
+
+        List<IndexStoreJob> jobs = this.jobs(node);
+        assertEquals(1, jobs.size());
+        IndexStoreJob job = jobs.get(0);
+        assertEquals("folder.update", job.getType());
+        assertEquals(IndexStoreJob.Status.PENDING, job.getStatus());
+        assertEquals(job.getCreation() + config.outbox().debounceMs(), job.getDue());
+
+        // A claimed job may have read the node before the new event: a new job is needed.
+        job.setStatus(IndexStoreJob.Status.RUNNING);
+        em.flush();
+        worker.submit("file.update", node);
+        assertEquals(2, this.jobs(node).size());
+    }
+
+    @Test
+    public void claimSkipsLockedJobsTest() {
+        LOGGER.log(Level.INFO, "Starting Claim Skips Locked Jobs Test");
+        // Earliest due dates of the outbox: both jobs fit in the first claimed batch.
+        IndexStoreJob locked = this.create(0);
+        IndexStoreJob free = this.create(1);
+        try {
+            List<IndexStoreJob> claimed = QuarkusTransaction.requiringNew().call(() -> {
+                // Another instance holds the row: the claim, in its own transaction, goes past it without waiting.
+                em.find(IndexStoreJob.class, locked.getId(), LockModeType.PESSIMISTIC_WRITE);
+                return worker.claim();
+            });
+            List<String> ids = claimed.stream().map(IndexStoreJob::getId).toList();
+            assertTrue(ids.contains(free.getId()));
+            assertFalse(ids.contains(locked.getId()));
+
+            long now = System.currentTimeMillis();
+            IndexStoreJob leased = this.load(free.getId());
+            assertEquals(IndexStoreJob.Status.RUNNING, leased.getStatus());
+            assertTrue(leased.getDue() > now + (config.outbox().leaseSeconds() - 10) * 1000L);
+            assertEquals(IndexStoreJob.Status.PENDING, this.load(locked.getId()).getStatus());
+        } finally {
+            this.delete(locked, free);
+        }
+    }
+
+    @Test
+    public void failureBackoffTest() {
+        LOGGER.log(Level.INFO, "Starting Failure Backoff Test");
+        IndexStoreJob job = this.create(System.currentTimeMillis());
+        try {
+            long base = config.outbox().backoffSeconds() * 1000L;
+            for (int attempt = 1; attempt < config.outbox().maxAttempts(); attempt++) {
+                long before = System.currentTimeMillis();
+                worker.complete(List.of(job), Map.of(job.getNode(), "boom"));
+                IndexStoreJob failed = this.load(job.getId());
+                assertEquals(IndexStoreJob.Status.FAILED, failed.getStatus());
+                assertEquals(attempt, failed.getFailures());
+                // Exponential, capped, with up to half of the delay as jitter.
+                long delay = Math.min(config.outbox().maxBackoffSeconds() * 1000L, base << (attempt - 1));
+                assertTrue(failed.getDue() >= before + delay / 2, "attempt " + attempt);
+                assertTrue(failed.getDue() <= System.currentTimeMillis() + delay, "attempt " + attempt);
+            }
+            worker.complete(List.of(job), Map.of(job.getNode(), "boom"));
+            assertEquals(IndexStoreJob.Status.DEAD, this.load(job.getId()).getStatus());
+        } finally {
+            this.delete(job);
+        }
+    }
+
+    @Test
+    public void requeueAndCompleteTest() {
+        LOGGER.log(Level.INFO, "Starting Requeue And Complete Test");
+        IndexStoreJob job = this.create(System.currentTimeMillis() + 60000);
+        try {
+            // Index unavailable: the batch goes back to the outbox, due at once, without counting an attempt.
+            worker.requeue(List.of(job));
+            IndexStoreJob requeued = this.load(job.getId());
+            assertEquals(IndexStoreJob.Status.PENDING, requeued.getStatus());
+            assertEquals(0, requeued.getFailures());
+            assertTrue(requeued.getDue() <= System.currentTimeMillis());
+
+            worker.complete(List.of(job), Map.of());
+            IndexStoreJob done = this.load(job.getId());
+            assertEquals(IndexStoreJob.Status.DONE, done.getStatus());
+            assertTrue(done.getStopDate() > 0);
+        } finally {
+            this.delete(job);
+        }
+    }
+
+    private List<IndexStoreJob> jobs(String node) {
+        // Coalescing is a bulk update, managed jobs do not see it.
+        em.flush();
+        em.clear();
+        return em.createNamedQuery("IndexStoreJob.findByNode", IndexStoreJob.class).setParameter("node", node).getResultList();
+    }
+
+    private IndexStoreJob create(long due) {
+        IndexStoreJob job = new IndexStoreJob();
+        job.setId(UUID.randomUUID().toString());
+        job.setStatus(IndexStoreJob.Status.PENDING);
+        job.setType("file.update");
+        job.setNode(UUID.randomUUID().toString());
+        job.setCreation(System.currentTimeMillis());
+        job.setDue(due);
+        QuarkusTransaction.requiringNew().run(() -> em.persist(job));
+        return job;
+    }
+
+    private IndexStoreJob load(String id) {
+        return QuarkusTransaction.requiringNew().call(() -> em.find(IndexStoreJob.class, id));
+    }
+
+    private void delete(IndexStoreJob... jobs) {
+        QuarkusTransaction.requiringNew().run(() -> {
+            for (IndexStoreJob job : jobs) {
+                IndexStoreJob managed = em.find(IndexStoreJob.class, job.getId());
+                if (managed != null) {
+                    em.remove(managed);
+                }
+            }
+        });
+    }
+
+}
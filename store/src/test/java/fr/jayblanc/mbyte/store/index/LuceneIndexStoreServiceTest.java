@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.index;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Jerome Blanchard
+ */
+public class LuceneIndexStoreServiceTest {
+
+    private static final Logger LOGGER = Logger.getLogger(LuceneIndexStoreServiceTest.class.getName());
+
+    private static final String PRIVATE = IndexableContent.Scope.PRIVATE.name();
+
+    @TempDir Path home;
+
+    private LuceneIndexStoreServiceBean index;
+
+    @BeforeEach
+    public void open() {
+        index = this.open(home);
+    }
+
+    @AfterEach
+    public void close() {
+        index.close();
+    }
+
+    @Test
+    public void searchHighlightTest() throws Exception {
+        LOGGER.log(Level.INFO, "Starting Search Highlight Test");
+        index.index(this.content("a", "fox.txt", "The quick brown fox jumps over the lazy dog"));
+        index.index(this.content("b", "cat.txt", "A cat sleeps all day long"));
+        index.refresh();
+
+        List<IndexStoreResult> results = this.search("fox");
+        assertEquals(1, results.size());
+        assertEquals("a", results.get(0).getIdentifier());
+        assertTrue(results.get(0).getExplain().contains("<mark>fox</mark>"), results.get(0).getExplain());
+        // Matches on the name are boosted and highlighted too.
+        assertEquals(List.of("b"), this.search("cat").stream().map(IndexStoreResult::getIdentifier).toList());
+        // The scope filters documents out.
+        assertTrue(index.search(IndexableContent.Scope.PUBLIC.name(), "fox").toCompletableFuture().get().isEmpty());
+    }
+
+    @Test
+    public void updateReplacesPassagesTest() throws Exception {
+        LOGGER.log(Level.INFO, "Starting Update Replaces Passages Test");
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            text.append("filler").append(i).append(' ');
+        }
+        text.append("zebra");
+        index.index(this.content("a", "long.txt", text.toString()));
+        index.refresh();
+        assertEquals(List.of("a"), this.search("zebra").stream().map(IndexStoreResult::getIdentifier).toList());
+
+        // Fewer passages than before: the ones beyond the new content must go as well.
+        index.index(this.content("a", "long.txt", "giraffe"));
+        index.refresh();
+
+        assertTrue(this.search("zebra").isEmpty());
+        assertEquals(List.of("a"), this.search("giraffe").stream().map(IndexStoreResult::getIdentifier).toList());
+        assertEquals(1, this.search("*").size());
+        assertEquals(Map.of("a", this.fingerprint(this.content("a", "long.txt", "giraffe"))), index.fingerprints());
+    }
+
+    @Test
+    public void removeDeletesPassagesTest() throws Exception {
+        LOGGER.log(Level.INFO, "Starting Remove Deletes Passages Test");
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            text.append("filler").append(i).append(' ');
+        }
+        index.indexAll(List.of(this.content("a", "a.txt", text.toString()), this.content("b", "b.txt", "filler0")));
+        index.remove("a");
+        index.refresh();
+
+        assertEquals(List.of("b"), this.search("filler0").stream().map(IndexStoreResult::getIdentifier).toList());
+        assertEquals(Map.of("b", this.fingerprint(this.content("b", "b.txt", "filler0"))), index.fingerprints());
+    }
+
+    @Test
+    public void rebuildSurvivesRestartTest() throws Exception {
+        LOGGER.log(Level.INFO, "Starting Rebuild Survives Restart Test");
+        index.index(this.content("a", "old.txt", "stale document"));
+        // Collection names are time based.
+        Thread.sleep(2);
+        String rebuilt = index.createCollection();
+        assertEquals(Map.of(), index.indexAll(rebuilt, List.of(this.content("b", "new.txt", "fresh document"))));
+        assertEquals(1, index.count(rebuilt));
+
+        String previous = index.promote(rebuilt);
+        assertNotNull(previous);
+        assertNotEquals(rebuilt, previous);
+        assertThrows(IndexStoreException.class, () -> index.drop(rebuilt));
+        index.drop(previous);
+        assertFalse(Files.exists(home.resolve(previous)));
+        assertEquals(List.of("b"), this.search("document").stream().map(IndexStoreResult::getIdentifier).toList());
+        // Promoting the serving collection again changes nothing.
+        assertNull(index.promote(rebuilt));
+
+        index.close();
+        index = this.open(home);
+        assertEquals(rebuilt, Files.readString(home.resolve("current")).trim());
+        assertEquals(List.of("b"), this.search("document").stream().map(IndexStoreResult::getIdentifier).toList());
+    }
+
+    private List<IndexStoreResult> search(String query) throws Exception {
+        return index.search(PRIVATE, query).toCompletableFuture().get();
+    }
+
+    private IndexableContent content(String identifier, String name, String text) {
+        IndexableContent content = new IndexableContent();
+        content.setType("file");
+        content.setIdentifier(identifier);
+        content.setName(name);
+        content.setContent(text);
+        content.setMimetype("text/plain");
+        content.setNodeType("BLOB");
+        content.setParent("root");
+        content.setStoreId("store");
+        content.setModifiedAt(1000L);
+        content.setContentHash("hash-" + text.hashCode());
+        content.setScope(IndexableContent.Scope.PRIVATE);
+        return content;
+    }
+
+    private long fingerprint(IndexableContent content) {
+        return IndexStoreDocumentBuilder.fingerprint(content.getName(), content.getParent(), content.getModifiedAt(), content.getContentHash());
+    }
+
+    private LuceneIndexStoreServiceBean open(Path home) {
+        LuceneIndexStoreServiceBean bean = new LuceneIndexStoreServiceBean();
+        bean.config = config(IndexStoreConfig.class, Map.of(
+                "lucene", config(IndexStoreConfig.Lucene.class, Map.of("home", home.toString(), "ramBufferMb", 16.0, "maxResults", 100)),
+                "passage", config(IndexStoreConfig.Passage.class, Map.of("size", 100, "overlap", 10, "maxChars", 1000000))));
+        bean.init();
+        return bean;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T config(Class<T> type, Map<String, Object> values) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+            if (!values.containsKey(method.getName())) {
+                throw new UnsupportedOperationException(method.getName());
+            }
+            return values.get(method.getName());
+        });
+    }
+}
@@ -16,12 +16,20 @@
  */
 package fr.jayblanc.mbyte.store.notification;
 
+import fr.jayblanc.mbyte.store.notification.entity.Event;
 import io.quarkus.test.junit.QuarkusTest;
+import io.vertx.mutiny.core.eventbus.EventBus;
+import io.vertx.mutiny.core.eventbus.MessageConsumer;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 import jakarta.transaction.UserTransaction;
 import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -37,6 +45,8 @@ public class NotificationServiceTest {
 
     @Inject UserTransaction userTx;
 
+    @Inject EventBus bus;
+
     @Test
     @Transactional
     public void simpleThrowEventTest() throws NotificationServiceException {
@@ -66,5 +76,39 @@ public class NotificationServiceTest {
         userTx.commit();
     }
 
+    @Test
+    public void coalesceKeepsLatestPositionTest() throws Exception {
+        LOGGER.log(Level.INFO, "Starting Coalesce Keeps Latest Position Test");
+        String node = UUID.randomUUID().toString();
+        String other = UUID.randomUUID().toString();
+        String folder = UUID.randomUUID().toString();
+        List<String> received = new CopyOnWriteArrayList<>();
+        MessageConsumer<Event> consumer = bus.<Event>consumer(NotificationService.NOTIFICATION_TOPIC).handler(message -> {
+            Event event = message.body();
+            if (List.of(node, other, folder).contains(event.getSourceId())) {
+                received.add(event.getEventType() + ":" + event.getSourceId());
+            }
+        });
+        try {
+            userTx.begin();
+            notification.notify("file.create", node);
+            notification.notify("folder.update", folder);
+            notification.notify("file.remove", node);
+            notification.notify("folder.update", folder);
+            notification.notify("file.create", node);
+            notification.notify("file.create", other);
+            notification.notify("folder.update", folder);
+            userTx.commit();
+
+            List<String> expected = List.of("file.remove:" + node, "file.create:" + node, "file.create:" + other, "folder.update:" + folder);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (received.size() < expected.size() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertEquals(expected, received);
+        } finally {
+            consumer.unregisterAndAwait();
+        }
+    }
 
 }
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2025 Jerome Blanchard <jayblanc@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.jayblanc.mbyte.store.quota;
+
+import fr.jayblanc.mbyte.store.files.FileService;
+import fr.jayblanc.mbyte.store.quota.entity.StoreUsage;
+import io.quarkus.test.TestTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Jerome Blanchard
+ */
+@QuarkusTest
+@TestProfile(QuotaServiceTest.LimitedQuotaProfile.class)
+public class QuotaServiceTest {
+
+    private static final Logger LOGGER = Logger.getLogger(QuotaServiceTest.class.getName());
+
+    private static final long MAX_BYTES = 1000000000L;
+
+    @Inject QuotaService quota;
+    @Inject FileService service;
+    @Inject EntityManager em;
+
+    public static class LimitedQuotaProfile implements QuarkusTestProfile {
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of("store.quota.max-bytes", Long.toString(MAX_BYTES));
+        }
+    }
+
+    @Test
+    @TestTransaction
+    public void uploadWithinQuotaTest() throws Exception {
+        LOGGER.log(Level.INFO, "Starting Upload Within Quota Test");
+        String folder = folder();
+        this.used(MAX_BYTES - 1000);
+
+        service.add(folder, "file.txt", stream(100));
+
+        assertEquals(MAX_BYTES - 900, quota.usage().getBytes());
+    }
+
+    @Test
+    @TestTransaction
+    public void undeclaredUploadOverQuotaTest() throws Exception {
+        LOGGER.log(Level.INFO, "Starting Undeclared Upload Over Quota Test");
+        String folder = folder();
+        // Nothing was declared (chunked upload): admission only sees the current usage and lets it in.
+        this.used(MAX_BYTES - 10);
+        quota.admit(-1, 1);
+
+        assertThrows(QuotaExceededException.class, () -> service.add(folder, "file.txt", stream(100)));
+    }
+
+    @Test
+    @TestTransaction
+    public void updateOverQuotaTest() throws Exception {
+        LOGGER.log(Level.INFO, "Starting Update Over Quota Test");
+        String folder = folder();
+        service.add(folder, "file.txt", stream(10));
+        this.used(MAX_BYTES - 10);
+
+        assertThrows(QuotaExceededException.class, () -> service.update(folder, "file.txt", stream(100)));
+    }
+
+    @Test
+    @TestTransaction
+    public void releaseOverQuotaTest() throws Exception {
+        LOGGER.log(Level.INFO, "Starting Release Over Quota Test");
+        this.used(MAX_BYTES + 100);
+
+        // Only growth is checked: freeing space is always possible, even over quota.
+        quota.record(-50, -1);
+        assertThrows(QuotaExceededException.class, () -> quota.consume(1, 0));
+    }
+
+    private String folder() throws Exception {
+        return service.add(FileService.ROOT_NODE_ID, "test-" + UUID.randomUUID());
+    }
+
+    private void used(long bytes) {
+        StoreUsage usage = em.find(StoreUsage.class, StoreUsage.STORE_USAGE_ID);
+        usage.setBytes(bytes);
+        em.flush();
+    }
+
+    private static InputStream stream(int size) {
+        byte[] content = new byte[size];
+        byte[] random = UUID.randomUUID().toString().getBytes();
+        System.arraycopy(random, 0, content, 0, Math.min(size, random.length));
+        return new ByteArrayInputStream(content);
+    }
+}